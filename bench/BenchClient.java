@@ -0,0 +1,121 @@
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.Callable;
+
+/**
+ * This class is a scripted client used by the benchmarks. It plays one game
+ * against the server by always taking the first blank space, and records the
+ * time the server takes to answer each of its moves.
+ */
+public class BenchClient implements Callable<long[]>
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * The port the server is listening on.
+     */
+    private int port;
+    /**
+     * The name sent to the server. Must be unique within a benchmark run.
+     */
+    private String name;
+    /**
+     * The version of the protocol spoken to the server.
+     */
+    private int protocolVersion;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs a BenchClient that connects to a local server.
+     * @param port The port the server is listening on.
+     * @param name The unique name of the client.
+     * @param protocolVersion The version of the protocol to speak.
+     */
+    public BenchClient(int port, String name, int protocolVersion)
+    {
+        this.port = port;
+        this.name = name;
+        this.protocolVersion = protocolVersion;
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Plays one game.
+     * @return The round trip time (in nanoseconds) of each move made.
+     * @throws IOException Thrown when the connection fails.
+     */
+    @Override
+    public long[] call() throws IOException
+    {
+        Socket socket = new Socket("localhost", port);
+        ClientConnection connection = protocolVersion == Protocol.VERSION_SERIALIZED 
+            ? new SerializedClientConnection(socket) : new BinaryClientConnection(socket);
+        try
+        {
+            connection.sendName(name);
+            return play(connection, name);
+        }
+        finally { connection.close(); }
+    }
+
+    /**
+     * Plays one game over a connection whose handshake is already complete.
+     * @param connection The connection to the server.
+     * @param name The name the server knows the client by.
+     * @return The round trip time (in nanoseconds) of each move made.
+     * @throws IOException Thrown when the connection fails.
+     */
+    public static long[] play(ClientConnection connection, String name) throws IOException
+    {
+        long[] latencies = new long[5];
+        int moves = 0;
+        connection.receiveMessage();
+        long sentAt = 0;
+        while (true)
+        {
+            GameState gameState = connection.receiveGameState();
+            if (sentAt != 0) 
+            { 
+                latencies[moves++] = System.nanoTime() - sentAt; 
+                sentAt = 0;
+            }
+            if (gameState.hasEnded()) { break; }
+            if (gameState.getActiveName().equals(name))
+            {
+                int cell = markFirstBlank(gameState);
+                sentAt = System.nanoTime();
+                connection.sendMove(gameState, cell);
+            }
+        }
+        long[] result = new long[moves];
+        System.arraycopy(latencies, 0, result, 0, moves);
+        return result;
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Places the active player's mark in the first blank space on the board.
+     * @param gameState The current GameState instance.
+     * @return The index (row * size + col) of the cell that was marked.
+     */
+    private static int markFirstBlank(GameState gameState)
+    {
+        Board board = gameState.getBoard();
+        for (int cell = 0; cell < board.getCellCount(); cell++)
+        {
+            if (board.isBlank(cell))
+            {
+                board.addMark(cell, gameState.getActivePlayer().getMark());
+                return cell;
+            }
+        }
+        return -1;
+    }
+}
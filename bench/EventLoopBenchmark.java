@@ -0,0 +1,184 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class measures what a game costs the server when games are hosted by
+ * event loops (see GameEngine). A local server is started in LOOP mode, then
+ * a child process connects two clients per game and holds every game open
+ * at its first move. The server's heap and thread count are measured while
+ * every game is in progress, after which the games are played out and moves
+ * per second are printed. The clients run in their own process so that
+ * their buffers are not counted against the server.
+ *
+ * Usage: java EventLoopBenchmark [games] [loops]
+ */
+public class EventLoopBenchmark
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * The port used by the benchmark server.
+     */
+    private static final int PORT = 19890;
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Starts a server, has the child process fill it with games and prints
+     * what they cost.
+     * @param games The number of games held open at once.
+     * @param loops The number of event loop threads.
+     * @throws Exception Thrown when the child process fails.
+     */
+    private static void run(int games, int loops) throws Exception
+    {
+        ServerConfig config = new ServerConfig();
+        config.setPort(PORT);
+        config.setExecutorMode(ExecutorMode.LOOP);
+        config.setEventLoops(loops);
+        config.setAiWait(0);
+        config.setJournalDirectory("");
+        config.setProfileFile("");
+        config.setMetricsPort(0);
+        config.setLogLevel(LogLevel.WARN);
+        Server server = new Server(config);
+        Thread serverThread = new Thread(server::runServer, "bench-server");
+        serverThread.start();
+        long baseHeap = usedHeap();
+        int baseThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+
+        Process clients = new ProcessBuilder("java", "-cp", System.getProperty("java.class.path"),
+            "EventLoopBenchmark", "clients", Integer.toString(games))
+            .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        BufferedReader fromClients = new BufferedReader(new InputStreamReader(clients.getInputStream()));
+        PrintWriter toClients = new PrintWriter(clients.getOutputStream(), true);
+        if (!"ready".equals(fromClients.readLine())) { throw new IOException("Clients failed to connect"); }
+
+        long heap = usedHeap();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long active = ServerMetrics.GAMES_ACTIVE.sum();
+        System.out.printf("games in progress=%d loops=%d server threads=%d (%d before games)%n",
+            active, loops, threads.getThreadCount(), baseThreads);
+        System.out.printf("heap=%.1f MB (%.1f MB before games) per game=%.2f KB%n",
+            heap / 1e6, baseHeap / 1e6, (heap - baseHeap) / 1024.0 / Math.max(1, active));
+
+        toClients.println("play");
+        String[] result = fromClients.readLine().split(" ");
+        clients.waitFor();
+        double seconds = Double.parseDouble(result[0]);
+        long moves = Long.parseLong(result[1]);
+        System.out.printf("played out in %.2fs moves=%d moves/sec=%.0f games left=%d%n",
+            seconds, moves, moves / seconds, ServerMetrics.GAMES_ACTIVE.sum());
+        serverThread.interrupt();
+    }
+
+    /**
+     * Connects two clients per game, waits for every game to start, then
+     * plays them all out on a single thread once the parent asks. Each
+     * round, every client whose turn it is moves, after which every client
+     * still playing reads the resulting state.
+     * @param games The number of games.
+     * @throws Exception Thrown when a client fails.
+     */
+    private static void runClients(int games) throws Exception
+    {
+        List<ClientConnection> players = new ArrayList<>();
+        for (int i = 0; i < games * 2; i++)
+        {
+            ClientConnection connection = new BinaryClientConnection(new Socket("localhost", PORT));
+            connection.sendName("loop-" + i);
+            players.add(connection);
+        }
+        List<GameState> states = new ArrayList<>();
+        for (ClientConnection connection : players)
+        {
+            connection.receiveMessage();
+            states.add(connection.receiveGameState());
+        }
+        System.out.println("ready");
+        new BufferedReader(new InputStreamReader(System.in)).readLine();
+
+        long start = System.nanoTime();
+        long moves = 0;
+        boolean isPlaying = true;
+        while (isPlaying)
+        {
+            isPlaying = false;
+            for (int i = 0; i < players.size(); i++)
+            {
+                GameState state = states.get(i);
+                if (state.hasEnded() || !state.getActiveName().equals("loop-" + i)) { continue; }
+                players.get(i).sendMove(state, markFirstBlank(state));
+                moves++;
+            }
+            for (int i = 0; i < players.size(); i++)
+            {
+                if (states.get(i).hasEnded()) { continue; }
+                states.set(i, players.get(i).receiveGameState());
+                isPlaying = true;
+            }
+        }
+        System.out.println((System.nanoTime() - start) / 1e9 + " " + moves);
+        for (ClientConnection connection : players) { connection.close(); }
+    }
+
+    /**
+     * Marks the first blank cell of the board for the active player.
+     * @param gameState The game state.
+     * @return The cell marked.
+     */
+    private static int markFirstBlank(GameState gameState)
+    {
+        Board board = gameState.getBoard();
+        for (int cell = 0; cell < board.getCellCount(); cell++)
+        {
+            if (board.isBlank(cell))
+            {
+                board.addMark(cell, gameState.getActivePlayer().getMark());
+                return cell;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the heap in use once garbage has been collected.
+     * @return The bytes of heap in use.
+     * @throws InterruptedException Thrown when the thread is interrupted.
+     */
+    private static long usedHeap() throws InterruptedException
+    {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++)
+        {
+            System.gc();
+            Thread.sleep(200);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    //=========================================================================
+    // Main
+    //=========================================================================
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length > 1 && args[0].equals("clients"))
+        {
+            runClients(Integer.parseInt(args[1]));
+            return;
+        }
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+        int loops = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        run(games, loops);
+    }
+}
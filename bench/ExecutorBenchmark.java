@@ -0,0 +1,99 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class compares the server's executor modes. For each mode a local
+ * server is started and a number of scripted games are played concurrently.
+ * Games per second, move round trip times and matchmaking wait times are
+ * printed.
+ *
+ * Usage: java ExecutorBenchmark [games] [modes...]
+ */
+public class ExecutorBenchmark
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * The first port used by the benchmark servers.
+     */
+    private static final int BASE_PORT = 19898;
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Plays the input number of concurrent games against a server running in
+     * the input mode and prints the results.
+     * @param mode The executor mode of the server.
+     * @param games The number of games to play.
+     * @param port The port the server listens on.
+     * @throws Exception Thrown when a client fails.
+     */
+    private static void run(ExecutorMode mode, int games, int port) throws Exception
+    {
+        ServerConfig config = new ServerConfig();
+        config.setPort(port);
+        config.setExecutorMode(mode);
+        config.setMetricsPort(0);
+        Server server = new Server(config);
+        Thread serverThread = new Thread(server::runServer, "bench-server");
+        serverThread.start();
+
+        ExecutorService clients = Executors.newCachedThreadPool();
+        List<Future<long[]>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < games * 2; i++)
+        {
+            results.add(clients.submit(new BenchClient(port, mode + "-" + i, Protocol.VERSION_BINARY)));
+        }
+        List<Long> latencies = new ArrayList<>();
+        for (Future<long[]> result : results)
+        {
+            for (long latency : result.get()) { latencies.add(latency); }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        clients.shutdown();
+        serverThread.interrupt();
+
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        System.out.printf("%-8s games=%d time=%.2fs games/sec=%.2f moves=%d p50 move=%.3fms p99 move=%.3fms%n",
+            mode, games, seconds, games / seconds, sorted.length, 
+            percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6);
+        System.out.printf("%-8s average match wait=%.3fms max match wait=%.3fms%n",
+            mode, server.getMatchmaker().getAverageWaitMillis(), server.getMatchmaker().getMaxWaitMillis());
+    }
+
+    /**
+     * Finds the input percentile of a sorted array of samples.
+     * @param sorted The samples in ascending order.
+     * @param fraction The percentile as a fraction (e.g. 0.99).
+     * @return The sample at the input percentile.
+     */
+    private static long percentile(long[] sorted, double fraction)
+    {
+        int index = (int) Math.ceil(sorted.length * fraction) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    //=========================================================================
+    // Main
+    //=========================================================================
+    public static void main(String[] args) throws Exception
+    {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        ExecutorMode[] modes = ExecutorMode.values();
+        if (args.length > 1)
+        {
+            modes = new ExecutorMode[args.length - 1];
+            for (int i = 1; i < args.length; i++) { modes[i - 1] = ExecutorMode.valueOf(args[i].toUpperCase()); }
+        }
+        for (int i = 0; i < modes.length; i++) { run(modes[i], games, BASE_PORT + i); }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,122 @@
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class puts load on a running server. It starts a number of concurrent
+ * bot sessions, each of which is a ClientController with a HeadlessDisplay
+ * that plays random moves, for a number of games over one connection. When
+ * every session has finished, it prints connection setup times, match wait
+ * times (from sending the name, or asking to play again, to the first game
+ * state), move round trip times and games completed per second.
+ *
+ * Usage: java LoadGenerator [sessions] [host] [port] [binary|serialized] [games per session]
+ */
+public class LoadGenerator
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Records the time taken to open each connection.
+     */
+    private static final Histogram CONNECT_TIME = new Histogram();
+    /**
+     * Records the wait of each session for a match.
+     */
+    private static final Histogram MATCH_WAIT = new Histogram();
+    /**
+     * Records the round trip time of each move.
+     */
+    private static final Histogram MOVE_LATENCY = new Histogram();
+    /**
+     * Number of games played to their end, counted once per player.
+     */
+    private static final AtomicInteger COMPLETED = new AtomicInteger();
+    /**
+     * Number of sessions that could not connect or did not finish every
+     * game.
+     */
+    private static final AtomicInteger FAILED = new AtomicInteger();
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Runs one bot session.
+     * @param host The server name or IP address.
+     * @param port The server port number.
+     * @param protocolVersion The version of the protocol to speak.
+     * @param name The unique name of the bot.
+     * @param games The number of games to play.
+     */
+    private static void runSession(String host, int port, int protocolVersion, String name, int games)
+    {
+        TimedClientConnection connection;
+        try
+        {
+            long start = System.nanoTime();
+            Socket socket = new Socket(host, port);
+            ClientConnection inner = protocolVersion == Protocol.VERSION_SERIALIZED
+                ? new SerializedClientConnection(socket) : new BinaryClientConnection(socket);
+            CONNECT_TIME.record(System.nanoTime() - start);
+            connection = new TimedClientConnection(inner, MATCH_WAIT, MOVE_LATENCY);
+        }
+        catch (IOException e)
+        {
+            FAILED.incrementAndGet();
+            return;
+        }
+        ClientController controller = new ClientController(connection, new HeadlessDisplay(name, new RandomMoveStrategy(), games));
+        controller.setStartDelay(0);
+        controller.communicate();
+        COMPLETED.addAndGet(connection.getGamesEnded());
+        if (connection.getGamesEnded() < games) { FAILED.incrementAndGet(); }
+    }
+
+    /**
+     * Prints a summary of a histogram of nanosecond samples in milliseconds.
+     * @param name The name of the histogram.
+     * @param histogram The histogram to print.
+     */
+    private static void print(String name, Histogram histogram)
+    {
+        System.out.printf("%-14s count=%-8d mean=%9.3fms p50=%9.3fms p99=%9.3fms p99.9=%9.3fms max=%9.3fms%n",
+            name, histogram.getCount(), histogram.getMean() / 1e6, histogram.getPercentile(0.50) / 1e6, 
+            histogram.getPercentile(0.99) / 1e6, histogram.getPercentile(0.999) / 1e6, histogram.getMax() / 1e6);
+    }
+
+    //=========================================================================
+    // Main
+    //=========================================================================
+    public static void main(String[] args) throws Exception
+    {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        String host = args.length > 1 ? args[1] : "localhost";
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : 9898;
+        int protocolVersion = args.length > 3 && args[3].equals("serialized") 
+            ? Protocol.VERSION_SERIALIZED : Protocol.VERSION_BINARY;
+        int games = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+
+        ExecutorService bots = Executors.newCachedThreadPool();
+        String run = Long.toString(System.currentTimeMillis(), 36);
+        long start = System.nanoTime();
+        for (int i = 0; i < sessions; i++)
+        {
+            String name = "bot-" + run + "-" + i;
+            bots.execute(() -> runSession(host, port, protocolVersion, name, games));
+        }
+        bots.shutdown();
+        bots.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("sessions=%d games=%d failed=%d time=%.2fs games/sec=%.2f%n",
+            sessions, COMPLETED.get() / 2, FAILED.get(), seconds, COMPLETED.get() / 2.0 / seconds);
+        print("connect", CONNECT_TIME);
+        print("match wait", MATCH_WAIT);
+        print("move rtt", MOVE_LATENCY);
+    }
+}
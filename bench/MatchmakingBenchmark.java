@@ -0,0 +1,125 @@
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class measures how quickly and how well each match strategy pairs a
+ * large pool of waiting players. The given number of players (with ratings
+ * spread around 1500) are queued at once, after which the clock is stepped
+ * forward in ticks of the Matchmaker's poll interval. Every tick, new
+ * players arrive and the strategy is asked for matches until it has none.
+ * The time taken to queue a player and to make a match is printed, along
+ * with the rating gap and wait of each match made. The clock is simulated,
+ * so waits are those the players would have seen, not the time the
+ * benchmark takes.
+ *
+ * Usage: java MatchmakingBenchmark [players] [arrivals per tick] [ticks]
+ */
+public class MatchmakingBenchmark
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Simulated nanoseconds between ticks.
+     */
+    private static final long TICK = TimeUnit.MILLISECONDS.toNanos(100);
+    /**
+     * The spread (standard deviation) of the players' ratings.
+     */
+    private static final double RATING_SPREAD = 300;
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Queues players with a strategy and prints how it matches them.
+     * @param name The name of the strategy.
+     * @param strategy The strategy measured.
+     * @param players The number of players queued at the start.
+     * @param arrivals The number of players queued every tick.
+     * @param ticks The number of ticks simulated.
+     */
+    private static void run(String name, MatchStrategy strategy, int players, int arrivals, int ticks)
+    {
+        Random random = new Random(1);
+        Histogram add = new Histogram();
+        Histogram match = new Histogram();
+        Histogram gap = new Histogram();
+        Histogram wait = new Histogram();
+        long start = System.nanoTime();
+        long now = start;
+        queue(strategy, random, players, now, add);
+        int largest = strategy.size();
+        for (int tick = 0; tick <= ticks; tick++)
+        {
+            if (tick > 0) { queue(strategy, random, arrivals, now, add); }
+            largest = Math.max(largest, strategy.size());
+            while (true)
+            {
+                long before = System.nanoTime();
+                MatchTicket[] pair = strategy.nextMatch(now);
+                if (pair == null) { break; }
+                match.record(System.nanoTime() - before);
+                gap.record(Math.round(Math.abs(pair[0].getRating() - pair[1].getRating())));
+                wait.record(pair[0].getWaitTime(now));
+                wait.record(pair[1].getWaitTime(now));
+            }
+            now += TICK;
+        }
+        System.out.printf("%s: largest pool=%d matches=%d left waiting=%d%n", name, largest, match.getCount(),
+            strategy.size());
+        print("queue", add, 1e3, "us");
+        print("match", match, 1e3, "us");
+        print("rating gap", gap, 1, "");
+        print("wait", wait, 1e6, "ms");
+    }
+
+    /**
+     * Queues players with ratings drawn from a normal distribution.
+     * @param strategy The strategy the players are queued with.
+     * @param random Chooses the players' ratings.
+     * @param count The number of players queued.
+     * @param now The simulated time the players are queued at.
+     * @param add Records the time taken to queue each player.
+     */
+    private static void queue(MatchStrategy strategy, Random random, int count, long now, Histogram add)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            double rating = PlayerProfile.INITIAL_RATING + random.nextGaussian() * RATING_SPREAD;
+            MatchTicket ticket = new MatchTicket(new Player("player", 'X'), rating, now);
+            long before = System.nanoTime();
+            strategy.add(ticket);
+            add.record(System.nanoTime() - before);
+        }
+    }
+
+    /**
+     * Prints a summary of a histogram in the input unit.
+     * @param name The name of the histogram.
+     * @param histogram The histogram to print.
+     * @param scale The number of recorded units in one printed unit.
+     * @param unit The printed unit.
+     */
+    private static void print(String name, Histogram histogram, double scale, String unit)
+    {
+        System.out.printf("  %-10s mean=%9.2f%s p50=%9.2f%s p99=%9.2f%s max=%9.2f%s%n", name,
+            histogram.getMean() / scale, unit, histogram.getPercentile(0.50) / scale, unit,
+            histogram.getPercentile(0.99) / scale, unit, histogram.getMax() / scale, unit);
+    }
+
+    //=========================================================================
+    // Main
+    //=========================================================================
+    public static void main(String[] args)
+    {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int arrivals = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int ticks = args.length > 2 ? Integer.parseInt(args[2]) : 300;
+        // Warm up both strategies before measuring them
+        run("warmup", new RatingMatchStrategy(), players / 10, arrivals, 10);
+        run("warmup", new FifoMatchStrategy(), players / 10, arrivals, 10);
+        run("rating", new RatingMatchStrategy(), players, arrivals, ticks);
+        run("fifo", new FifoMatchStrategy(), players, arrivals, ticks);
+    }
+}
@@ -0,0 +1,127 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * This class measures the player profile store (see ProfileStore and
+ * ProfileCache) holding millions of players. A store in a temporary file is
+ * filled by recording games between the given number of players, after
+ * which the latency of profile lookups is printed: hot lookups are served by
+ * the cache, and cold lookups (through a fresh cache) read the store. The
+ * time taken to queue a result, and to apply and save a batch of results,
+ * is also printed.
+ *
+ * Usage: java ProfileBenchmark [players] [cache size]
+ */
+public class ProfileBenchmark
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * The number of lookups timed for each kind of lookup.
+     */
+    private static final int LOOKUPS = 1_000_000;
+    /**
+     * The number of games recorded in each timed batch.
+     */
+    private static final int BATCH = 10_000;
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Fills a store with profiles and times lookups against it.
+     * @param players The number of players stored.
+     * @param cacheSize The most profiles kept in memory.
+     * @throws Exception Thrown when the store cannot be created.
+     */
+    private static void run(int players, int cacheSize) throws Exception
+    {
+        Path file = Files.createTempFile("profiles", ".dat");
+        try
+        {
+            ProfileStore store = new ProfileStore(file, Math.max(ProfileStore.DEFAULT_CAPACITY, players * 4 / 3));
+            ProfileCache cache = new ProfileCache(store, cacheSize);
+            Random random = new Random(1);
+
+            // Every player plays one game against the next, applied and saved a batch at a time
+            Histogram record = new Histogram();
+            Histogram flush = new Histogram();
+            long start = System.nanoTime();
+            for (int i = 0; i < players; i++)
+            {
+                long before = System.nanoTime();
+                cache.recordGame(nameOf(i), nameOf((i + 1) % players), random.nextInt(3) / 2.0);
+                record.record(System.nanoTime() - before);
+                if ((i + 1) % BATCH == 0)
+                {
+                    before = System.nanoTime();
+                    cache.flush();
+                    flush.record(System.nanoTime() - before);
+                }
+            }
+            cache.flush();
+            System.out.printf("stored=%d players in %.2fs (cache holds %d)%n", store.getCount(),
+                (System.nanoTime() - start) / 1e9, cacheSize);
+            print("queue result", record);
+            print("apply batch", flush);
+
+            Histogram hot = new Histogram();
+            for (int i = 0; i < LOOKUPS; i++)
+            {
+                String name = nameOf(players - 1 - random.nextInt(Math.min(cacheSize, players)));
+                long before = System.nanoTime();
+                cache.getRating(name);
+                hot.record(System.nanoTime() - before);
+            }
+            print("hot lookup", hot);
+
+            ProfileCache cold = new ProfileCache(store, cacheSize);
+            Histogram miss = new Histogram();
+            for (int i = 0; i < LOOKUPS; i++)
+            {
+                String name = nameOf(random.nextInt(players));
+                long before = System.nanoTime();
+                cold.getRating(name);
+                miss.record(System.nanoTime() - before);
+            }
+            System.out.printf("cold lookups: hits=%d misses=%d%n", cold.getHits(), cold.getMisses());
+            print("cold lookup", miss);
+            cache.close();
+        }
+        finally { Files.deleteIfExists(file); }
+    }
+
+    /**
+     * Gets the name of the input player.
+     * @param player The index of the player.
+     * @return The name.
+     */
+    private static String nameOf(int player)
+    {
+        return "player-" + player;
+    }
+
+    /**
+     * Prints a summary of a histogram of nanosecond samples in microseconds.
+     * @param name The name of the histogram.
+     * @param histogram The histogram to print.
+     */
+    private static void print(String name, Histogram histogram)
+    {
+        System.out.printf("%-12s count=%-8d mean=%9.2fus p50=%9.2fus p99=%9.2fus p99.9=%9.2fus max=%9.2fus%n",
+            name, histogram.getCount(), histogram.getMean() / 1e3, histogram.getPercentile(0.50) / 1e3,
+            histogram.getPercentile(0.99) / 1e3, histogram.getPercentile(0.999) / 1e3, histogram.getMax() / 1e3);
+    }
+
+    //=========================================================================
+    // Main
+    //=========================================================================
+    public static void main(String[] args) throws Exception
+    {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int cacheSize = args.length > 1 ? Integer.parseInt(args[1]) : ProfileCache.DEFAULT_CAPACITY;
+        run(players, cacheSize);
+    }
+}
@@ -0,0 +1,192 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * This class checks that a long serialized protocol session does not grow
+ * the heap. A SerializedClientConnection and a SerializedPlayerConnection
+ * are connected over a single loopback socket, and the given number of games
+ * are played over it back to back (the client against a scripted opponent),
+ * as a player who is requeued after every game would. The heap in use is
+ * printed every tenth of the way, along with the bytes sent per state.
+ *
+ * The check fails if the heap in use (once garbage has been collected) grew
+ * by more than MAX_HEAP_GROWTH between the first tenth of the games and the
+ * last, or if either end's ObjectChannel was not reset once every reset
+ * interval. A failed check exits with status 1, so the build can run it
+ * (see the soakCheck task).
+ *
+ * Usage: java SerializedSoakBenchmark [games]
+ */
+public class SerializedSoakBenchmark
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * The most bytes the heap may grow by over the checked games.
+     */
+    private static final long MAX_HEAP_GROWTH = 2_000_000;
+    /**
+     * The number of states sent by the server.
+     */
+    private static long states;
+    /**
+     * The number of moves sent by the client.
+     */
+    private static long moves;
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Plays the input number of games over one connection and prints the
+     * heap in use as it goes, then checks the heap and the channels.
+     * @param games The number of games to play.
+     * @return True if the checks passed.
+     * @throws Exception Thrown when the connection fails.
+     */
+    private static boolean run(int games) throws Exception
+    {
+        try (ServerSocket listener = new ServerSocket(0))
+        {
+            SerializedClientConnection client = new SerializedClientConnection(new Socket("localhost", listener.getLocalPort()));
+            Socket serverSocket = listener.accept();
+            // Sending the name waits for the server's stream header, so it is sent from another thread
+            Thread naming = new Thread(() -> 
+            {
+                try { client.sendName("soak"); }
+                catch (IOException e) { e.printStackTrace(); }
+            });
+            naming.start();
+            // The server reads the name line itself before opening its streams
+            InputStream serverInput = serverSocket.getInputStream();
+            while (serverInput.read() != '\n') { }
+            SerializedPlayerConnection server = new SerializedPlayerConnection(serverSocket, serverInput);
+            naming.join();
+
+            Player player = new Player("soak", server);
+            player.setMark('X');
+            Player opponent = new Player("scripted", 'O');
+            long start = System.nanoTime();
+            int tenth = Math.max(1, games / 10);
+            long settledHeap = 0;
+            long heap = usedHeap();
+            System.out.printf("games=%-6d heap=%.2f MB%n", 0, heap / 1e6);
+            for (int game = 1; game <= games; game++)
+            {
+                play(server, client, player, opponent);
+                if (game % tenth == 0 || game == games)
+                {
+                    heap = usedHeap();
+                    System.out.printf("games=%-6d heap=%.2f MB%n", game, heap / 1e6);
+                }
+                // The heap is measured from once the JIT and the streams' caches have settled
+                if (game == tenth) { settledHeap = heap; }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("states=%d mean state=%.1f bytes time=%.2fs%n", states,
+                ServerMetrics.SERIALIZED_STATE_SIZE.getMean(), seconds);
+            // Every game also sends its start message through the server's channel
+            boolean isPassed = checkResets("server", server.getChannel(), games + states);
+            isPassed &= checkResets("client", client.getChannel(), moves);
+            long growth = heap - settledHeap;
+            System.out.printf("heap growth=%.2f MB (at most %.2f MB)%n", growth / 1e6, MAX_HEAP_GROWTH / 1e6);
+            if (growth > MAX_HEAP_GROWTH)
+            {
+                System.out.printf("FAILED: the heap grew by %d bytes from game %d to game %d%n", growth, tenth, games);
+                isPassed = false;
+            }
+            client.close();
+            server.close();
+            return isPassed;
+        }
+    }
+
+    /**
+     * Checks that a channel was reset once every default reset interval (the
+     * interval both connections use).
+     * @param name The name of the channel's end.
+     * @param channel The channel.
+     * @param writes The number of objects written to the channel.
+     * @return True if the channel was reset as often as expected.
+     */
+    private static boolean checkResets(String name, ObjectChannel channel, long writes)
+    {
+        long expected = writes / ObjectChannel.DEFAULT_RESET_INTERVAL;
+        System.out.printf("%s writes=%d resets=%d%n", name, writes, channel.getResetCount());
+        if (channel.getResetCount() == expected) { return true; }
+        System.out.printf("FAILED: the %s's channel was reset %d times, not %d%n", name, channel.getResetCount(),
+            expected);
+        return false;
+    }
+
+    /**
+     * Plays one game. The client always marks the first blank cell, and the
+     * scripted opponent the last one.
+     * @param server The server's end of the connection.
+     * @param client The client's end of the connection.
+     * @param player The player on the connection.
+     * @param opponent The scripted opponent.
+     * @throws IOException Thrown when the connection fails, or a move is
+     * rejected.
+     */
+    private static void play(SerializedPlayerConnection server, SerializedClientConnection client, Player player,
+        Player opponent) throws IOException
+    {
+        ServerModel model = new ServerModel();
+        model.setActivePlayer(opponent);
+        model.setIdlePlayer(player);
+        server.sendMessage("Opponent found. A new game has started!");
+        client.receiveMessage();
+        while (true)
+        {
+            model.toggleActivePlayer();
+            server.sendGameState(model);
+            GameState state = client.receiveGameState();
+            states++;
+            if (state.hasEnded()) { return; }
+            if (model.getActivePlayer() == player)
+            {
+                Board board = state.getBoard();
+                int cell = 0;
+                while (!board.isBlank(cell)) { cell++; }
+                board.addMark(cell, player.getMark());
+                client.sendMove(state, cell);
+                moves++;
+                if (!model.applyMove(server.receiveMove(model))) { throw new IOException("Move was rejected"); }
+            }
+            else
+            {
+                int cell = model.getBoard().getCellCount() - 1;
+                while (!model.getBoard().isBlank(cell)) { cell--; }
+                model.applyMove(new Move(cell, model.getSequence()));
+            }
+        }
+    }
+
+    /**
+     * Gets the heap in use once garbage has been collected.
+     * @return The bytes of heap in use.
+     * @throws InterruptedException Thrown when the thread is interrupted.
+     */
+    private static long usedHeap() throws InterruptedException
+    {
+        for (int i = 0; i < 3; i++)
+        {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    //=========================================================================
+    // Main
+    //=========================================================================
+    public static void main(String[] args) throws Exception
+    {
+        if (!run(args.length > 0 ? Integer.parseInt(args[0]) : 10000)) { System.exit(1); }
+    }
+}
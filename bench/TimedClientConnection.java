@@ -0,0 +1,133 @@
+import java.io.IOException;
+
+/**
+ * This class wraps a ClientConnection and times the traffic of one bot
+ * session for the LoadGenerator: the wait from sending the name until the
+ * first game state, and the round trip from each move to the next game state.
+ */
+public class TimedClientConnection implements ClientConnection
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * The connection that is timed.
+     */
+    private ClientConnection connection;
+    /**
+     * Records the wait for a match.
+     */
+    private Histogram matchWait;
+    /**
+     * Records the round trip of each move.
+     */
+    private Histogram moveLatency;
+    /**
+     * When the name was sent (in nanoseconds), or 0 once the game started.
+     */
+    private long nameSentAt;
+    /**
+     * When the last move was sent (in nanoseconds), or 0 if no move is
+     * awaiting an answer.
+     */
+    private long moveSentAt;
+    /**
+     * The number of game states ending a game that have been received.
+     */
+    private int gamesEnded;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs a TimedClientConnection.
+     * @param connection The connection to time.
+     * @param matchWait Records the wait for a match.
+     * @param moveLatency Records the round trip of each move.
+     */
+    public TimedClientConnection(ClientConnection connection, Histogram matchWait, Histogram moveLatency)
+    {
+        this.connection = connection;
+        this.matchWait = matchWait;
+        this.moveLatency = moveLatency;
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    @Override
+    public void sendName(String name) throws IOException
+    {
+        nameSentAt = System.nanoTime();
+        connection.sendName(name);
+    }
+
+    @Override
+    public String receiveMessage() throws IOException
+    {
+        return connection.receiveMessage();
+    }
+
+    @Override
+    public GameState receiveGameState() throws IOException
+    {
+        GameState gameState = connection.receiveGameState();
+        long now = System.nanoTime();
+        if (nameSentAt != 0)
+        {
+            matchWait.record(now - nameSentAt);
+            nameSentAt = 0;
+        }
+        if (moveSentAt != 0)
+        {
+            moveLatency.record(now - moveSentAt);
+            moveSentAt = 0;
+        }
+        if (gameState.hasEnded()) { gamesEnded++; }
+        return gameState;
+    }
+
+    @Override
+    public void sendMove(GameState gameState, int cell) throws IOException
+    {
+        moveSentAt = System.nanoTime();
+        connection.sendMove(gameState, cell);
+    }
+
+    @Override
+    public void watch(long gameId) throws IOException
+    {
+        connection.watch(gameId);
+    }
+
+    /**
+     * A move sent before the connection was lost is not timed.
+     */
+    @Override
+    public boolean resume()
+    {
+        moveSentAt = 0;
+        return connection.resume();
+    }
+
+    /**
+     * The wait for the next match is timed from the request to play again.
+     */
+    @Override
+    public boolean requeue(String name)
+    {
+        nameSentAt = System.nanoTime();
+        return connection.requeue(name);
+    }
+
+    @Override
+    public void close()
+    {
+        connection.close();
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public int getGamesEnded() { return gamesEnded; }
+}
@@ -0,0 +1,124 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import benchmarks.Operation;
+import benchmarks.Workload;
+
+/**
+ * This class holds the Board operations run on every move, measured by
+ * benchmarks.BoardBenchmark: placing a mark and checking whether the game has
+ * been won or has ended. Every operation plays a whole game of 9 scripted
+ * moves on a fresh 3x3 board, or a scripted game of gomoku (15x15, 5 in a
+ * row) until it ends.
+ */
+public class BoardWorkload implements Workload
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Order in which cells are marked. X wins on the last move.
+     */
+    private static final int[] CELLS = { 4, 0, 8, 2, 6, 1, 5, 3, 7 };
+    /**
+     * Order in which cells of the gomoku board are marked: a fixed shuffle.
+     */
+    private static final int[] GOMOKU_CELLS = shuffledCells(15 * 15);
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    @Override
+    public Operation get(String name)
+    {
+        switch (name)
+        {
+            case "addMark": return BoardWorkload::addMark;
+            case "hasWon": return BoardWorkload::hasWon;
+            case "hasEnded": return BoardWorkload::hasEnded;
+            case "gomoku": return BoardWorkload::gomoku;
+            default: throw new IllegalArgumentException("No operation " + name);
+        }
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Marks every cell of a fresh board.
+     * @return The masks of the full board.
+     */
+    private static long addMark()
+    {
+        Board board = new Board();
+        for (int i = 0; i < CELLS.length; i++)
+        {
+            board.addMark(CELLS[i], i % 2 == 0 ? 'X' : 'O');
+        }
+        return board.getXMask() << 9 | board.getOMask();
+    }
+
+    /**
+     * Marks every cell of a fresh board and checks for a win after each mark.
+     * @return The number of moves after which a player had won.
+     */
+    private static long hasWon()
+    {
+        Board board = new Board();
+        long wins = 0;
+        for (int i = 0; i < CELLS.length; i++)
+        {
+            board.addMark(CELLS[i], i % 2 == 0 ? 'X' : 'O');
+            if (board.hasWon()) { wins++; }
+        }
+        return wins;
+    }
+
+    /**
+     * Marks every cell of a fresh board and checks whether the game has ended
+     * after each mark.
+     * @return The number of moves after which the game had ended.
+     */
+    private static long hasEnded()
+    {
+        Board board = new Board();
+        long ended = 0;
+        for (int i = 0; i < CELLS.length; i++)
+        {
+            board.addMark(CELLS[i], i % 2 == 0 ? 'X' : 'O');
+            if (board.hasEnded()) { ended++; }
+        }
+        return ended;
+    }
+
+    /**
+     * Plays the scripted gomoku game until it ends (after 91 moves).
+     * @return The number of moves played.
+     */
+    private static long gomoku()
+    {
+        Board board = new Board(15, 5);
+        int moves = 0;
+        while (!board.hasEnded())
+        {
+            board.addMark(GOMOKU_CELLS[moves], moves % 2 == 0 ? 'X' : 'O');
+            moves++;
+        }
+        return moves;
+    }
+
+    /**
+     * Shuffles the cells of a board with a fixed seed.
+     * @param cellCount The number of cells.
+     * @return The cell indexes in a fixed random order.
+     */
+    private static int[] shuffledCells(int cellCount)
+    {
+        List<Integer> cells = new ArrayList<>();
+        for (int cell = 0; cell < cellCount; cell++) { cells.add(cell); }
+        Collections.shuffle(cells, new Random(15));
+        return cells.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
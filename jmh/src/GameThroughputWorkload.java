@@ -0,0 +1,121 @@
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import benchmarks.GameThroughputBenchmark;
+import benchmarks.Operation;
+import benchmarks.Workload;
+
+/**
+ * This class plays the whole games measured by
+ * benchmarks.GameThroughputBenchmark, without any sockets. Each game runs a
+ * real ServerController between two scripted clients (see BenchClient),
+ * connected to it by piped streams speaking the binary protocol. Every round
+ * plays GameThroughputBenchmark.GAMES games at once.
+ */
+public class GameThroughputWorkload implements Workload
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Size of the buffer of each pipe.
+     */
+    private static final int PIPE_SIZE = 4096;
+    /**
+     * Runs the games.
+     */
+    private ExecutorService servers;
+    /**
+     * Runs the scripted clients.
+     */
+    private ExecutorService clients;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs a GameThroughputWorkload and its threads. Games are only
+     * logged if they fail.
+     */
+    public GameThroughputWorkload()
+    {
+        ServerLog.setLevel(LogLevel.WARN);
+        servers = Executors.newCachedThreadPool();
+        clients = Executors.newCachedThreadPool();
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    @Override
+    public Operation get(String name)
+    {
+        if (!name.equals("round")) { throw new IllegalArgumentException("No operation " + name); }
+        return this::playRound;
+    }
+
+    @Override
+    public void close() throws InterruptedException
+    {
+        servers.shutdown();
+        clients.shutdown();
+        servers.awaitTermination(10, TimeUnit.SECONDS);
+        clients.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Plays a round of concurrent in-memory games, and waits for every one of
+     * them to end.
+     * @return The number of moves played.
+     * @throws Exception Thrown when a game fails.
+     */
+    private long playRound() throws Exception
+    {
+        List<Future<long[]>> results = new ArrayList<>();
+        for (int i = 0; i < GameThroughputBenchmark.GAMES; i++)
+        {
+            Player x = connect("X-" + i, 'X', results);
+            Player o = connect("O-" + i, 'O', results);
+            servers.execute(new ServerController(x, o));
+        }
+        long moves = 0;
+        for (Future<long[]> result : results) { moves += result.get().length; }
+        return moves;
+    }
+
+    /**
+     * Creates a server side player joined by pipes to a scripted client, and
+     * starts the client.
+     * @param name The name of the player.
+     * @param mark The mark of the player.
+     * @param results Receives the move round trip times of the client.
+     * @return The server side player.
+     * @throws IOException Thrown when the pipes cannot be connected.
+     */
+    private Player connect(String name, char mark, List<Future<long[]>> results) throws IOException
+    {
+        PipedInputStream serverIn = new PipedInputStream(PIPE_SIZE);
+        PipedInputStream clientIn = new PipedInputStream(PIPE_SIZE);
+        PipedOutputStream clientOut = new PipedOutputStream(serverIn);
+        PipedOutputStream serverOut = new PipedOutputStream(clientIn);
+        Player player = new Player(name, new BinaryPlayerConnection(serverIn, serverOut));
+        player.setMark(mark);
+        ClientConnection connection = new BinaryClientConnection(clientIn, clientOut);
+        results.add(clients.submit(() -> 
+        {
+            try { return BenchClient.play(connection, name); }
+            finally { connection.close(); }
+        }));
+        return player;
+    }
+}
@@ -0,0 +1,128 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import benchmarks.Operation;
+import benchmarks.Workload;
+
+/**
+ * This class holds the operations measured by benchmarks.SerializationBenchmark:
+ * putting a game state on the wire. A GameState is round tripped through a
+ * fresh pair of object streams, as the serialized protocol did for every
+ * update, and the same state is round tripped as a binary SNAPSHOT frame.
+ */
+public class SerializationWorkload implements Workload
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * The state that is round tripped: a game in progress with 5 marks.
+     */
+    private static final GameState STATE = createState();
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    @Override
+    public Operation get(String name)
+    {
+        switch (name)
+        {
+            case "objectRoundTrip": return SerializationWorkload::objectRoundTrip;
+            case "frameRoundTrip": return SerializationWorkload::frameRoundTrip;
+            case "objectBytes": return () -> writeObject().length;
+            case "frameBytes": return () -> writeFrame().length;
+            default: throw new IllegalArgumentException("No operation " + name);
+        }
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Creates the game state that is round tripped.
+     * @return A game state with 5 marks, O to play.
+     */
+    private static GameState createState()
+    {
+        Board board = new Board();
+        board.addMark(4, 'X');
+        board.addMark(0, 'O');
+        board.addMark(8, 'X');
+        board.addMark(2, 'O');
+        board.addMark(6, 'X');
+        return new GameState(board, new Player("Player-O", 'O'));
+    }
+
+    /**
+     * Writes the state through an object stream.
+     * @return The serialized bytes.
+     * @throws IOException Thrown when the stream fails.
+     */
+    private static byte[] writeObject() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(STATE);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Round trips the state through a pair of object streams.
+     * @return The mark count of the board that was read back.
+     * @throws Exception Thrown when the streams fail.
+     */
+    private static long objectRoundTrip() throws Exception
+    {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(writeObject()));
+        GameState state = (GameState) in.readObject();
+        return state.getBoard().getMarkCount();
+    }
+
+    /**
+     * Writes the state as a SNAPSHOT frame.
+     * @return The frame bytes.
+     * @throws IOException Thrown when the stream fails.
+     */
+    private static byte[] writeFrame() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        byte[] activeName = Protocol.encode(STATE.getActiveName());
+        byte[] idleName = Protocol.encode("Player-X");
+        Protocol.writeFrameHeader(out, Protocol.SNAPSHOT, 2 + 1 + Protocol.stringLength(activeName) + 
+            1 + Protocol.stringLength(idleName) + Protocol.boardLength(3));
+        out.writeShort(STATE.getBoard().getMarkCount());
+        out.writeByte('O');
+        Protocol.writeString(out, activeName);
+        out.writeByte('X');
+        Protocol.writeString(out, idleName);
+        Protocol.writeBoard(out, STATE.getBoard());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Round trips the state as a SNAPSHOT frame.
+     * @return The mark count of the board that was read back.
+     * @throws IOException Thrown when the streams fail.
+     */
+    private static long frameRoundTrip() throws IOException
+    {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(writeFrame()));
+        Protocol.readFrameLength(in);
+        in.readUnsignedByte();
+        in.readUnsignedShort();
+        in.readUnsignedByte();
+        Protocol.readString(in);
+        in.readUnsignedByte();
+        Protocol.readString(in);
+        return Protocol.readBoard(in).getMarkCount();
+    }
+}
@@ -0,0 +1,111 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class benchmarks the Board operations run on every move (see
+ * BoardWorkload): a whole 3x3 game of 9 scripted moves, checking for a win
+ * or for the end of the game after each move, and a scripted game of gomoku.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Marks every cell of a fresh board.
+     */
+    private Operation addMark;
+    /**
+     * Marks every cell of a fresh board, checking for a win after each mark.
+     */
+    private Operation hasWon;
+    /**
+     * Marks every cell of a fresh board, checking for the end after each
+     * mark.
+     */
+    private Operation hasEnded;
+    /**
+     * Plays the scripted gomoku game until it ends.
+     */
+    private Operation gomoku;
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Loads the operations from the workload.
+     * @throws ReflectiveOperationException Thrown when the workload cannot
+     * be loaded.
+     */
+    @Setup
+    public void setUp() throws ReflectiveOperationException
+    {
+        Workload workload = Workload.load("BoardWorkload");
+        addMark = workload.get("addMark");
+        hasWon = workload.get("hasWon");
+        hasEnded = workload.get("hasEnded");
+        gomoku = workload.get("gomoku");
+    }
+
+    /**
+     * Measures Board.addMark over 9 moves.
+     * @return The masks of the full board.
+     * @throws Exception Thrown when the operation fails.
+     */
+    @Benchmark
+    public long addMark() throws Exception
+    {
+        return addMark.run();
+    }
+
+    /**
+     * Measures Board.addMark and Board.hasWon over 9 moves.
+     * @return The number of moves after which a player had won.
+     * @throws Exception Thrown when the operation fails.
+     */
+    @Benchmark
+    public long addMarkHasWon() throws Exception
+    {
+        return hasWon.run();
+    }
+
+    /**
+     * Measures Board.addMark and Board.hasEnded over 9 moves.
+     * @return The number of moves after which the game had ended.
+     * @throws Exception Thrown when the operation fails.
+     */
+    @Benchmark
+    public long addMarkHasEnded() throws Exception
+    {
+        return hasEnded.run();
+    }
+
+    /**
+     * Measures Board.addMark and Board.hasEnded over a 15x15 game of gomoku.
+     * @return The number of moves played.
+     * @throws Exception Thrown when the operation fails.
+     */
+    @Benchmark
+    public long gomoku() throws Exception
+    {
+        return gomoku.run();
+    }
+}
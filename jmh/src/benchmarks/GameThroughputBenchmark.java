@@ -0,0 +1,84 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class benchmarks whole games played without any sockets (see
+ * GameThroughputWorkload). Every invocation plays a round of GAMES
+ * concurrent games between scripted clients, and the score is in games per
+ * second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GameThroughputBenchmark
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * The number of games played at once by every invocation.
+     */
+    public static final int GAMES = 200;
+    /**
+     * The workload playing the games, which owns their threads.
+     */
+    private Workload workload;
+    /**
+     * Plays a round of games.
+     */
+    private Operation round;
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Loads the workload and starts its threads.
+     * @throws ReflectiveOperationException Thrown when the workload cannot
+     * be loaded.
+     */
+    @Setup
+    public void setUp() throws ReflectiveOperationException
+    {
+        workload = Workload.load("GameThroughputWorkload");
+        round = workload.get("round");
+    }
+
+    /**
+     * Stops the workload's threads.
+     * @throws Exception Thrown when the threads cannot be stopped.
+     */
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        workload.close();
+    }
+
+    /**
+     * Measures a round of GAMES concurrent in-memory games.
+     * @return The number of moves played.
+     * @throws Exception Thrown when a game fails.
+     */
+    @Benchmark
+    @OperationsPerInvocation(GAMES)
+    public long games() throws Exception
+    {
+        return round.run();
+    }
+}
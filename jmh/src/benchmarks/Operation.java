@@ -0,0 +1,16 @@
+package benchmarks;
+
+/**
+ * This interface is a benchmarked operation of a Workload. It returns a
+ * value derived from its work, which the benchmark hands to JMH so that the
+ * work cannot be optimized away.
+ */
+public interface Operation
+{
+    /**
+     * Runs the operation once.
+     * @return A value derived from the work done.
+     * @throws Exception Thrown when the operation fails.
+     */
+    long run() throws Exception;
+}
@@ -0,0 +1,82 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class benchmarks the cost of putting a game state on the wire (see
+ * SerializationWorkload): a GameState round tripped through object streams,
+ * and the same state round tripped as a SNAPSHOT frame. The number of bytes
+ * each format takes is printed when the benchmark is set up.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Round trips the state through a pair of object streams.
+     */
+    private Operation objectRoundTrip;
+    /**
+     * Round trips the state as a SNAPSHOT frame.
+     */
+    private Operation frameRoundTrip;
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Loads the operations from the workload, and prints the size of the
+     * state in each format.
+     * @throws Exception Thrown when the workload cannot be loaded.
+     */
+    @Setup
+    public void setUp() throws Exception
+    {
+        Workload workload = Workload.load("SerializationWorkload");
+        objectRoundTrip = workload.get("objectRoundTrip");
+        frameRoundTrip = workload.get("frameRoundTrip");
+        System.out.println("GameState object stream bytes: " + workload.get("objectBytes").run());
+        System.out.println("SNAPSHOT frame bytes:          " + workload.get("frameBytes").run());
+    }
+
+    /**
+     * Measures a GameState round trip through a fresh pair of object
+     * streams.
+     * @return The mark count of the board that was read back.
+     * @throws Exception Thrown when the operation fails.
+     */
+    @Benchmark
+    public long objectRoundTrip() throws Exception
+    {
+        return objectRoundTrip.run();
+    }
+
+    /**
+     * Measures a SNAPSHOT frame round trip.
+     * @return The mark count of the board that was read back.
+     * @throws Exception Thrown when the operation fails.
+     */
+    @Benchmark
+    public long frameRoundTrip() throws Exception
+    {
+        return frameRoundTrip.run();
+    }
+}
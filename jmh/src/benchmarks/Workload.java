@@ -0,0 +1,37 @@
+package benchmarks;
+
+/**
+ * This interface is the set of operations measured by one benchmark. The
+ * game's classes are in the default package, which code in a named package
+ * cannot refer to, while JMH only accepts benchmarks in a named package. So
+ * each benchmark loads its workload (a class in the default package, which
+ * can refer to both) by name when its state is set up, then only calls the
+ * workload's operations through this interface.
+ */
+public interface Workload
+{
+    /**
+     * Gets one of the workload's operations.
+     * @param name The name of the operation.
+     * @return The operation.
+     */
+    Operation get(String name);
+
+    /**
+     * Lets go of anything the workload started (e.g. threads).
+     * @throws Exception Thrown when the workload cannot be stopped.
+     */
+    default void close() throws Exception { }
+
+    /**
+     * Creates a workload in the default package.
+     * @param className The name of the workload's class.
+     * @return A new instance of the workload.
+     * @throws ReflectiveOperationException Thrown when the workload cannot
+     * be created.
+     */
+    static Workload load(String className) throws ReflectiveOperationException
+    {
+        return (Workload) Class.forName(className).getDeclaredConstructor().newInstance();
+    }
+}
@@ -0,0 +1,176 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * This class accepts client connections without blocking on any single
+ * client. Accepted sockets are spread across a small number of HandshakeLoop
+ * threads which read the player names. Completed players are handed off to
+ * the server (e.g. to the matchmaking queue).
+ */
+public class Acceptor implements Runnable
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Non-blocking channel on which client connections are accepted.
+     */
+    private ServerSocketChannel serverChannel;
+    /**
+     * Selector used to wait for incoming connections.
+     */
+    private Selector selector;
+    /**
+     * Event loops used to perform the name handshake with new clients.
+     */
+    private HandshakeLoop[] loops;
+    /**
+     * Index of the event loop that will receive the next connection.
+     */
+    private int nextLoop;
+    /**
+     * Index of the event loop that will receive the next returning player.
+     * Players return from any game thread, so it is shared.
+     */
+    private AtomicInteger nextReturn;
+    /**
+     * Whether or not the acceptor is still accepting connections.
+     */
+    private volatile boolean isRunning;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs an Acceptor listening on the input port.
+     * @param portNumber The port that clients connect to.
+     * @param loopCount The number of handshake event loop threads.
+     * @param handshakeTimeout Milliseconds a client has to send its name
+     * before being disconnected.
+     * @param players Receives every player that completes the handshake. It
+     * is called from the handshake threads and must not block.
+     * @param spectators Receives the clients that ask to watch a game, or
+     * null if games may not be watched.
+     * @throws IOException Thrown when the port cannot be bound.
+     */
+    public Acceptor(int portNumber, int loopCount, long handshakeTimeout, Consumer<Player> players, 
+        SpectatorHub spectators) throws IOException
+    {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(portNumber), 1024);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        nextReturn = new AtomicInteger();
+        loops = new HandshakeLoop[loopCount];
+        for (int i = 0; i < loopCount; i++)
+        {
+            loops[i] = new HandshakeLoop(players, handshakeTimeout, spectators);
+        }
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Starts the accept thread and the handshake event loop threads.
+     */
+    public void start()
+    {
+        isRunning = true;
+        for (int i = 0; i < loops.length; i++)
+        {
+            startThread(loops[i], "handshake-" + i);
+        }
+        startThread(this, "acceptor");
+    }
+
+    /**
+     * Accepts connections until the acceptor is closed.
+     */
+    @Override
+    public void run()
+    {
+        try
+        {
+            while (isRunning)
+            {
+                selector.select();
+                selector.selectedKeys().clear();
+                acceptPending();
+            }
+        }
+        catch (IOException e) { if (isRunning) { ServerLog.warn("The acceptor stopped: {}", e); } }
+        finally { closeChannels(); }
+    }
+
+    /**
+     * Hands the handshake of a player returning from a game to the next
+     * event loop. Safe to call from any thread.
+     * @param handshake The handshake, holding the player's channel.
+     */
+    public void requeue(Handshake handshake)
+    {
+        loops[Math.floorMod(nextReturn.getAndIncrement(), loops.length)].register(handshake);
+    }
+
+    /**
+     * Stops accepting connections and closes the event loops. The channels
+     * are closed by the accept thread once it wakes up.
+     */
+    public void close()
+    {
+        isRunning = false;
+        for (HandshakeLoop loop : loops) { loop.close(); }
+        selector.wakeup();
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Accepts every pending connection and hands each one to an event loop.
+     * @throws IOException Thrown when the server channel fails.
+     */
+    private void acceptPending() throws IOException
+    {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null)
+        {
+            ServerMetrics.CONNECTIONS_ACCEPTED.increment();
+            loops[nextLoop].register(channel);
+            nextLoop = (nextLoop + 1) % loops.length;
+        }
+    }
+
+    /**
+     * Closes the selector and the server channel.
+     */
+    private void closeChannels()
+    {
+        try
+        {
+            selector.close();
+            serverChannel.close();
+        }
+        catch (IOException e) { ServerLog.warn("Could not close the server channel: {}", e.getMessage()); }
+    }
+
+    /**
+     * Starts the input runnable on a named daemon thread.
+     * @param runnable The runnable to start.
+     * @param name The name of the thread.
+     */
+    private void startThread(Runnable runnable, String name)
+    {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
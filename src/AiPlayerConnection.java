@@ -0,0 +1,55 @@
+/**
+ * This class connects the server to a computer opponent instead of a client.
+ * Moves are looked up in the PerfectPlay table, so the opponent never loses
+ * and costs no more than an array lookup per move. Anything sent to it is
+ * discarded.
+ */
+public class AiPlayerConnection implements PlayerConnection
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * The name given to computer opponents.
+     */
+    public static final String NAME = "Computer";
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Creates a computer opponent.
+     * @return A player backed by an AiPlayerConnection.
+     */
+    public static Player createPlayer()
+    {
+        return new Player(NAME, new AiPlayerConnection());
+    }
+
+    @Override
+    public void sendMessage(String message) { }
+
+    @Override
+    public void sendGameState(ServerModel model) { }
+
+    @Override
+    public void sendSnapshot(ServerModel model) { }
+
+    @Override
+    public void sendToken(long token) { }
+
+    @Override
+    public boolean isResumable() { return false; }
+
+    @Override
+    public boolean isOpen() { return true; }
+
+    @Override
+    public Move receiveMove(ServerModel model)
+    {
+        return new Move(PerfectPlay.bestMove(model.getBoard()), model.getSequence());
+    }
+
+    @Override
+    public void close() { }
+}
@@ -0,0 +1,277 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * This class connects the client to the server using the binary protocol.
+ * The client keeps its own copy of the board, which is replaced by SNAPSHOT
+ * frames and updated by UPDATE frames. The TOKEN sent after the HELLO is
+ * kept so that a game can be resumed over a new socket.
+ */
+public class BinaryClientConnection implements ClientConnection
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * The number of times a lost connection is reopened before giving up.
+     */
+    private static final int RESUME_ATTEMPTS = 30;
+    /**
+     * Milliseconds between attempts to reopen a lost connection.
+     */
+    private static final long RESUME_DELAY = 1000;
+    /**
+     * The socket (or stream) closed when the connection is closed.
+     */
+    private Closeable resource;
+    /**
+     * Stream used to read frames from the server.
+     */
+    private DataInputStream in;
+    /**
+     * Stream used to write frames to the server.
+     */
+    private DataOutputStream out;
+    /**
+     * The board as last described by the server.
+     */
+    private Board board;
+    /**
+     * Name of the player owning the 'X' mark.
+     */
+    private String xName;
+    /**
+     * Name of the player owning the 'O' mark.
+     */
+    private String oName;
+    /**
+     * The sequence number of the latest state received from the server.
+     */
+    private int sequence;
+    /**
+     * The address of the server, or null if the connection is not over a
+     * socket and cannot be reopened.
+     */
+    private InetSocketAddress serverAddress;
+    /**
+     * The token the game in progress may be resumed with, or 0 if none.
+     */
+    private long token;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs a BinaryClientConnection over the input socket.
+     * @param socket The socket connected to the server.
+     * @throws IOException Thrown when the socket's streams cannot be opened.
+     */
+    public BinaryClientConnection(Socket socket) throws IOException
+    {
+        this(socket.getInputStream(), socket.getOutputStream());
+        socket.setTcpNoDelay(true);
+        resource = socket;
+        serverAddress = (InetSocketAddress) socket.getRemoteSocketAddress();
+    }
+
+    /**
+     * Constructs a BinaryClientConnection over a pair of streams (e.g. piped
+     * streams for in-memory games).
+     * @param input The stream to read from the server.
+     * @param output The stream to write to the server.
+     */
+    public BinaryClientConnection(InputStream input, OutputStream output)
+    {
+        in = new DataInputStream(new BufferedInputStream(input));
+        out = new DataOutputStream(new BufferedOutputStream(output));
+        resource = output;
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    @Override
+    public void sendName(String name) throws IOException
+    {
+        Protocol.writeHeader(out);
+        Protocol.writeStringFrame(out, Protocol.HELLO, name);
+        out.flush();
+    }
+
+    @Override
+    public void watch(long gameId) throws IOException
+    {
+        Protocol.writeHeader(out);
+        Protocol.writeFrameHeader(out, Protocol.WATCH, 8);
+        out.writeLong(gameId);
+        out.flush();
+    }
+
+    @Override
+    public String receiveMessage() throws IOException
+    {
+        while (true)
+        {
+            int length = Protocol.readFrameLength(in);
+            int type = in.readUnsignedByte();
+            if (type == Protocol.TEXT) { return Protocol.readString(in); }
+            skipFrame(type, length);
+        }
+    }
+
+    /**
+     * Reads frames until the next SNAPSHOT or UPDATE. A TEXT frame arriving
+     * in their place means the game was ended by the server.
+     */
+    @Override
+    public GameState receiveGameState() throws IOException
+    {
+        while (true)
+        {
+            int length = Protocol.readFrameLength(in);
+            int type = in.readUnsignedByte();
+            if (type == Protocol.SNAPSHOT) { return readSnapshot(); }
+            else if (type == Protocol.UPDATE) { return readUpdate(); }
+            else if (type == Protocol.TEXT) { throw new GameInterruptedException(Protocol.readString(in)); }
+            skipFrame(type, length);
+        }
+    }
+
+    @Override
+    public void sendMove(GameState gameState, int cell) throws IOException
+    {
+        Protocol.writeFrameHeader(out, Protocol.MOVE, 3);
+        out.writeShort(sequence);
+        out.writeByte(cell);
+        out.flush();
+    }
+
+    @Override
+    public boolean resume()
+    {
+        if (serverAddress == null || token == 0) { return false; }
+        close();
+        for (int attempt = 0; attempt < RESUME_ATTEMPTS; attempt++)
+        {
+            try
+            {
+                Socket socket = new Socket(serverAddress.getAddress(), serverAddress.getPort());
+                socket.setTcpNoDelay(true);
+                resource = socket;
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                Protocol.writeHeader(out);
+                Protocol.writeFrameHeader(out, Protocol.RESUME, 10);
+                out.writeLong(token);
+                out.writeShort(board == null ? Protocol.NO_STATE : sequence);
+                out.flush();
+                return true;
+            }
+            catch (IOException e) 
+            { 
+                try { Thread.sleep(RESUME_DELAY); }
+                catch (InterruptedException interrupted) 
+                { 
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sends a HELLO frame without a header, as the server already knows the
+     * protocol spoken. The board and token of the last game are forgotten,
+     * so that the next game starts from its snapshot.
+     */
+    @Override
+    public boolean requeue(String name)
+    {
+        board = null;
+        token = 0;
+        try
+        {
+            Protocol.writeStringFrame(out, Protocol.HELLO, name);
+            out.flush();
+            return true;
+        }
+        catch (IOException e) { return false; }
+    }
+
+    @Override
+    public void close()
+    {
+        try { resource.close(); }
+        catch (IOException e) { e.printStackTrace(); }
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Skips a frame that is not expected at this point, keeping the token if
+     * it is a TOKEN frame.
+     * @param type The frame type, already read.
+     * @param length The frame length, including the type.
+     * @throws IOException Thrown when the server cannot be reached.
+     */
+    private void skipFrame(int type, int length) throws IOException
+    {
+        if (type == Protocol.TOKEN && length == 9) { token = in.readLong(); }
+        else { in.skipNBytes(length - 1); }
+    }
+
+    /**
+     * Reads a SNAPSHOT frame, replacing the players and the board.
+     * @return The GameState described by the frame.
+     * @throws IOException Thrown when the server cannot be reached.
+     */
+    private GameState readSnapshot() throws IOException
+    {
+        sequence = in.readUnsignedShort();
+        char activeMark = (char) in.readUnsignedByte();
+        String activeName = Protocol.readString(in);
+        char idleMark = (char) in.readUnsignedByte();
+        String idleName = Protocol.readString(in);
+        xName = activeMark == 'X' ? activeName : idleName;
+        oName = idleMark == 'O' ? idleName : activeName;
+        board = Protocol.readBoard(in);
+        return createGameState(activeMark);
+    }
+
+    /**
+     * Reads an UPDATE frame, applying the last move to the board.
+     * @return The GameState described by the frame.
+     * @throws IOException Thrown when the server cannot be reached.
+     */
+    private GameState readUpdate() throws IOException
+    {
+        sequence = in.readUnsignedShort();
+        int cell = in.readUnsignedByte();
+        char mark = (char) in.readUnsignedByte();
+        char activeMark = (char) in.readUnsignedByte();
+        if (cell != Protocol.NO_MOVE) { board.addMark(cell, mark); }
+        return createGameState(activeMark);
+    }
+
+    /**
+     * Creates a GameState holding a copy of the board, so that changes made
+     * by the client do not affect the server's view of the board.
+     * @param activeMark The mark of the active player.
+     * @return The new GameState.
+     */
+    private GameState createGameState(char activeMark)
+    {
+        String activeName = activeMark == 'X' ? xName : oName;
+        return new GameState(new Board(board), new Player(activeName, activeMark));
+    }
+}
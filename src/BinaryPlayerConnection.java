@@ -0,0 +1,193 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+
+/**
+ * This class connects the server to a client speaking the binary protocol.
+ * The whole board is only sent the first time a game state is sent (or when
+ * the client must be resynchronized). Every later update only carries the
+ * last accepted move. A client that resumes its game over a new connection
+ * is only sent the moves it missed, if there are few enough of them.
+ */
+public class BinaryPlayerConnection implements PlayerConnection
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * The socket (or stream) closed when the connection is closed.
+     */
+    private Closeable resource;
+    /**
+     * The channel of the socket connected to the client, or null if the
+     * connection is not over a socket.
+     */
+    private SocketChannel channel;
+    /**
+     * The stream read from the client, which can check that the client is
+     * still connected.
+     */
+    private WatchedInputStream watched;
+    /**
+     * Stream used to read frames from the client.
+     */
+    private DataInputStream in;
+    /**
+     * Stream used to write frames to the client.
+     */
+    private DataOutputStream out;
+    /**
+     * Whether or not the client has been sent the whole board.
+     */
+    private boolean hasSnapshot;
+    /**
+     * The sequence number of the latest state received by a client resuming
+     * its game, or -1 if the client is not resuming or has no state.
+     */
+    private int resumedSequence;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs a BinaryPlayerConnection over the input socket.
+     * @param socket The socket connected to the client.
+     * @param socketInput The stream to read from the client. Contains any
+     * bytes already read from the socket during the handshake.
+     * @throws IOException Thrown when the socket's streams cannot be opened.
+     */
+    public BinaryPlayerConnection(Socket socket, InputStream socketInput) throws IOException
+    {
+        this(socketInput, socket.getOutputStream(), socket.getChannel());
+        socket.setTcpNoDelay(true);
+        resource = socket;
+    }
+
+    /**
+     * Constructs a BinaryPlayerConnection over a pair of streams (e.g. piped
+     * streams for in-memory games).
+     * @param input The stream to read from the client.
+     * @param output The stream to write to the client.
+     */
+    public BinaryPlayerConnection(InputStream input, OutputStream output)
+    {
+        this(input, output, null);
+    }
+
+    /**
+     * Constructs a BinaryPlayerConnection over a pair of streams.
+     * @param input The stream to read from the client.
+     * @param output The stream to write to the client.
+     * @param channel The channel of the socket connected to the client, or
+     * null if the connection is not over a socket.
+     */
+    private BinaryPlayerConnection(InputStream input, OutputStream output, SocketChannel channel)
+    {
+        this.channel = channel;
+        watched = new WatchedInputStream(input, channel);
+        in = new DataInputStream(new BufferedInputStream(watched));
+        out = new DataOutputStream(new BufferedOutputStream(output));
+        resource = output;
+        resumedSequence = -1;
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    @Override
+    public void sendMessage(String message) throws IOException
+    {
+        Protocol.writeStringFrame(out, Protocol.TEXT, message);
+        out.flush();
+    }
+
+    @Override
+    public void sendGameState(ServerModel model) throws IOException
+    {
+        long start = System.nanoTime();
+        int written = out.size();
+        Protocol.writeGameState(out, model, hasSnapshot, resumedSequence);
+        out.flush();
+        hasSnapshot = true;
+        ServerMetrics.BINARY_STATE_SIZE.record(out.size() - written);
+        ServerMetrics.BINARY_STATE_TIME.record(System.nanoTime() - start);
+    }
+
+    @Override
+    public void sendSnapshot(ServerModel model) throws IOException
+    {
+        Protocol.writeSnapshot(out, model);
+        out.flush();
+        hasSnapshot = true;
+    }
+
+    @Override
+    public void sendToken(long token) throws IOException
+    {
+        Protocol.writeFrameHeader(out, Protocol.TOKEN, 8);
+        out.writeLong(token);
+        out.flush();
+    }
+
+    @Override
+    public boolean isResumable() { return true; }
+
+    @Override
+    public boolean isOpen() { return watched.isOpen(); }
+
+    @Override
+    public Move receiveMove(ServerModel model) throws IOException
+    {
+        while (true)
+        {
+            int length = Protocol.readFrameLength(in);
+            int type = in.readUnsignedByte();
+            if (type == Protocol.MOVE && length == 4) 
+            { 
+                int sequence = in.readUnsignedShort();
+                return new Move(in.readUnsignedByte(), sequence); 
+            }
+            // Skip frames that are not expected at this point
+            in.skipNBytes(length - 1);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        try { resource.close(); }
+        catch (IOException e) { ServerLog.warn("Could not close a player connection: {}", e.getMessage()); }
+    }
+
+    /**
+     * Hands the connection over to a GameLoop, which carries it on over its
+     * channel (see GameEngine). Takes the bytes already received from the
+     * client but not yet read (i.e. those that arrived along with its
+     * handshake), then lets go of the streams, so a hosted game does not
+     * keep their buffers. Only close may be called afterwards.
+     * @return The unread bytes.
+     * @throws IOException Thrown when the bytes cannot be read.
+     */
+    public byte[] detach() throws IOException
+    {
+        // Only counts the handshake's leftover bytes, so the socket is not read
+        byte[] unread = in.readNBytes(in.available());
+        in = null;
+        out = null;
+        return unread;
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public int getResumedSequence() { return resumedSequence; }
+    public void setResumedSequence(int resumedSequence) { this.resumedSequence = resumedSequence; }
+    public SocketChannel getChannel() { return channel; }
+}
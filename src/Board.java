@@ -3,8 +3,20 @@ import java.io.Serializable;
 /**
  * This class represents a tic-tac-toe board/grid. It contains the logic to
  * place markers and check win conditions.
+ *
+ * A board has a configurable size (rows and columns) and win length (the
+ * number of marks in a row needed to win), e.g. 3 and 3 for tic-tac-toe or
+ * 15 and 5 for gomoku. Cells are indexed in row major order (row * size +
+ * col), and each player's marks are stored as a bitset with one bit per
+ * cell. A win is detected when a mark is placed, by only counting the marks
+ * on the lines through that cell (or, for 3x3 tic-tac-toe, by looking the
+ * mask up in a table), so placing a mark costs O(winLength) and no method on
+ * the board allocates or loops over the grid except getBoard().
+ *
+ * For 3x3 boards the bitsets fit in 9 bit masks (see getXMask()), which are
+ * used by the analysis classes (e.g. PositionEvaluator).
  */
-public class Board implements Serializable 
+public class Board implements Serializable
 {
     //=========================================================================
     // Instance variables
@@ -12,138 +24,350 @@ public class Board implements Serializable
     /**
      * SerialVersionUID for serialization purposes.
      */
-    private static final long serialVersionUID = -4309518207161622889L;
+    private static final long serialVersionUID = 2841675519470734926L;
     /**
-     * A 2D array representing a 3x3 tic-tac-toe grid.
+     * Mask with a bit set for every space on a 3x3 board.
      */
-    private char[][] board;
+    public static final int FULL_MASK = 0x1FF;
+    /**
+     * The largest supported size, so that every cell index fits in a byte.
+     */
+    public static final int MAX_SIZE = 15;
+    /**
+     * Masks of the 8 winning lines of a 3x3 board: 3 rows, 3 columns and 2
+     * diagonals.
+     */
+    private static final int[] WIN_MASKS =
+    {
+        0x007, 0x038, 0x1C0,
+        0x049, 0x092, 0x124,
+        0x111, 0x054
+    };
+    /**
+     * Whether or not each of the 512 possible 3x3 masks contains a winning
+     * line.
+     */
+    private static final boolean[] IS_WIN = new boolean[FULL_MASK + 1];
+    static
+    {
+        for (int mask = 0; mask <= FULL_MASK; mask++)
+        {
+            for (int winMask : WIN_MASKS)
+            {
+                if ((mask & winMask) == winMask) { IS_WIN[mask] = true; }
+            }
+        }
+    }
+    /**
+     * Row and column steps of the 4 directions a line can run in: across,
+     * down and both diagonals.
+     */
+    private static final int[][] DIRECTIONS = { { 0, 1 }, { 1, 0 }, { 1, 1 }, { 1, -1 } };
+    /**
+     * The number of rows (and columns) of the board.
+     */
+    private int size;
+    /**
+     * The number of marks in a row needed to win.
+     */
+    private int winLength;
+    /**
+     * Bitset of the spaces marked 'X'.
+     */
+    private long[] xBits;
+    /**
+     * Bitset of the spaces marked 'O'.
+     */
+    private long[] oBits;
     /**
      * A count for the number of turns that have been played.
      */
     private int markCount;
+    /**
+     * Whether or not a player has a winning line.
+     */
+    private boolean isWon;
 
     //=========================================================================
     // Constructors
     //=========================================================================
     /**
-     * Constructor for Board that sets markCount to zero and creates a 2D array
-     * filled with space characters.
+     * Constructor for Board that creates an empty 3x3 tic-tac-toe board.
+     */
+    public Board()
+    {
+        this(3, 3);
+    }
+
+    /**
+     * Constructor for Board that creates an empty board.
+     * @param size The number of rows (and columns), from 1 to MAX_SIZE.
+     * @param winLength The number of marks in a row needed to win, from 1 to
+     * size.
      */
-    public Board() 
+    public Board(int size, int winLength)
     {
+        if (size < 1 || size > MAX_SIZE) { throw new IllegalArgumentException("Bad board size " + size); }
+        if (winLength < 1 || winLength > size) { throw new IllegalArgumentException("Bad win length " + winLength); }
+        this.size = size;
+        this.winLength = winLength;
+        xBits = new long[(size * size + 63) / 64];
+        oBits = new long[xBits.length];
         markCount = 0;
-        board = new char[3][3];
-        for (int i = 0; i < 3; i++) 
-        {
-            for (int j = 0; j < 3; j++) 
-            {
-                board[i][j] = ' ';
-            }
-        }
+        isWon = false;
+    }
+
+    /**
+     * Constructor for Board that copies the marks of another board.
+     * @param other The board to copy.
+     */
+    public Board(Board other)
+    {
+        size = other.size;
+        winLength = other.winLength;
+        xBits = other.xBits.clone();
+        oBits = other.oBits.clone();
+        markCount = other.markCount;
+        isWon = other.isWon;
     }
 
     //=========================================================================
     // Public methods
     //=========================================================================
+    /**
+     * Checks if a player's 3x3 mask contains a winning line.
+     * @param mask The 9 bit mask of one player's marks on a 3x3 board.
+     * @return True if the mask contains a winning line.
+     */
+    public static boolean isWin(int mask)
+    {
+        return IS_WIN[mask];
+    }
+
     /**
      * Checks a space to see if it is empty.
      * @param move Int[] containing row and column integers respectively.
      * @return True if space empty, false otherwise.
      */
-    public boolean isBlank(int[] move) 
+    public boolean isBlank(int[] move)
     {
-        return board[move[0]][move[1]] == ' ';
+        return isBlank(move[0] * size + move[1]);
     }
 
     /**
-     * Checks to see if the board is full (9 moves have been executed).
+     * Checks a space to see if it is empty.
+     * @param cell The index (row * size + col) of the space.
+     * @return True if space empty, false otherwise.
+     */
+    public boolean isBlank(int cell)
+    {
+        return !isSet(xBits, cell) && !isSet(oBits, cell);
+    }
+
+    /**
+     * Gets the mark in a space.
+     * @param cell The index (row * size + col) of the space.
+     * @return 'X', 'O', or ' ' if the space is empty.
+     */
+    public char getMark(int cell)
+    {
+        if (isSet(xBits, cell)) { return 'X'; }
+        else if (isSet(oBits, cell)) { return 'O'; }
+        return ' ';
+    }
+
+    /**
+     * Checks to see if the board is full (a mark has been placed in every
+     * space).
      * @return True if the board is full.
      */
-    public boolean isFull() 
+    public boolean isFull()
     {
-        return markCount >= 9;
+        return markCount >= size * size;
     }
 
     /**
      * Checks if the game has been won by a player.
      * @return True if the game has been won, false otherwise.
      */
-    public boolean hasWon() 
+    public boolean hasWon()
     {
-        return isHorizontalWin() || isVerticalWin() || isDiagonalWin();
+        return isWon;
     }
 
     /**
      * Checks to see if the game has ended. The game is ended if either player
-     * has won or the board is full. 
+     * has won or the board is full.
      * @return True if the game has ended, false otherwise.
      */
-    public boolean hasEnded() 
+    public boolean hasEnded()
     {
         return hasWon() || isFull();
     }
 
     /**
-     * Adds input mark to a particular slot on the board and increments 
+     * Adds input mark to a particular slot on the board and increments
      * markCount.
      * @param row  Integer indicating row.
      * @param col  Integer indicating column.
      * @param mark Char indicating the player's mark (X or O)
      */
-    public void addMark(int row, int col, char mark) 
+    public void addMark(int row, int col, char mark)
+    {
+        addMark(row * size + col, mark);
+    }
+
+    /**
+     * Adds input mark to a particular slot on the board and increments
+     * markCount if the slot was empty. Only the lines through the slot are
+     * checked for a win, except on 3x3 tic-tac-toe boards where the whole
+     * mask is looked up in a table of winning masks.
+     * @param cell The index (row * size + col) of the space.
+     * @param mark Char indicating the player's mark (X or O)
+     */
+    public void addMark(int cell, char mark)
+    {
+        if (isBlank(cell)) { markCount++; }
+        long bit = 1L << cell;
+        xBits[cell >>> 6] &= ~bit;
+        oBits[cell >>> 6] &= ~bit;
+        long[] bits = mark == 'X' ? xBits : oBits;
+        bits[cell >>> 6] |= bit;
+        if (isWon) { return; }
+        if (size == 3 && winLength == 3) { isWon = IS_WIN[(int) bits[0]]; }
+        else { isWon = completesLine(bits, cell); }
+    }
+
+    /**
+     * Finds the move that turns a previous board into this board.
+     * @param previous The board before the move.
+     * @param mark The mark of the player who moved.
+     * @return The index of the only space this board marks with the input
+     * mark that the previous board left blank, or -1 if this board drops a
+     * mark of the previous board, differs by more than that one mark, or has
+     * a different size. A malformed board (e.g. one received from a client
+     * whose bitsets do not fit its size) also gives -1.
+     */
+    public int findMove(Board previous, char mark)
     {
-        board[row][col] = mark;
-        markCount++;
+        if (previous.size != size || !hasBitsFor(previous.xBits.length)) { return -1; }
+        long[] mine = mark == 'X' ? xBits : oBits;
+        long[] theirs = mark == 'X' ? oBits : xBits;
+        long[] previousMine = mark == 'X' ? previous.xBits : previous.oBits;
+        long[] previousTheirs = mark == 'X' ? previous.oBits : previous.xBits;
+        int move = -1;
+        for (int word = 0; word < xBits.length; word++)
+        {
+            long added = mine[word] & ~previousMine[word];
+            if ((mine[word] & previousMine[word]) != previousMine[word] || theirs[word] != previousTheirs[word]) { return -1; }
+            if (added == 0) { continue; }
+            if (move >= 0 || Long.bitCount(added) != 1) { return -1; }
+            move = word * 64 + Long.numberOfTrailingZeros(added);
+        }
+        return move;
     }
 
     //=========================================================================
     // Private methods
     //=========================================================================
     /**
-     * Checks if a horizontal win case has occurred. 
-     * @return True if a horizontal win case has occurred, false otherwise.
+     * Checks that both bitsets of the board have the input number of words,
+     * which a deserialized board does not promise.
+     * @param words The number of words expected.
+     * @return True if both bitsets are present and have that many words.
      */
-    private boolean isHorizontalWin()
+    private boolean hasBitsFor(int words)
     {
-        for (int row = 0; row < 3; row++)
-        {
-            if (board[row][0] == board[row][1] && board[row][1] == board[row][2] && board[row][2] != ' ')
-            {
-                return true;
-            }
-        }
-        return false;
+        return xBits != null && oBits != null && xBits.length == words && oBits.length == words;
+    }
+
+    /**
+     * Checks a bit of a bitset.
+     * @param bits The bitset.
+     * @param cell The index of the bit.
+     * @return True if the bit is set.
+     */
+    private static boolean isSet(long[] bits, int cell)
+    {
+        return (bits[cell >>> 6] & (1L << cell)) != 0;
     }
 
     /**
-     * Checks if a vertical win case has occurred. 
-     * @return True if a vertical win case has occurred, false otherwise.
+     * Checks the 4 lines through a cell for winLength marks in a row.
+     * @param bits The bitset of the player who marked the cell.
+     * @param cell The index of the cell.
+     * @return True if a line through the cell is long enough to win.
      */
-    private boolean isVerticalWin()
+    private boolean completesLine(long[] bits, int cell)
     {
-        for (int col = 0; col < 3; col++)
+        int row = cell / size;
+        int col = cell % size;
+        for (int[] direction : DIRECTIONS)
         {
-            if (board[0][col] == board[1][col] && board[1][col] == board[2][col] && board[2][col] != ' ')
-            {
-                return true;
-            }   
+            int count = 1 + countRun(bits, row, col, direction[0], direction[1]) + 
+                countRun(bits, row, col, -direction[0], -direction[1]);
+            if (count >= winLength) { return true; }
         }
         return false;
     }
 
     /**
-     * Checks if a diagonal win case has occurred. 
-     * @return True if a diagonal win case has occurred, false otherwise.
+     * Counts the marks in a row next to a cell in one direction, stopping
+     * once enough marks to win have been found.
+     * @param bits The bitset of the player who marked the cell.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param rowStep The row step of the direction.
+     * @param colStep The column step of the direction.
+     * @return The number of marks in a row, not counting the cell itself.
      */
-    private boolean isDiagonalWin()
+    private int countRun(long[] bits, int row, int col, int rowStep, int colStep)
     {
-        return 
-            (board[0][0] == board[1][1] && board[0][0] == board[2][2] && board[0][0] != ' ') ||
-            (board[2][0] == board[1][1] && board[2][0] == board[0][2] && board[2][0] != ' ');
+        int count = 0;
+        row += rowStep;
+        col += colStep;
+        while (count < winLength - 1 && row >= 0 && row < size && col >= 0 && col < size && 
+            isSet(bits, row * size + col))
+        {
+            count++;
+            row += rowStep;
+            col += colStep;
+        }
+        return count;
     }
 
     //=========================================================================
     // Getters and setters
     //=========================================================================
-    public char[][] getBoard() { return board; }
-}
\ No newline at end of file
+    /**
+     * Gets the board as a grid of marks. A new array is created on every
+     * call, so changes to it do not affect the board.
+     * @return A size x size array of 'X', 'O' and ' ' characters.
+     */
+    public char[][] getBoard()
+    {
+        char[][] grid = new char[size][size];
+        for (int cell = 0; cell < size * size; cell++)
+        {
+            grid[cell / size][cell % size] = getMark(cell);
+        }
+        return grid;
+    }
+
+    /**
+     * Gets the marks of 'X' on a 3x3 board as a 9 bit mask.
+     * @return The lowest 9 bits of the 'X' bitset.
+     */
+    public int getXMask() { return (int) xBits[0] & FULL_MASK; }
+
+    /**
+     * Gets the marks of 'O' on a 3x3 board as a 9 bit mask.
+     * @return The lowest 9 bits of the 'O' bitset.
+     */
+    public int getOMask() { return (int) oBits[0] & FULL_MASK; }
+
+    public int getMarkCount() { return markCount; }
+    public int getSize() { return size; }
+    public int getWinLength() { return winLength; }
+    public int getCellCount() { return size * size; }
+}
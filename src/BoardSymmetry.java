@@ -0,0 +1,157 @@
+/**
+ * This class maps tic-tac-toe positions onto the 8 symmetries of the grid
+ * (4 rotations, each optionally mirrored). Positions that are rotations or
+ * reflections of each other play out the same way, so analysis only has to
+ * be done once for the canonical position of each group: the one whose key
+ * (xMask << 9 | oMask) is smallest.
+ *
+ * Every transform is applied to a 9 bit mask with a single table lookup.
+ */
+public final class BoardSymmetry
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Number of symmetries of the grid.
+     */
+    public static final int TRANSFORMS = 8;
+    /**
+     * Bits of a canonical result holding the key. The transform is stored in
+     * the bits above.
+     */
+    private static final int KEY_BITS = 18;
+    /**
+     * The cell each cell is moved to by each transform.
+     */
+    private static final int[][] CELL_MAPS = new int[TRANSFORMS][9];
+    /**
+     * The cell each cell is moved back to by the inverse of each transform.
+     */
+    private static final int[][] INVERSE_CELL_MAPS = new int[TRANSFORMS][9];
+    /**
+     * Each 9 bit mask as moved by each transform.
+     */
+    private static final short[][] MASK_MAPS = new short[TRANSFORMS][Board.FULL_MASK + 1];
+    static
+    {
+        for (int transform = 0; transform < TRANSFORMS; transform++)
+        {
+            for (int cell = 0; cell < 9; cell++)
+            {
+                int row = cell / 3;
+                int col = cell % 3;
+                for (int turn = 0; turn < transform % 4; turn++)
+                {
+                    int rotatedRow = col;
+                    col = 2 - row;
+                    row = rotatedRow;
+                }
+                if (transform >= 4) { col = 2 - col; }
+                CELL_MAPS[transform][cell] = row * 3 + col;
+                INVERSE_CELL_MAPS[transform][row * 3 + col] = cell;
+            }
+            for (int mask = 0; mask <= Board.FULL_MASK; mask++)
+            {
+                int mapped = 0;
+                for (int cell = 0; cell < 9; cell++)
+                {
+                    if ((mask & (1 << cell)) != 0) { mapped |= 1 << CELL_MAPS[transform][cell]; }
+                }
+                MASK_MAPS[transform][mask] = (short) mapped;
+            }
+        }
+    }
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * BoardSymmetry only holds static tables.
+     */
+    private BoardSymmetry() { }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Finds the canonical position of the input position and the transform
+     * that leads to it. Both are packed into one int so that no object is
+     * created; see keyOf() and transformOf().
+     * @param xMask Mask of the spaces marked 'X'.
+     * @param oMask Mask of the spaces marked 'O'.
+     * @return The canonical key and the transform that maps the input
+     * position onto it.
+     */
+    public static int canonicalize(int xMask, int oMask)
+    {
+        int best = Integer.MAX_VALUE;
+        int bestTransform = 0;
+        for (int transform = 0; transform < TRANSFORMS; transform++)
+        {
+            int key = MASK_MAPS[transform][xMask] << 9 | MASK_MAPS[transform][oMask];
+            if (key < best)
+            {
+                best = key;
+                bestTransform = transform;
+            }
+        }
+        return bestTransform << KEY_BITS | best;
+    }
+
+    /**
+     * Finds the canonical key of a board.
+     * @param board The board.
+     * @return The key (xMask << 9 | oMask) of the canonical position.
+     */
+    public static int canonicalKey(Board board)
+    {
+        return keyOf(canonicalize(board.getXMask(), board.getOMask()));
+    }
+
+    /**
+     * Gets the key from the result of canonicalize().
+     * @param canonical The result of canonicalize().
+     * @return The key (xMask << 9 | oMask) of the canonical position.
+     */
+    public static int keyOf(int canonical)
+    {
+        return canonical & ((1 << KEY_BITS) - 1);
+    }
+
+    /**
+     * Gets the transform from the result of canonicalize().
+     * @param canonical The result of canonicalize().
+     * @return The transform that maps the position onto the canonical one.
+     */
+    public static int transformOf(int canonical)
+    {
+        return canonical >>> KEY_BITS;
+    }
+
+    /**
+     * Moves a cell of a position to the matching cell of the transformed
+     * position.
+     * @param transform The transform.
+     * @param cell The index (row * 3 + col) of the cell.
+     * @return The index of the cell in the transformed position.
+     */
+    public static int mapCell(int transform, int cell)
+    {
+        return CELL_MAPS[transform][cell];
+    }
+
+    /**
+     * Moves a cell of a transformed position back to the matching cell of
+     * the original position (e.g. to play a move found for the canonical
+     * position).
+     * @param transform The transform.
+     * @param cell The index (row * 3 + col) of the cell in the transformed
+     * position.
+     * @return The index of the cell in the original position.
+     */
+    public static int unmapCell(int transform, int cell)
+    {
+        return INVERSE_CELL_MAPS[transform][cell];
+    }
+}
@@ -0,0 +1,74 @@
+import java.io.IOException;
+
+/**
+ * This interface is the client's side of the connection to the server. Each
+ * implementation speaks one version of the client-server protocol.
+ */
+public interface ClientConnection
+{
+    /**
+     * Sends the player's name to the server, which adds the player to the
+     * queue of players waiting for a game.
+     * @param name The name of the player.
+     * @throws IOException Thrown when the server cannot be reached.
+     */
+    void sendName(String name) throws IOException;
+
+    /**
+     * Asks the server to let the client watch a game rather than play one.
+     * The server answers with a message, then (if the game can be watched)
+     * the states of the game.
+     * @param gameId Id of the game, or 0 for the newest game.
+     * @throws IOException Thrown when the server cannot be reached, or the
+     * protocol cannot watch games.
+     */
+    void watch(long gameId) throws IOException;
+
+    /**
+     * Waits for the next text message from the server.
+     * @return The message sent by the server.
+     * @throws IOException Thrown when the server cannot be reached.
+     */
+    String receiveMessage() throws IOException;
+
+    /**
+     * Waits for the next game state from the server.
+     * @return The most up-to-date version of the GameState.
+     * @throws GameInterruptedException Thrown when the server ends the game
+     * early (e.g. when the opponent disconnects).
+     * @throws IOException Thrown when the server cannot be reached.
+     */
+    GameState receiveGameState() throws IOException;
+
+    /**
+     * Sends the player's move to the server.
+     * @param gameState The GameState, updated to include the move.
+     * @param cell The index (row * size + col) of the cell that was marked.
+     * @throws IOException Thrown when the server cannot be reached.
+     */
+    void sendMove(GameState gameState, int cell) throws IOException;
+
+    /**
+     * Opens a new connection to the server after the connection was lost
+     * (e.g. because the server restarted) and asks to resume the game in
+     * progress. Keeps trying for a while if the server cannot be reached.
+     * @return True if the request was sent. The server then sends the game's
+     * state once it continues, or a message if it cannot be resumed.
+     */
+    boolean resume();
+
+    /**
+     * Asks the server to queue the player for another game over the same
+     * connection once their game is over. The server answers as it does a
+     * new player's name.
+     * @param name The name of the player.
+     * @return True if the request was sent, or false if the protocol cannot
+     * play again over the same connection (or the server cannot be reached).
+     */
+    boolean requeue(String name);
+
+    /**
+     * Closes the connection to the server.
+     */
+    void close();
+}
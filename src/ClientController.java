@@ -1,14 +1,7 @@
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.PrintWriter;
-import java.io.StreamCorruptedException;
 import java.net.Socket;
 import java.net.UnknownHostException;
-import java.awt.event.ActionEvent;
-import javax.swing.JOptionPane;
+import java.nio.charset.StandardCharsets;
 
 /**
  * This class is the controller of the client MVC pattern. It controls the
@@ -22,29 +15,13 @@ public class ClientController
     // Instance variables
     //=========================================================================
     /**
-     * Is the socket used to communicate to and from the server.
+     * Is the connection used to communicate to and from the server.
      */
-    private Socket socket;
+    private ClientConnection connection;
     /**
-     * Writer used to write strings to the server.
+     * GUI for the tic-tac-toe game (or a headless stand-in for bots).
      */
-    private PrintWriter socketOut;
-    /**
-     * Reader used to read strings from the server.
-     */
-    private BufferedReader socketIn;
-    /**
-     * Serialization stream used to read serialized objects from the server.
-     */
-    private ObjectInputStream objectInputStream;
-    /**
-     * Serialization stream used to write serialized objects to the server.
-     */
-    private ObjectOutputStream objectOutputStream;
-    /**
-     * GUI for the tic-tac-toe game.
-     */
-    private ClientView view;
+    private ClientDisplay view;
     /**
      * Controller for the tic-tac-toe game on the client side.
      */
@@ -58,18 +35,48 @@ public class ClientController
      * Name of the client.
      */
     private String name;
+    /**
+     * Milliseconds for which the start of a game is counted down before the
+     * first turn is shown.
+     */
+    private int startDelay;
 
     //=========================================================================
     // Constructors
     //=========================================================================
     /**
-     * Constructs the client MVC pattern and connects to the server.
+     * Constructs the client MVC pattern and connects to the server using the
+     * binary protocol.
      * @param serverName The server name or IP address.
      * @param portNumber The server port number.
      */
     public ClientController(String serverName, int portNumber) 
     {
-        connectToServer(serverName, portNumber);
+        this(serverName, portNumber, Protocol.VERSION_BINARY);
+    }
+
+    /**
+     * Constructs the client MVC pattern and connects to the server.
+     * @param serverName The server name or IP address.
+     * @param portNumber The server port number.
+     * @param protocolVersion The version of the protocol to speak (see
+     * Protocol).
+     */
+    public ClientController(String serverName, int portNumber, int protocolVersion) 
+    {
+        this(connectToServer(serverName, portNumber, protocolVersion), new ClientView());
+    }
+
+    /**
+     * Constructs the client MVC pattern over an open connection. Used with a
+     * HeadlessDisplay to run bot clients.
+     * @param connection The connection to the server.
+     * @param view The view that shows the game and chooses moves.
+     */
+    public ClientController(ClientConnection connection, ClientDisplay view)
+    {
+        this.connection = connection;
+        this.view = view;
         initClientVariables();
         addButtonFunctionality();
     }
@@ -78,12 +85,46 @@ public class ClientController
     // Public methods
     //=========================================================================
     /**
-     * Sets up, runs, and ends the game and client connection.
+     * Sets up, runs, and ends the game and client connection. Once a game is
+     * over, the player is asked whether they would like to play again, and
+     * is queued for another game over the same connection if so.
      */
     public void communicate()
     {
         setUpGame();
         runGame();
+        while (view.promptPlayAgain() && connection.requeue(name))
+        {
+            waitForGameStart();
+            runGame();
+        }
+        disconnectFromServer();
+    }
+
+    /**
+     * Watches a game played by others until it ends.
+     * @param gameId Id of the game, or 0 for the newest game.
+     */
+    public void spectate(long gameId)
+    {
+        view.enableButtons(false);
+        view.setTextArea("Looking for a game to watch...");
+        try
+        {
+            connection.watch(gameId);
+            view.setTextArea(connection.receiveMessage());
+            // A client that cannot watch the game is disconnected instead
+            do
+            {
+                GameState gameState = connection.receiveGameState();
+                isLive = true;
+                updateClientGameState(gameState);
+                continueGameState(gameState);
+            }
+            while (isLive);
+        }
+        catch (GameInterruptedException e) { view.setTextArea(e.getMessage()); }
+        catch (IOException e) { if (isLive) { view.setTextArea("Connection to the server lost."); } }
         disconnectFromServer();
     }
 
@@ -94,17 +135,20 @@ public class ClientController
      * Initializes the connections between client and server.
      * @param serverName The server name or IP address.
      * @param portNumber The server port number.
+     * @param protocolVersion The version of the protocol to speak.
+     * @return The connection to the server, or null if it failed.
      */
-    private void connectToServer(String serverName, int portNumber)
+    private static ClientConnection connectToServer(String serverName, int portNumber, int protocolVersion)
     {
         try
         {
-            socket = new Socket(serverName, portNumber);
-            socketIn = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            socketOut = new PrintWriter(socket.getOutputStream(), true);
+            Socket socket = new Socket(serverName, portNumber);
+            if (protocolVersion == Protocol.VERSION_SERIALIZED) { return new SerializedClientConnection(socket); }
+            else { return new BinaryClientConnection(socket); }
         } 
         catch (UnknownHostException e) { e.printStackTrace(); } 
         catch (IOException e) { e.printStackTrace(); }
+        return null;
     }
 
     /**
@@ -112,76 +156,28 @@ public class ClientController
      */
     private void initClientVariables()
     {
-        view = new ClientView();
         model = new ClientModel();
         isLive = false;
         name = null;
+        startDelay = 2500;
     }
 
     /**
      * Adds functionality to the buttons in the View.
      */
     private void addButtonFunctionality()
-     {
-        // Add button functionality
-        view.addr0c0Listener((ActionEvent e) -> 
-        {
-            int[] move = { 0, 0 }; 
-            handleMove(move);
-        });
-        view.addr0c1Listener((ActionEvent e) -> 
-        {
-            int[] move = { 0, 1 };
-            handleMove(move);
-        });
-        view.addr0c2Listener((ActionEvent e) -> 
-        {
-            int[] move = { 0, 2 };
-            handleMove(move);
-        });
-        view.addr1c0Listener((ActionEvent e) -> 
-        {
-            int[] move = { 1, 0 };
-            handleMove(move);
-        });
-        view.addr1c1Listener((ActionEvent e) -> 
-        {
-            int[] move = { 1, 1 };
-            handleMove(move);
-        });
-        view.addr1c2Listener((ActionEvent e) -> 
-        {
-            int[] move = { 1, 2 };
-            handleMove(move);
-        });
-        view.addr2c0Listener((ActionEvent e) -> 
-        {
-            int[] move = { 2, 0 };
-            handleMove(move);
-        });
-        view.addr2c1Listener((ActionEvent e) -> 
-        {
-            int[] move = { 2, 1 };
-            handleMove(move);
-        });
-        view.addr2c2Listener((ActionEvent e) -> 
-        {
-            int[] move = { 2, 2 };
-            handleMove(move);
-        });
+    {
+        view.addMoveListener(this::handleMove);
     }
 
     /**
-     * Attempts to make the input move on the board. If the slot on the board
-     * is already taken, prompts the user to select a blank space.
+     * Hands the input move to the game thread, which is waiting for the 
+     * player to choose a move.
      * @param move Int[] containing row and column integers respectively.
      */
     private void handleMove(int[] move) 
     {
-        if (!model.attemptMove(move)) 
-        { 
-            view.setTextArea("Please select a blank space."); 
-        }
+        model.chooseMove(move);
     }
 
     /**
@@ -206,13 +202,14 @@ public class ClientController
 
     /**
      * Prompts the user to input their name. Repeats until a valid name is
-     * recieved.
+     * recieved (one the server accepts, see Protocol.MAX_NAME_LENGTH).
      */
     private void assignPlayerName() 
     {
-        while (name == null || name.isEmpty() || name == "")
+        while (name == null || name.isEmpty() || name == ""
+            || name.getBytes(StandardCharsets.UTF_8).length > Protocol.MAX_NAME_LENGTH)
         {
-            name = JOptionPane.showInputDialog("Please enter your name:", "");
+            name = view.promptName();
         }
     }
 
@@ -224,16 +221,15 @@ public class ClientController
         try
         {
             view.setNameField(name);
-            socketOut.println(name);
-            objectOutputStream = new ObjectOutputStream(socket.getOutputStream());
-            objectInputStream = new ObjectInputStream(socket.getInputStream());
+            connection.sendName(name);
         }
         catch (IOException e) { e.printStackTrace(); } 
     }
 
     /**
      * Waits for the game to begin once the player has been initialized. Begins
-     * the game once a start response is recieved from the server.
+     * the game once a start response is recieved from the server and the 
+     * start countdown has finished.
      */
     private void waitForGameStart()
     {
@@ -242,10 +238,10 @@ public class ClientController
             view.setTextArea("Waiting for opponent...");
             while (!isLive) 
             {
-                String response = socketIn.readLine();
+                String response = connection.receiveMessage();
                 if (response.equals("Opponent found. A new game has started!")) 
                 {
-                    view.setTextArea(response);
+                    countDown(response);
                     isLive = true;
                 }
             }
@@ -253,6 +249,26 @@ public class ClientController
         catch (IOException e) { e.printStackTrace(); } 
     }
 
+    /**
+     * Shows the input prompt with a countdown for startDelay milliseconds,
+     * so the player can read it before the game begins. The server does not
+     * wait for the countdown, so the first turn may already have arrived.
+     * @param prompt The prompt to show.
+     */
+    private void countDown(String prompt)
+    {
+        view.setTextArea(prompt);
+        try
+        {
+            for (int remaining = startDelay; remaining > 0; remaining -= 1000)
+            {
+                view.setTextArea(prompt + "\nStarting in " + (remaining + 999) / 1000 + "...");
+                Thread.sleep(Math.min(remaining, 1000));
+            }
+        }
+        catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
     /**
      * Runs the game. Begins by waiting for a game session update from the 
      * server. Once an update is recieved, the local game session is updated to
@@ -271,20 +287,27 @@ public class ClientController
     }
 
     /**
-     * Recieves the latest version of the GameState from the server.
+     * Recieves the latest version of the GameState from the server. If the
+     * connection is lost, the game is resumed over a new connection if
+     * possible.
      * @return The most up-to-date version of the GameState if properly
      * received from the server, null otherwise.
      */
     private GameState recieveGameStateUpdate()
     {
-        try { return (GameState)objectInputStream.readObject(); }
-        catch (StreamCorruptedException e) 
+        try { return connection.receiveGameState(); }
+        catch (GameInterruptedException e) 
         { 
-            view.setTextArea("Your opponent has rage quit. Game over.");
+            view.setTextArea(e.getMessage());
             isLive = false;
         }
-        catch (IOException e) { e.printStackTrace(); } 
-        catch (ClassNotFoundException e) { e.printStackTrace(); }
+        catch (IOException e) 
+        { 
+            view.enableButtons(false);
+            view.setTextArea("Connection to the server lost. Reconnecting...");
+            if (connection.resume()) { return recieveGameStateUpdate(); }
+            e.printStackTrace(); 
+        } 
         return null;
     }
 
@@ -345,8 +368,12 @@ public class ClientController
     private void playTurn(GameState gameState)
     {
         setUpTurn();
-        model.performOneMove();
-        endTurn(gameState);
+        try
+        {
+            while (!model.performOneMove()) { view.setTextArea("Please select a blank space."); }
+            endTurn(gameState);
+        }
+        catch (InterruptedException e) { isLive = false; }
     }
 
     /**
@@ -355,6 +382,7 @@ public class ClientController
     private void setUpTurn()
     {
         view.setTextArea("It's your turn to make a move");
+        model.clearChosenMoves();
         view.enableButtons(true);
     }
 
@@ -374,13 +402,14 @@ public class ClientController
     }
 
     /**
-     * Sends the most up-to-date version of the GameState to the server. 
+     * Sends the move just made to the server. A lost connection is noticed
+     * (and the game resumed) when the next GameState is awaited.
      * @param gameState The current GameState instance.
      */
     private void sendGameStateUpdate(GameState gameState)
     {
-        try { objectOutputStream.writeObject(gameState); }
-        catch (IOException e) { e.printStackTrace(); } 
+        try { connection.sendMove(gameState, model.getLastMove()); }
+        catch (IOException e) { } 
     }
 
     /**
@@ -407,22 +436,31 @@ public class ClientController
      */
     private void disconnectFromServer() 
     {
-        try 
-        {
-            socketIn.close();
-            socketOut.close();
-            objectInputStream.close();
-            objectOutputStream.close();
-        } 
-        catch (IOException e) { e.printStackTrace(); }
+        connection.close();
     }
 
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public void setStartDelay(int startDelay) { this.startDelay = startDelay; }
+
     //=========================================================================
     // Instance variables
     //=========================================================================
+    /**
+     * Starts a client. Pass "serialized" as the first argument to speak the
+     * original object stream protocol instead of the binary protocol, or
+     * "watch" (optionally followed by a game id) to watch a game.
+     */
     public static void main(String[] args) throws IOException 
     {
-        ClientController clientController = new ClientController("localhost", 9898);
-        clientController.communicate();
+        int protocolVersion = Protocol.VERSION_BINARY;
+        if (args.length > 0 && args[0].equals("serialized")) { protocolVersion = Protocol.VERSION_SERIALIZED; }
+        ClientController clientController = new ClientController("localhost", 9898, protocolVersion);
+        if (args.length > 0 && args[0].equals("watch")) 
+        { 
+            clientController.spectate(args.length > 1 ? Long.parseLong(args[1]) : 0);
+        }
+        else { clientController.communicate(); }
     }
 }
\ No newline at end of file
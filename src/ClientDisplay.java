@@ -0,0 +1,59 @@
+import java.util.function.Consumer;
+
+/**
+ * This interface is the part of the client's view used by ClientController.
+ * It is implemented by the Swing ClientView and by HeadlessDisplay, which lets
+ * a bot play through the same controller without a screen.
+ */
+public interface ClientDisplay
+{
+    /**
+     * Asks the user for their name.
+     * @return The name entered, which may be null or empty if none was given.
+     */
+    String promptName();
+
+    /**
+     * Asks the user whether they would like to play another game once their
+     * game is over.
+     * @return True if the user would like to play again.
+     */
+    boolean promptPlayAgain();
+
+    /**
+     * Registers the function called with each move the user chooses.
+     * @param listener Receives an int[] containing row and column integers
+     * respectively.
+     */
+    void addMoveListener(Consumer<int[]> listener);
+
+    /**
+     * Enables or disables the choice of moves.
+     * @param enable Whether or not moves may be chosen.
+     */
+    void enableButtons(boolean enable);
+
+    /**
+     * Shows the marks on the board.
+     * @param board A 2D array of 'X', 'O' and ' ' characters.
+     */
+    void updateButtonText(char[][] board);
+
+    /**
+     * Shows the mark of the active player.
+     * @param text The mark of the active player.
+     */
+    void setMarkField(String text);
+
+    /**
+     * Shows the name of the active player.
+     * @param text The name of the active player.
+     */
+    void setNameField(String text);
+
+    /**
+     * Shows a game prompt to the user.
+     * @param text The prompt.
+     */
+    void setTextArea(String text);
+}
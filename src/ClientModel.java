@@ -1,3 +1,6 @@
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
 /**
  * This class is the model of the client MVC pattern. It contains the 
  * tic-tac-toe game logic for the client.
@@ -15,6 +18,15 @@ public class ClientModel
      * The active player in the current turn.
      */
     private Player activePlayer;
+    /**
+     * The index (row * size + col) of the cell marked by the last move made.
+     */
+    private int lastMove;
+    /**
+     * Moves chosen by the user (e.g. through the View's buttons) that have not
+     * yet been played. The game thread waits on this queue during its turn.
+     */
+    private BlockingQueue<int[]> chosenMoves;
 
     //=========================================================================
     // Constructor
@@ -25,18 +37,41 @@ public class ClientModel
     public ClientModel() 
     {
         this.board = new Board();
+        this.chosenMoves = new LinkedBlockingQueue<>();
     }
 
     //=========================================================================
     // Public methods
     //=========================================================================
     /**
-     * Pauses the game until a valid move has been made (i.e. a valid move
-     * button has been pressed).
+     * Hands a move chosen by the user to the game thread. Safe to call from
+     * any thread (e.g. the Swing event thread).
+     * @param move Int[] containing row and column integers respectively.
+     */
+    public void chooseMove(int[] move)
+    {
+        chosenMoves.offer(move);
+    }
+
+    /**
+     * Discards any moves chosen before the current turn began.
+     */
+    public void clearChosenMoves()
+    {
+        chosenMoves.clear();
+    }
+
+    /**
+     * Pauses the game until a move has been chosen (i.e. a move button has
+     * been pressed), then attempts to make that move. The thread waits
+     * without using the CPU until a move is chosen.
+     * @return True if the move was made successfully, false if the chosen
+     * space was taken.
+     * @throws InterruptedException Thrown when interrupted while waiting.
      */
-    public void performOneMove() 
+    public boolean performOneMove() throws InterruptedException
     {
-        activePlayer.makeMove();
+        return attemptMove(chosenMoves.take());
     }
 
     /**
@@ -68,10 +103,11 @@ public class ClientModel
      */
     public boolean attemptMove(int[] move) 
     {
-        if (isBlank(move)) 
+        int size = board.getSize();
+        if (move[0] >= 0 && move[0] < size && move[1] >= 0 && move[1] < size && isBlank(move)) 
         {
             addMark(move[0], move[1], activePlayer.getMark());
-            activePlayer.setHasPlayed(true);
+            lastMove = move[0] * board.getSize() + move[1];
             return true;
         } 
         return false;
@@ -92,4 +128,5 @@ public class ClientModel
     public void setBoard(Board board) { this.board = board; }
     public Player getActivePlayer() { return activePlayer; }
     public void setActivePlayer(Player activePlayer) { this.activePlayer = activePlayer; }
+    public int getLastMove() { return lastMove; }
 }
\ No newline at end of file
@@ -7,18 +7,19 @@ import java.awt.ComponentOrientation;
 import javax.swing.JButton;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
 
-import java.awt.event.ActionListener;
+import java.util.function.Consumer;
 
 /**
  * This class is the view of the client MVC pattern. It contains the 
  * tic-tac-toe GUI for the client.
  */
-public class ClientView extends JFrame 
+public class ClientView extends JFrame implements ClientDisplay
 {
     //=========================================================================
     // Instance variables
@@ -51,41 +52,14 @@ public class ClientView extends JFrame
      */
     private JPanel centerPanel;
     /**
-     * Button representing space (0,0) on the board.
+     * Buttons representing the spaces on the board, indexed by row then
+     * column.
      */
-    private JButton r0c0Button;
+    private JButton[][] buttons;
     /**
-     * Button representing space (0,1) on the board.
+     * Receives the space of every button pressed.
      */
-    private JButton r0c1Button;
-    /**
-     * Button representing space (0,2) on the board.
-     */
-    private JButton r0c2Button;
-    /**
-     * Button representing space (1,0) on the board.
-     */
-    private JButton r1c0Button;
-    /**
-     * Button representing space (1,1) on the board.
-     */
-    private JButton r1c1Button;
-    /**
-     * Button representing space (1,2) on the board.
-     */
-    private JButton r1c2Button;
-    /**
-     * Button representing space (2,0) on the board.
-     */
-    private JButton r2c0Button;
-    /**
-     * Button representing space (2,1) on the board.
-     */
-    private JButton r2c1Button;
-    /**
-     * Button representing space (2,2) on the board.
-     */
-    private JButton r2c2Button;
+    private Consumer<int[]> moveListener;
 
     //=========================================================================
     // East components for border layout
@@ -119,38 +93,64 @@ public class ClientView extends JFrame
     //=========================================================================
     // Public methods
     //=========================================================================
+    /**
+     * Prompts the user to input their name in a dialog.
+     * @return The name entered, or null if the dialog was cancelled.
+     */
+    @Override
+    public String promptName()
+    {
+        return JOptionPane.showInputDialog("Please enter your name:", "");
+    }
+
+    /**
+     * Asks the user whether they would like to play again in a dialog.
+     * @return True if the user chose yes.
+     */
+    @Override
+    public boolean promptPlayAgain()
+    {
+        int choice = JOptionPane.showConfirmDialog(this, "Would you like to play again?", "Game over", 
+            JOptionPane.YES_NO_OPTION);
+        return choice == JOptionPane.YES_OPTION;
+    }
+
+    /**
+     * Registers the function called with the space of every button pressed.
+     * @param listener Receives an int[] containing row and column integers
+     * respectively.
+     */
+    @Override
+    public void addMoveListener(Consumer<int[]> listener)
+    {
+        moveListener = listener;
+    }
+
     /**
      * Toggles the tic-tac-toe buttons according to the input boolean.
      * @param enable Whether or not the buttons should be enabled.
      */
     public void enableButtons(boolean enable)
     {
-        r0c1Button.setEnabled(enable);
-        r0c0Button.setEnabled(enable);
-        r0c2Button.setEnabled(enable);
-        r1c0Button.setEnabled(enable);
-        r1c1Button.setEnabled(enable);
-        r1c2Button.setEnabled(enable);
-        r2c0Button.setEnabled(enable);
-        r2c1Button.setEnabled(enable);
-        r2c2Button.setEnabled(enable);
+        for (JButton[] row : buttons)
+        {
+            for (JButton button : row) { button.setEnabled(enable); }
+        }
     }
 
     /**
-     * Updates the text markers on the JButtons.
-     * @param board is a 2D array holding the game markers represented on a 3x3 game grid.
+     * Updates the text markers on the JButtons. The grid of buttons is
+     * rebuilt first if the board is not the size of the grid.
+     * @param board is a 2D array holding the game markers represented on a 
+     * square game grid.
      */
     public void updateButtonText(char[][] board) 
     {
-        r0c0Button.setText(board[0][0] + "");
-        r0c1Button.setText(board[0][1] + "");
-        r0c2Button.setText(board[0][2] + "");
-        r1c0Button.setText(board[1][0] + "");
-        r1c1Button.setText(board[1][1] + "");
-        r1c2Button.setText(board[1][2] + "");
-        r2c0Button.setText(board[2][0] + "");
-        r2c1Button.setText(board[2][1] + "");
-        r2c2Button.setText(board[2][2] + "");
+        if (board.length != buttons.length) { buildButtons(board.length); }
+        for (int row = 0; row < board.length; row++)
+        {
+            for (int col = 0; col < board.length; col++) { buttons[row][col].setText(board[row][col] + ""); }
+        }
     }
 
     //=========================================================================
@@ -167,21 +167,11 @@ public class ClientView extends JFrame
         nameField = new JTextField(5);
         // Center
         centerPanel = new JPanel();
-        r0c0Button = new JButton("");
-        r0c1Button = new JButton("");
-        r0c2Button = new JButton("");
-        r1c0Button = new JButton("");
-        r1c1Button = new JButton("");
-        r1c2Button = new JButton("");
-        r2c0Button = new JButton("");
-        r2c1Button = new JButton("");
-        r2c2Button = new JButton("");
+        buttons = new JButton[0][0];
         // East
         eastPanel = new JPanel();
         textArea = new JTextArea(10, 25);
         scrollPane = new JScrollPane(textArea);
-        // Disable the tic-tac-toe buttons
-        enableButtons(false);
         // Make textFields not editable
         makeTextFieldsUneditable();
     }
@@ -223,72 +213,41 @@ public class ClientView extends JFrame
      */
     private void initPanels()
     {
-        // Set layout for center panel
-        centerPanel.setLayout(new GridLayout(3, 3, 5, 5));
         // Place the components into their respective panels
         northPanel.add(new JLabel("Active Player:"));
         northPanel.add(nameField);
         northPanel.add(new JLabel("Mark:"));
         northPanel.add(markField);
         centerPanel.setComponentOrientation(ComponentOrientation.LEFT_TO_RIGHT);
-        centerPanel.add(r0c0Button);
-        centerPanel.add(r0c1Button);
-        centerPanel.add(r0c2Button);
-        centerPanel.add(r1c0Button);
-        centerPanel.add(r1c1Button);
-        centerPanel.add(r1c2Button);
-        centerPanel.add(r2c0Button);
-        centerPanel.add(r2c1Button);
-        centerPanel.add(r2c2Button);
+        buildButtons(3);
         eastPanel.add(scrollPane);
     }
 
-    //=========================================================================
-    // Listener methods (Used by controller to add functionality to buttons)
-    //=========================================================================
-    public void addr0c0Listener(ActionListener listener) 
-    {
-        r0c0Button.addActionListener(listener);
-    }
-
-    public void addr0c1Listener(ActionListener listener) 
-    {
-        r0c1Button.addActionListener(listener);
-    }
-
-    public void addr0c2Listener(ActionListener listener) 
-    {
-        r0c2Button.addActionListener(listener);
-    }
-
-    public void addr1c0Listener(ActionListener listener) 
-    {
-        r1c0Button.addActionListener(listener);
-    }
-
-    public void addr1c1Listener(ActionListener listener) 
-    {
-        r1c1Button.addActionListener(listener);
-    }
-
-    public void addr1c2Listener(ActionListener listener) 
-    {
-        r1c2Button.addActionListener(listener);
-    }
-
-    public void addr2c0Listener(ActionListener listener) 
-    {
-        r2c0Button.addActionListener(listener);
-    }
-
-    public void addr2c1Listener(ActionListener listener) 
-    {
-        r2c1Button.addActionListener(listener);
-    }
-
-    public void addr2c2Listener(ActionListener listener) 
+    /**
+     * Replaces the buttons with a disabled grid of the input size, and
+     * resizes the window to fit it.
+     * @param size The number of rows (and columns) of the board.
+     */
+    private void buildButtons(int size)
     {
-        r2c2Button.addActionListener(listener);
+        centerPanel.removeAll();
+        centerPanel.setLayout(new GridLayout(size, size, 5, 5));
+        buttons = new JButton[size][size];
+        for (int row = 0; row < size; row++)
+        {
+            for (int col = 0; col < size; col++)
+            {
+                int[] move = { row, col };
+                JButton button = new JButton("");
+                button.setEnabled(false);
+                button.addActionListener(e -> { if (moveListener != null) { moveListener.accept(move); } });
+                buttons[row][col] = button;
+                centerPanel.add(button);
+            }
+        }
+        setPreferredSize(new Dimension(Math.max(500, 300 + size * 40), Math.max(300, 60 + size * 40)));
+        pack();
+        revalidate();
     }
 
     //=========================================================================
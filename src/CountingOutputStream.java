@@ -0,0 +1,55 @@
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * This class counts the bytes written through it to another stream.
+ */
+public class CountingOutputStream extends FilterOutputStream
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Number of bytes written so far.
+     */
+    private long count;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs a CountingOutputStream.
+     * @param out The stream the bytes are written to.
+     */
+    public CountingOutputStream(OutputStream out)
+    {
+        super(out);
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    @Override
+    public void write(int b) throws IOException
+    {
+        out.write(b);
+        count++;
+    }
+
+    /**
+     * Writes the bytes to the underlying stream at once, rather than one at a
+     * time as FilterOutputStream does.
+     */
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException
+    {
+        out.write(bytes, offset, length);
+        count += length;
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public long getCount() { return count; }
+}
@@ -0,0 +1,197 @@
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class is a log that never makes the logging thread wait. Events are
+ * copied into a ring buffer of preallocated slots (see LogEvent), and a
+ * single writer thread formats them and writes them out in batches. When the
+ * ring is full the event is dropped and counted rather than waited for.
+ */
+public class EventLog implements Runnable
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Nanoseconds the writer thread sleeps when there is nothing to write.
+     */
+    private static final long IDLE_WAIT = 5_000_000;
+    /**
+     * The most events written to the output at once.
+     */
+    private static final int MAX_BATCH = 1024;
+    /**
+     * Milliseconds flush waits for the writer thread at most.
+     */
+    private static final long FLUSH_TIMEOUT = 1000;
+    /**
+     * Slots holding the events, indexed by sequence number modulo length.
+     */
+    private LogEvent[] ring;
+    /**
+     * Mask turning a sequence number into an index of the ring.
+     */
+    private int mask;
+    /**
+     * Sequence number the next event will claim.
+     */
+    private AtomicLong head;
+    /**
+     * Sequence number of the next event to write. Slots before it are free.
+     */
+    private volatile long tail;
+    /**
+     * The least important level written.
+     */
+    private volatile LogLevel level;
+    /**
+     * The stream the events are written to.
+     */
+    private PrintStream output;
+    /**
+     * Number of events dropped because the ring was full.
+     */
+    private LongAdder dropped;
+    /**
+     * Text of the batch being written. Only used by the writer thread.
+     */
+    private StringBuilder batch;
+    /**
+     * The thread writing the events, or null if not started.
+     */
+    private Thread writer;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs an EventLog writing INFO (and more important) events to the
+     * input stream.
+     * @param capacity The number of events the ring holds. Rounded up to a
+     * power of two.
+     * @param output The stream the events are written to.
+     */
+    public EventLog(int capacity, PrintStream output)
+    {
+        int length = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        ring = new LogEvent[length];
+        for (int i = 0; i < length; i++) { ring[i] = new LogEvent(); }
+        mask = length - 1;
+        head = new AtomicLong();
+        level = LogLevel.INFO;
+        this.output = output;
+        dropped = new LongAdder();
+        batch = new StringBuilder();
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Starts the writer thread. It is a daemon thread, so it does not keep
+     * the JVM alive; call flush before exiting to write pending events.
+     */
+    public void start()
+    {
+        writer = new Thread(this, "event-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Checks to see if events of the input level are written.
+     * @param level The level of the event.
+     * @return True if the events are written.
+     */
+    public boolean isEnabled(LogLevel level)
+    {
+        return level.compareTo(this.level) >= 0;
+    }
+
+    /**
+     * Logs an event without waiting. The arguments are only turned into text
+     * by the writer thread, so they must not be changed afterwards.
+     * @param level The level of the event.
+     * @param template The message, with a "{}" placeholder per argument.
+     * @param arg0 The first argument, or null.
+     * @param arg1 The second argument, or null.
+     * @param arg2 The third argument, or null.
+     */
+    public void log(LogLevel level, String template, Object arg0, Object arg1, Object arg2)
+    {
+        if (!isEnabled(level)) { return; }
+        long sequence;
+        do
+        {
+            sequence = head.get();
+            if (sequence - tail >= ring.length)
+            {
+                dropped.increment();
+                return;
+            }
+        }
+        while (!head.compareAndSet(sequence, sequence + 1));
+        ring[(int) sequence & mask].publish(sequence, level, template, arg0, arg1, arg2);
+    }
+
+    /**
+     * Waits (for up to a second) until every event logged so far has been
+     * written.
+     */
+    public void flush()
+    {
+        long target = head.get();
+        long deadline = System.currentTimeMillis() + FLUSH_TIMEOUT;
+        while (tail < target && writer != null && System.currentTimeMillis() < deadline)
+        {
+            LockSupport.parkNanos(IDLE_WAIT);
+        }
+    }
+
+    /**
+     * Writes events in batches for as long as the JVM runs.
+     */
+    @Override
+    public void run()
+    {
+        while (true)
+        {
+            if (!writeBatch()) { LockSupport.parkNanos(IDLE_WAIT); }
+        }
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Formats the published events at the tail of the ring, frees their
+     * slots, then writes them out with a single call.
+     * @return True if any events were written.
+     */
+    private boolean writeBatch()
+    {
+        long sequence = tail;
+        long end = sequence + MAX_BATCH;
+        LogEvent event;
+        while (sequence < end && (event = ring[(int) sequence & mask]).getSequence() == sequence)
+        {
+            event.drainTo(batch);
+            sequence++;
+        }
+        if (sequence == tail) { return false; }
+        tail = sequence;
+        output.print(batch);
+        output.flush();
+        batch.setLength(0);
+        return true;
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public LogLevel getLevel() { return level; }
+    public void setLevel(LogLevel level) { this.level = level; }
+    public long getDropped() { return dropped.sum(); }
+}
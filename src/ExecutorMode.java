@@ -0,0 +1,66 @@
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This enum lists the ways in which the server can run its games (i.e.
+ * ServerController instances, or GameSession instances on a GameEngine).
+ */
+public enum ExecutorMode
+{
+    /**
+     * Games run on a fixed number of platform threads. Extra games wait for a
+     * running game to finish.
+     */
+    FIXED,
+    /**
+     * Every game runs on its own virtual thread, so blocking reads do not tie
+     * up a platform thread.
+     */
+    VIRTUAL,
+    /**
+     * Games are hosted by a few event loop threads (see GameEngine), each
+     * running many games. Games the loops cannot host (e.g. those of
+     * serialized protocol players) run on a fixed number of platform
+     * threads.
+     */
+    LOOP;
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Creates the executor used to run games in this mode.
+     * @param poolSize The number of threads used by the FIXED and LOOP
+     * modes.
+     * @return The executor that games are submitted to.
+     */
+    public ExecutorService createExecutor(int poolSize)
+    {
+        if (this != VIRTUAL) { return Executors.newFixedThreadPool(poolSize); }
+        return newVirtualThreadExecutor();
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Creates a thread-per-task executor backed by virtual threads. Virtual
+     * threads are looked up at runtime so the server still runs on older
+     * JDKs, where an unbounded pool of platform threads is used instead.
+     * @return A thread-per-task executor.
+     */
+    private static ExecutorService newVirtualThreadExecutor()
+    {
+        try
+        {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            ServerLog.warn("Virtual threads are not supported by this JVM. Using platform threads...");
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * This class matches waiting players in the order they were queued. The
+ * player who has waited the longest plays 'X'.
+ */
+public class FifoMatchStrategy implements MatchStrategy
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Waiting players, oldest first.
+     */
+    private Deque<MatchTicket> waiting;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs an empty FifoMatchStrategy.
+     */
+    public FifoMatchStrategy()
+    {
+        waiting = new ArrayDeque<>();
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    @Override
+    public void add(MatchTicket ticket)
+    {
+        // A player put back after their opponent left was queued before everyone still waiting
+        MatchTicket oldest = waiting.peekFirst();
+        if (oldest != null && ticket.getEnqueuedAt() - oldest.getEnqueuedAt() < 0) { waiting.addFirst(ticket); }
+        else { waiting.addLast(ticket); }
+    }
+
+    @Override
+    public MatchTicket[] nextMatch(long now)
+    {
+        if (waiting.size() < 2) { return null; }
+        return new MatchTicket[] { waiting.pollFirst(), waiting.pollFirst() };
+    }
+
+    @Override
+    public MatchTicket pollWaitingSince(long now, long maxWait)
+    {
+        MatchTicket oldest = waiting.peekFirst();
+        if (oldest == null || oldest.getWaitTime(now) < maxWait) { return null; }
+        return waiting.pollFirst();
+    }
+
+    @Override
+    public int size()
+    {
+        return waiting.size();
+    }
+}
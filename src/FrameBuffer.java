@@ -0,0 +1,49 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * This class is a reusable buffer frames are encoded into before being
+ * written to a channel. Each GameLoop owns one, so encoding a frame does not
+ * allocate.
+ */
+public class FrameBuffer extends ByteArrayOutputStream
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Stream used to encode frames into the buffer.
+     */
+    private DataOutputStream out;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs an empty FrameBuffer.
+     */
+    public FrameBuffer()
+    {
+        super(1024);
+        out = new DataOutputStream(this);
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Wraps the encoded bytes without copying them. The wrapper is only
+     * valid until the buffer is next reset.
+     * @return The encoded bytes.
+     */
+    public ByteBuffer toByteBuffer()
+    {
+        return ByteBuffer.wrap(buf, 0, count);
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public DataOutputStream getOut() { return out; }
+}
@@ -0,0 +1,237 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This class broadcasts the states of one game to its spectators. The game
+ * thread encodes each state once, as a read-only frame shared by every
+ * spectator, and leaves the writing to the SpectatorHub's thread. The game
+ * thread therefore does the same work however many spectators there are, and
+ * never waits on one. While nobody is watching, the game thread encodes
+ * nothing at all, so a spectator who joins is sent the board along with the
+ * next state of the game.
+ */
+public class GameBroadcast
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * The number of latest UPDATE frames kept for spectators that fall
+     * behind. A spectator further behind is sent a SNAPSHOT instead.
+     */
+    private static final int RECENT_UPDATES = 8;
+    /**
+     * Offset of the sequence number in a SNAPSHOT or UPDATE frame.
+     */
+    private static final int SEQUENCE_OFFSET = 3;
+    /**
+     * Id of the game.
+     */
+    private long gameId;
+    /**
+     * Describes the game to its spectators (e.g. "game 7 between A and B").
+     */
+    private String title;
+    /**
+     * The hub writing the frames to the spectators.
+     */
+    private SpectatorHub hub;
+    /**
+     * The latest UPDATE frames, indexed by sequence number modulo
+     * RECENT_UPDATES.
+     */
+    private AtomicReferenceArray<ByteBuffer> updates;
+    /**
+     * SNAPSHOT frame of the latest state, or null if none has been published
+     * since the game was last watched.
+     */
+    private volatile ByteBuffer snapshot;
+    /**
+     * TEXT frame sent once the game is over, or null while it is being
+     * played.
+     */
+    private volatile ByteBuffer farewell;
+    /**
+     * Number of spectators watching (or about to watch) the game.
+     */
+    private AtomicInteger watchers;
+    /**
+     * Whether or not the broadcast is waiting for the hub to write its
+     * frames.
+     */
+    private AtomicBoolean isScheduled;
+    /**
+     * Spectators watching the game. Only used by the hub's thread.
+     */
+    private List<Spectator> spectators;
+    /**
+     * Buffer frames are encoded into. Only used by the game thread.
+     */
+    private ByteArrayOutputStream bytes;
+    /**
+     * Stream writing into the buffer.
+     */
+    private DataOutputStream out;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs a GameBroadcast for the input game.
+     * @param gameId Id of the game.
+     * @param model The model of the game.
+     * @param hub The hub writing the frames to the spectators.
+     */
+    public GameBroadcast(long gameId, ServerModel model, SpectatorHub hub)
+    {
+        this.gameId = gameId;
+        this.hub = hub;
+        title = "game " + gameId + " between " + model.getIdlePlayer().getName() +
+            " and " + model.getActivePlayer().getName();
+        updates = new AtomicReferenceArray<>(RECENT_UPDATES);
+        watchers = new AtomicInteger();
+        isScheduled = new AtomicBoolean();
+        spectators = new ArrayList<>();
+        bytes = new ByteArrayOutputStream();
+        out = new DataOutputStream(bytes);
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Publishes the latest state of the game. Called by the game thread
+     * after every change of state. The frames are only encoded while the
+     * game is watched. Otherwise the frames kept from when it was last
+     * watched are let go, so a spectator who joins is not sent a stale
+     * board.
+     * @param model The model of the game.
+     */
+    public void publish(ServerModel model)
+    {
+        if (watchers.get() == 0)
+        {
+            if (snapshot != null) { forget(); }
+            return;
+        }
+        try
+        {
+            int sequence = model.getSequence();
+            int cell = sequence > 0 ? model.getLastMove() : -1;
+            Protocol.writeUpdate(out, model, sequence, cell, model.getActivePlayer().getMark());
+            updates.set(sequence % RECENT_UPDATES, takeFrame());
+            Protocol.writeSnapshot(out, model);
+            snapshot = takeFrame();
+        }
+        catch (IOException e) { ServerLog.warn("Could not encode a spectator frame: {}", e); }
+        hub.schedule(this);
+    }
+
+    /**
+     * Gets the next frame a spectator should be sent: the next UPDATE if it
+     * is still known, otherwise a SNAPSHOT of the latest state.
+     * @param sentSequence The sequence number of the latest state sent to
+     * the spectator, or -1 if it has been sent none.
+     * @return A frame for the spectator alone to write, or null if the
+     * spectator is up to date.
+     */
+    public ByteBuffer nextFrame(int sentSequence)
+    {
+        ByteBuffer latest = snapshot;
+        if (latest == null || sentSequence >= getSequence(latest)) { return null; }
+        if (sentSequence >= 0)
+        {
+            ByteBuffer update = updates.get((sentSequence + 1) % RECENT_UPDATES);
+            if (update != null && getSequence(update) == sentSequence + 1) { return update.duplicate(); }
+        }
+        return latest.duplicate();
+    }
+
+    /**
+     * Reserves a place for a new spectator.
+     * @param maxSpectators The most spectators the game may have.
+     * @return True if the spectator may watch the game.
+     */
+    public boolean join(int maxSpectators)
+    {
+        if (watchers.incrementAndGet() <= maxSpectators) { return true; }
+        watchers.decrementAndGet();
+        return false;
+    }
+
+    /**
+     * Gives up the place of a spectator that has stopped watching.
+     */
+    public void leave()
+    {
+        watchers.decrementAndGet();
+    }
+
+    /**
+     * Marks the broadcast as waiting for the hub.
+     * @return True if it was not already waiting.
+     */
+    public boolean schedule()
+    {
+        return isScheduled.compareAndSet(false, true);
+    }
+
+    /**
+     * Marks the broadcast as no longer waiting for the hub. Called by the hub
+     * before it writes the frames, so later states schedule it again.
+     */
+    public void unschedule()
+    {
+        isScheduled.set(false);
+    }
+
+    /**
+     * Gets the sequence number of a SNAPSHOT or UPDATE frame.
+     * @param frame The frame.
+     * @return The sequence number.
+     */
+    public static int getSequence(ByteBuffer frame)
+    {
+        return frame.getShort(SEQUENCE_OFFSET) & 0xFFFF;
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Lets go of the frames kept for spectators once nobody is watching.
+     */
+    private void forget()
+    {
+        snapshot = null;
+        for (int i = 0; i < RECENT_UPDATES; i++) { updates.set(i, null); }
+    }
+
+    /**
+     * Takes the frame encoded in the buffer, leaving the buffer empty.
+     * @return The frame, read-only so it can be shared.
+     */
+    private ByteBuffer takeFrame()
+    {
+        ByteBuffer frame = ByteBuffer.wrap(bytes.toByteArray()).asReadOnlyBuffer();
+        bytes.reset();
+        return frame;
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public long getGameId() { return gameId; }
+    public String getTitle() { return title; }
+    public ByteBuffer getFarewell() { return farewell; }
+    public void setFarewell(ByteBuffer farewell) { this.farewell = farewell; }
+    public List<Spectator> getSpectators() { return spectators; }
+    public int getWatcherCount() { return watchers.get(); }
+}
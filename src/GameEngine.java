@@ -0,0 +1,107 @@
+import java.io.IOException;
+
+/**
+ * This class hosts games on a few event loop threads (see GameLoop) instead
+ * of a thread per game. Games are spread over the loops in turn. Only games
+ * whose players all speak the binary protocol over a socket (or are
+ * computer opponents) can be hosted; other games are left to the executor.
+ */
+public class GameEngine
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * The loops hosting the games.
+     */
+    private GameLoop[] loops;
+    /**
+     * Index of the loop given the next game. Only used by the matchmaker
+     * thread.
+     */
+    private int next;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs a GameEngine and starts its loops.
+     * @param loopCount The number of event loop threads.
+     * @throws IOException Thrown when a loop's selector cannot be opened.
+     */
+    public GameEngine(int loopCount) throws IOException
+    {
+        loops = new GameLoop[loopCount];
+        for (int i = 0; i < loopCount; i++)
+        {
+            loops[i] = new GameLoop();
+            loops[i].start("game-loop-" + i);
+        }
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Checks to see if a game between the input players can be hosted.
+     * @param p1 The first player in the game.
+     * @param p2 The second player in the game.
+     * @return True if both players can be hosted by a loop.
+     */
+    public static boolean canHost(Player p1, Player p2)
+    {
+        return canHost(p1) && canHost(p2);
+    }
+
+    /**
+     * Starts a game between the input players on the next loop.
+     * @param p1 The first player in the game.
+     * @param p2 The second player in the game.
+     * @param size The number of rows (and columns) of the board.
+     * @param winLength The number of marks in a row needed to win.
+     * @param services The services used by the game.
+     */
+    public void startGame(Player p1, Player p2, int size, int winLength, GameServices services)
+    {
+        GameLoop loop = loops[next];
+        next = (next + 1) % loops.length;
+        GameSession session = new GameSession(loop, p1, p2, size, winLength, services);
+        loop.submit(session::start);
+    }
+
+    /**
+     * Stops every loop, disconnecting their players.
+     */
+    public void close()
+    {
+        for (GameLoop loop : loops) { loop.close(); }
+    }
+
+    /**
+     * Gets the number of games hosted by the loops.
+     * @return The number of games in progress.
+     */
+    public int getGameCount()
+    {
+        int count = 0;
+        for (GameLoop loop : loops) { count += loop.getGameCount(); }
+        return count;
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Checks to see if a player can be hosted by a loop.
+     * @param player The player.
+     * @return True if the player is a computer opponent, or speaks the
+     * binary protocol over a socket channel.
+     */
+    private static boolean canHost(Player player)
+    {
+        PlayerConnection connection = player.getConnection();
+        if (connection instanceof AiPlayerConnection) { return true; }
+        return connection instanceof BinaryPlayerConnection
+            && ((BinaryPlayerConnection) connection).getChannel() != null;
+    }
+}
@@ -0,0 +1,23 @@
+import java.io.IOException;
+
+/**
+ * This exception is thrown on the client when the server ends a game before
+ * it is over (e.g. when the opponent disconnects). Its message is the notice
+ * to show to the player.
+ */
+public class GameInterruptedException extends IOException
+{
+    /**
+     * SerialVersionUID for serialization purposes.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a GameInterruptedException with the input notice.
+     * @param message The notice to show to the player.
+     */
+    public GameInterruptedException(String message)
+    {
+        super(message);
+    }
+}
@@ -0,0 +1,326 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class appends the events of every game (start, moves, end) to an
+ * append-only journal on disk, so that finished games can be replayed (see
+ * JournalReader).
+ *
+ * The journal is a directory of segment files, each a 16 byte header
+ * ("TTTJ", version, record size, unused) followed by fixed size
+ * JournalRecords. Segments are memory-mapped and filled in order; a new
+ * segment is started when one is full. Game threads only queue records, and
+ * a single writer thread copies them into the mapped segment and flushes it
+ * to disk every FLUSH_INTERVAL, so no disk write is ever made on a game
+ * thread.
+ */
+public class GameJournal implements Runnable
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Bytes at the start of each segment file.
+     */
+    private static final byte[] MAGIC = { 'T', 'T', 'T', 'J' };
+    /**
+     * Version of the segment file format.
+     */
+    private static final int VERSION = 1;
+    /**
+     * Length of the segment header.
+     */
+    public static final int HEADER_LENGTH = 16;
+    /**
+     * Default size of a segment file: room for about 11 million records, or
+     * about a million games.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 256 << 20;
+    /**
+     * Milliseconds between flushes of the mapped segment to disk.
+     */
+    private static final long FLUSH_INTERVAL = 1000;
+    /**
+     * The directory holding the segment files.
+     */
+    private Path directory;
+    /**
+     * Size of each segment file in bytes.
+     */
+    private int segmentSize;
+    /**
+     * Records waiting to be written.
+     */
+    private BlockingQueue<JournalRecord> pending;
+    /**
+     * Source of game ids. Ids keep increasing across restarts.
+     */
+    private AtomicLong nextGameId;
+    /**
+     * Index of the segment being written.
+     */
+    private int segmentIndex;
+    /**
+     * Channel of the segment being written.
+     */
+    private FileChannel channel;
+    /**
+     * The mapped segment being written.
+     */
+    private MappedByteBuffer segment;
+    /**
+     * Position of the next record in the segment.
+     */
+    private int position;
+    /**
+     * The writer thread.
+     */
+    private Thread writer;
+    /**
+     * Whether or not records are still being accepted.
+     */
+    private volatile boolean isRunning;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Opens the journal in the input directory, creating it if needed, and
+     * positions it after the last record written.
+     * @param directory The directory holding the segment files.
+     * @param segmentSize Size of each segment file in bytes.
+     * @throws IOException Thrown when the journal cannot be opened.
+     */
+    public GameJournal(Path directory, int segmentSize) throws IOException
+    {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        pending = new LinkedBlockingQueue<>();
+        Files.createDirectories(directory);
+        List<Path> segments = listSegments(directory);
+        segmentIndex = segments.isEmpty() ? 0 : segments.size() - 1;
+        long lastGameId = openSegment(segmentIndex);
+        if (position == HEADER_LENGTH && segmentIndex > 0) 
+        { 
+            lastGameId = JournalReader.findLastGameId(segments.get(segmentIndex - 1)); 
+        }
+        nextGameId = new AtomicLong(lastGameId + 1);
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Starts the writer thread.
+     */
+    public void start()
+    {
+        isRunning = true;
+        writer = new Thread(this, "journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Gets a new game id.
+     * @return An id that has not been used in this journal.
+     */
+    public long nextGameId()
+    {
+        return nextGameId.getAndIncrement();
+    }
+
+    /**
+     * Makes sure the ids handed out from now on are above the input id. Game
+     * ids are only seeded from the last segment, and a game's snapshot may
+     * outlive the START record still queued when the server stopped, so ids
+     * found elsewhere (e.g. in recovered snapshots) are reserved here.
+     * @param gameId The largest id known to be in use.
+     */
+    public void reserveAbove(long gameId)
+    {
+        nextGameId.accumulateAndGet(gameId + 1, Math::max);
+    }
+
+    /**
+     * Queues a record to be written. Never blocks or touches the disk.
+     * @param gameId Id of the game.
+     * @param sequence Sequence number of the game.
+     * @param type The type of event (see JournalRecord).
+     * @param cell The cell marked (or board size).
+     * @param mark The mark placed (or win length, or winning mark).
+     */
+    public void append(long gameId, int sequence, int type, int cell, int mark)
+    {
+        pending.add(new JournalRecord(gameId, System.currentTimeMillis(), sequence, type, cell, mark));
+    }
+
+    /**
+     * Writes queued records until the journal is closed, then writes any
+     * records left and flushes the segment.
+     */
+    @Override
+    public void run()
+    {
+        List<JournalRecord> batch = new ArrayList<>();
+        long lastFlush = System.currentTimeMillis();
+        try
+        {
+            while (isRunning || !pending.isEmpty())
+            {
+                JournalRecord record = pending.poll(FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+                if (record != null)
+                {
+                    batch.add(record);
+                    pending.drainTo(batch);
+                    for (JournalRecord next : batch) { write(next); }
+                    batch.clear();
+                }
+                long now = System.currentTimeMillis();
+                if (now - lastFlush >= FLUSH_INTERVAL)
+                {
+                    segment.force();
+                    lastFlush = now;
+                }
+            }
+        }
+        catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        catch (IOException e) { ServerLog.warn("The journal stopped writing: {}", e); }
+        finally { closeSegment(); }
+    }
+
+    /**
+     * Stops accepting records and waits for the writer thread to write the
+     * records already queued.
+     */
+    public void close()
+    {
+        isRunning = false;
+        try { if (writer != null) { writer.join(); } }
+        catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+    /**
+     * Lists the segment files of a journal.
+     * @param directory The directory holding the segment files.
+     * @return The segment files, oldest first.
+     * @throws IOException Thrown when the directory cannot be read.
+     */
+    public static List<Path> listSegments(Path directory) throws IOException
+    {
+        List<Path> segments = new ArrayList<>();
+        for (int index = 0; Files.exists(segmentPath(directory, index)); index++)
+        {
+            segments.add(segmentPath(directory, index));
+        }
+        return segments;
+    }
+
+    /**
+     * Checks that a segment starts with the journal header.
+     * @param segment The mapped segment.
+     * @return True if the segment has a header this version can read.
+     */
+    public static boolean hasHeader(ByteBuffer segment)
+    {
+        for (int i = 0; i < MAGIC.length; i++)
+        {
+            if (segment.get(i) != MAGIC[i]) { return false; }
+        }
+        return segment.getInt(4) == VERSION && segment.getInt(8) == JournalRecord.SIZE;
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Gets the path of a segment file.
+     * @param directory The directory holding the segment files.
+     * @param index The index of the segment.
+     * @return The path of the segment file.
+     */
+    private static Path segmentPath(Path directory, int index)
+    {
+        return directory.resolve(String.format("journal-%08d.log", index));
+    }
+
+    /**
+     * Maps a segment file, writing its header if it is new, and finds the
+     * position after its last record.
+     * @param index The index of the segment.
+     * @return The largest game id found in the segment, or 0 if none.
+     * @throws IOException Thrown when the segment cannot be mapped.
+     */
+    private long openSegment(int index) throws IOException
+    {
+        channel = FileChannel.open(segmentPath(directory, index), 
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        if (segment.getInt(0) == 0)
+        {
+            segment.put(0, MAGIC);
+            segment.putInt(4, VERSION);
+            segment.putInt(8, JournalRecord.SIZE);
+        }
+        else if (!hasHeader(segment))
+        {
+            throw new IOException("Not a journal segment: " + segmentPath(directory, index));
+        }
+        long lastGameId = 0;
+        position = HEADER_LENGTH;
+        JournalRecord record;
+        while (position + JournalRecord.SIZE <= segmentSize && 
+            (record = JournalRecord.readFrom(segment, position)) != null)
+        {
+            lastGameId = Math.max(lastGameId, record.getGameId());
+            position += JournalRecord.SIZE;
+        }
+        return lastGameId;
+    }
+
+    /**
+     * Writes a record into the mapped segment, starting a new segment if the
+     * current one is full.
+     * @param record The record to write.
+     * @throws IOException Thrown when a new segment cannot be mapped.
+     */
+    private void write(JournalRecord record) throws IOException
+    {
+        if (position + JournalRecord.SIZE > segmentSize)
+        {
+            closeSegment();
+            openSegment(++segmentIndex);
+        }
+        record.writeTo(segment, position);
+        position += JournalRecord.SIZE;
+    }
+
+    /**
+     * Flushes the segment being written to disk and closes its channel.
+     */
+    private void closeSegment()
+    {
+        try
+        {
+            segment.force();
+            channel.close();
+        }
+        catch (IOException e) { ServerLog.warn("Could not close the journal segment: {}", e.getMessage()); }
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public int getPendingCount() { return pending.size(); }
+}
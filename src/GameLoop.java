@@ -0,0 +1,237 @@
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class is a single thread hosting many games (see GameSession). It
+ * waits on a selector for moves from any of its players and hands each one
+ * to its game, so no game ever holds a thread while its players think.
+ * Other threads only talk to the loop through submit.
+ */
+public class GameLoop implements Runnable
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Milliseconds between checks for players who have not returned in time.
+     */
+    private static final long SWEEP_INTERVAL = 1000;
+    /**
+     * Selector used to wait for the players of every game.
+     */
+    private Selector selector;
+    /**
+     * Tasks handed to the loop by other threads (e.g. games to start).
+     */
+    private Queue<Runnable> tasks;
+    /**
+     * Buffer every game of the loop encodes its frames into.
+     */
+    private FrameBuffer frames;
+    /**
+     * Games waiting for a player who lost their connection.
+     */
+    private Set<GameSession> waiting;
+    /**
+     * The number of games hosted by the loop.
+     */
+    private AtomicInteger gameCount;
+    /**
+     * Whether or not the loop is still running.
+     */
+    private volatile boolean isRunning;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs an empty GameLoop.
+     * @throws IOException Thrown when the selector cannot be opened.
+     */
+    public GameLoop() throws IOException
+    {
+        selector = Selector.open();
+        tasks = new ConcurrentLinkedQueue<>();
+        frames = new FrameBuffer();
+        waiting = new HashSet<>();
+        gameCount = new AtomicInteger();
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Starts the loop's thread.
+     * @param name The name of the thread.
+     */
+    public void start(String name)
+    {
+        isRunning = true;
+        Thread thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Hands a task to the loop's thread. Safe to call from any thread.
+     * @param task The task.
+     */
+    public void submit(Runnable task)
+    {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Hands events to the games of the loop until the loop is closed.
+     */
+    @Override
+    public void run()
+    {
+        long nextSweep = System.currentTimeMillis() + SWEEP_INTERVAL;
+        try
+        {
+            while (isRunning)
+            {
+                selector.select(SWEEP_INTERVAL);
+                runTasks();
+                handleSelected();
+                long now = System.currentTimeMillis();
+                if (now >= nextSweep)
+                {
+                    sweep(now);
+                    nextSweep = now + SWEEP_INTERVAL;
+                }
+            }
+        }
+        catch (IOException e) { if (isRunning) { ServerLog.warn("The game loop stopped: {}", e); } }
+        finally { closeSelector(); }
+    }
+
+    /**
+     * Stops the loop. Players are disconnected by the loop's thread once it
+     * wakes up.
+     */
+    public void close()
+    {
+        isRunning = false;
+        selector.wakeup();
+    }
+
+    /**
+     * Counts a game started on the loop.
+     */
+    public void countGame()
+    {
+        gameCount.incrementAndGet();
+    }
+
+    /**
+     * Forgets a game that is over.
+     * @param session The game.
+     */
+    public void remove(GameSession session)
+    {
+        gameCount.decrementAndGet();
+        waiting.remove(session);
+    }
+
+    /**
+     * Checks a game on every sweep until its players have returned.
+     * @param session The game waiting for a player.
+     */
+    public void addWaiting(GameSession session)
+    {
+        waiting.add(session);
+    }
+
+    /**
+     * Stops checking a game whose players have returned.
+     * @param session The game.
+     */
+    public void removeWaiting(GameSession session)
+    {
+        waiting.remove(session);
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Runs every task handed to the loop since it last checked. Tasks handed
+     * over by these tasks wait for the next pass, so that they run after the
+     * selector has let go of any keys cancelled in the meantime.
+     */
+    private void runTasks()
+    {
+        Runnable task;
+        for (int count = tasks.size(); count > 0 && (task = tasks.poll()) != null; count--)
+        {
+            try { task.run(); }
+            catch (RuntimeException e) { ServerLog.warn("A task on the game loop failed: {}", e); }
+        }
+    }
+
+    /**
+     * Hands every player that has sent something, or whose socket has room
+     * again, to their game. A game that fails is ended and its players
+     * disconnected, rather than taking the loop (and every other game on it)
+     * down.
+     */
+    private void handleSelected()
+    {
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext())
+        {
+            SelectionKey key = keys.next();
+            keys.remove();
+            LoopSeat seat = (LoopSeat) key.attachment();
+            try
+            {
+                if (key.isValid() && key.isWritable()) { seat.getSession().onWritable(seat); }
+                if (key.isValid() && key.isReadable()) { seat.getSession().onReadable(seat); }
+            }
+            catch (RuntimeException e)
+            {
+                ServerLog.warn("A game on the game loop failed: {}", e);
+                seat.getSession().fail();
+            }
+        }
+    }
+
+    /**
+     * Aborts every game whose players have not returned in time.
+     * @param now The current time in milliseconds.
+     */
+    private void sweep(long now)
+    {
+        if (waiting.isEmpty()) { return; }
+        // Copied, as games that are aborted stop waiting
+        for (GameSession session : new ArrayList<>(waiting)) { session.sweep(now); }
+    }
+
+    /**
+     * Disconnects every player, then closes the selector.
+     */
+    private void closeSelector()
+    {
+        for (SelectionKey key : selector.keys()) { ((LoopSeat) key.attachment()).close(); }
+        try { selector.close(); }
+        catch (IOException e) { ServerLog.warn("Could not close a game loop selector: {}", e.getMessage()); }
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public Selector getSelector() { return selector; }
+    public FrameBuffer getFrames() { return frames; }
+    public int getGameCount() { return gameCount.get(); }
+}
@@ -0,0 +1,46 @@
+/**
+ * This class holds the result of a finished game between two named players,
+ * queued to be recorded in their profiles (see ProfileCache).
+ */
+public class GameResult
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * The name of one player.
+     */
+    private String first;
+    /**
+     * The name of the other player.
+     */
+    private String second;
+    /**
+     * The first player's score: 1 for a win, 0.5 for a draw or 0 for a loss.
+     */
+    private double firstScore;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs a GameResult.
+     * @param first The name of one player.
+     * @param second The name of the other player.
+     * @param firstScore The first player's score: 1 for a win, 0.5 for a
+     * draw or 0 for a loss.
+     */
+    public GameResult(String first, String second, double firstScore)
+    {
+        this.first = first;
+        this.second = second;
+        this.firstScore = firstScore;
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public String getFirst() { return first; }
+    public String getSecond() { return second; }
+    public double getFirstScore() { return firstScore; }
+}
@@ -0,0 +1,91 @@
+/**
+ * This class holds the server wide services a game uses besides its players:
+ * the journal it is recorded in, the snapshots it is kept in, the registry
+ * its players resume it through, the hub it is watched through, the lobby
+ * its players return to once it is over and the profiles its result is
+ * recorded in. Any service may be null when it is turned off.
+ */
+public class GameServices
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * The journal games are recorded in, or null.
+     */
+    private GameJournal journal;
+    /**
+     * The snapshots games in progress are kept in, or null.
+     */
+    private GameSnapshots snapshots;
+    /**
+     * The registry players resume their games through, or null.
+     */
+    private ResumeRegistry registry;
+    /**
+     * Milliseconds a game waits for a player who lost their connection to
+     * resume it, or 0 to end the game straight away.
+     */
+    private long reconnectWait;
+    /**
+     * The hub spectators watch games through, or null.
+     */
+    private SpectatorHub spectators;
+    /**
+     * The lobby players return to once their game is over, or null if they
+     * are disconnected.
+     */
+    private Lobby lobby;
+    /**
+     * The profiles the results of games are recorded in, or null.
+     */
+    private ProfileCache profiles;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs a GameServices object with every service turned off.
+     */
+    public GameServices()
+    {
+        this(null, null, null, 0, null, null, null);
+    }
+
+    /**
+     * Constructs a GameServices object.
+     * @param journal The journal games are recorded in, or null.
+     * @param snapshots The snapshots games are kept in, or null.
+     * @param registry The registry players resume their games through, or
+     * null.
+     * @param reconnectWait Milliseconds a game waits for a player who lost
+     * their connection.
+     * @param spectators The hub spectators watch games through, or null.
+     * @param lobby The lobby players return to once their game is over, or
+     * null.
+     * @param profiles The profiles the results of games are recorded in, or
+     * null.
+     */
+    public GameServices(GameJournal journal, GameSnapshots snapshots, ResumeRegistry registry, long reconnectWait, 
+        SpectatorHub spectators, Lobby lobby, ProfileCache profiles)
+    {
+        this.journal = journal;
+        this.snapshots = snapshots;
+        this.registry = registry;
+        this.reconnectWait = reconnectWait;
+        this.spectators = spectators;
+        this.lobby = lobby;
+        this.profiles = profiles;
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public GameJournal getJournal() { return journal; }
+    public GameSnapshots getSnapshots() { return snapshots; }
+    public ResumeRegistry getRegistry() { return registry; }
+    public long getReconnectWait() { return reconnectWait; }
+    public SpectatorHub getSpectators() { return spectators; }
+    public Lobby getLobby() { return lobby; }
+    public ProfileCache getProfiles() { return profiles; }
+}
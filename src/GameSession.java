@@ -0,0 +1,564 @@
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * This class is a game of tic-tac-toe hosted by a GameLoop. It does the work
+ * of a ServerController without a thread of its own: the loop hands it each
+ * move as it arrives, and the session applies it to the ServerModel and
+ * answers straight away. All of its methods are called on the loop's thread,
+ * so a game costs its model, two seats and a few buffers rather than a
+ * thread and its stack.
+ */
+public class GameSession
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * The number of invalid moves a player may make in a row before they are
+     * disconnected.
+     */
+    private static final int MAX_INVALID_MOVES = 10;
+    /**
+     * The loop hosting the game.
+     */
+    private GameLoop loop;
+    /**
+     * The model component of MVC on the server side. Responsible for server
+     * side game logic.
+     */
+    private ServerModel model;
+    /**
+     * Both seats of the game, the first player's first.
+     */
+    private LoopSeat[] seats;
+    /**
+     * The journal the events of the game are recorded in, or null if games
+     * are not recorded.
+     */
+    private GameJournal journal;
+    /**
+     * Id of the game (in the journal, if games are journaled).
+     */
+    private long gameId;
+    /**
+     * The snapshots the game is kept in so it can be rebuilt after a
+     * restart, or null if games are not kept.
+     */
+    private GameSnapshots snapshots;
+    /**
+     * The slot holding the game's snapshot, or -1 if it has none.
+     */
+    private int slot;
+    /**
+     * The registry players resume the game through, or null.
+     */
+    private ResumeRegistry registry;
+    /**
+     * Milliseconds the game waits for a player who lost their connection to
+     * resume it.
+     */
+    private long reconnectWait;
+    /**
+     * Hand the players' returning connections to the loop, indexed like
+     * seats, or null if players cannot resume the game.
+     */
+    private List<Consumer<Player>> returns;
+    /**
+     * Time (from System.nanoTime) at which the latest move was received, or
+     * 0 once the resulting state has been sent to both players.
+     */
+    private long moveReceivedAt;
+    /**
+     * The hub spectators watch the game through, or null.
+     */
+    private SpectatorHub spectators;
+    /**
+     * Publishes the states of the game to its spectators, or null if it
+     * cannot be watched.
+     */
+    private GameBroadcast broadcast;
+    /**
+     * The lobby players return to once the game is over, or null if they
+     * are disconnected.
+     */
+    private Lobby lobby;
+    /**
+     * The profiles the result of the game is recorded in, or null.
+     */
+    private ProfileCache profiles;
+    /**
+     * Whether or not the game has ended (or been aborted).
+     */
+    private boolean isOver;
+    /**
+     * Whether or not everything the game holds has been released.
+     */
+    private boolean isReleased;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs a GameSession between two input players. Note that P2 is
+     * set active initially because the active player is toggled at the
+     * beginning of every turn.
+     * @param loop The loop hosting the game.
+     * @param p1 The first player in the game.
+     * @param p2 The second player in the game.
+     * @param size The number of rows (and columns) of the board.
+     * @param winLength The number of marks in a row needed to win.
+     * @param services The services used by the game.
+     */
+    public GameSession(GameLoop loop, Player p1, Player p2, int size, int winLength, GameServices services)
+    {
+        this.loop = loop;
+        this.model = new ServerModel(size, winLength);
+        this.slot = -1;
+        model.setActivePlayer(p2);
+        model.setIdlePlayer(p1);
+        seats = new LoopSeat[] { new LoopSeat(this, p1, 0), new LoopSeat(this, p2, 1) };
+        useServices(services);
+        if (journal != null) { gameId = journal.nextGameId(); }
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Connects the players' channels to the loop and begins the game.
+     */
+    public void start()
+    {
+        ServerMetrics.GAMES_STARTED.increment();
+        ServerMetrics.GAMES_ACTIVE.increment();
+        loop.countGame();
+        for (LoopSeat seat : seats)
+        {
+            if (!seat.isComputer()) { connect(seat, seat.getPlayer()); }
+        }
+        openBroadcast();
+        ServerLog.info("Game {} started between {} and {}.", gameId, model.getIdlePlayer().getName(),
+            model.getActivePlayer().getName());
+        record(JournalRecord.START, model.getBoard().getSize(), model.getBoard().getWinLength());
+        if (snapshots != null && (slot = snapshots.claim(gameId, model)) < 0)
+        {
+            ServerLog.warn("No room to snapshot game {}. It will not survive a restart.", gameId);
+        }
+        sendMessage("Opponent found. A new game has started!");
+        playTurn();
+        settle();
+    }
+
+    /**
+     * Reads what a player has sent and plays every move it holds.
+     * @param seat The seat of the player.
+     */
+    public void onReadable(LoopSeat seat)
+    {
+        try
+        {
+            if (!seat.read()) { seat.close(); }
+            Move move;
+            while (!isOver && seat.isConnected() && (move = seat.nextMove()) != null) { play(seat, move); }
+        }
+        catch (IOException e) { seat.close(); }
+        settle();
+    }
+
+    /**
+     * Writes the bytes a player's socket could not take before.
+     * @param seat The seat of the player.
+     */
+    public void onWritable(LoopSeat seat)
+    {
+        try { seat.flush(); }
+        catch (IOException e) { seat.close(); }
+        settle();
+    }
+
+    /**
+     * Aborts the game if a player who lost their connection has not
+     * returned in time.
+     * @param now The current time in milliseconds.
+     */
+    public void sweep(long now)
+    {
+        for (LoopSeat seat : seats)
+        {
+            if (!isOver && seat.getDeadline() != 0 && now >= seat.getDeadline()) { abort(); }
+        }
+    }
+
+    /**
+     * Closes the players' connections straight away (i.e. when the server
+     * is stopping).
+     */
+    public void close()
+    {
+        for (LoopSeat seat : seats) { seat.close(); }
+    }
+
+    /**
+     * Ends the game after it has thrown an exception on the loop's thread.
+     * The game is counted as aborted (if it had not ended), everything it
+     * holds is released and the players' connections are closed, as the
+     * state of the game can no longer be trusted.
+     */
+    public void fail()
+    {
+        if (!isOver)
+        {
+            isOver = true;
+            ServerMetrics.GAMES_ABORTED.increment();
+            ServerLog.warn("Game between {} and {} failed. Ending it...", model.getIdlePlayer().getName(),
+                model.getActivePlayer().getName());
+            record(JournalRecord.ABORT, 0, 0);
+        }
+        release();
+        close();
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Plays one turn of tic-tac-toe: the players are sent the state of the
+     * game, then a computer opponent makes its move straight away.
+     */
+    private void playTurn()
+    {
+        model.toggleActivePlayer();
+        sendGameStateInfo();
+        LoopSeat active = getActiveSeat();
+        if (!active.isComputer()) { return; }
+        try { play(active, active.getPlayer().getConnection().receiveMove(model)); }
+        catch (IOException e) { abort(); }
+    }
+
+    /**
+     * Applies a move received from a player. Invalid moves (including those
+     * made out of turn) are answered with the server's state of the game.
+     * @param seat The seat of the player who made the move.
+     * @param move The move.
+     */
+    private void play(LoopSeat seat, Move move)
+    {
+        moveReceivedAt = System.nanoTime();
+        if (seat != getActiveSeat() || !model.applyMove(move))
+        {
+            if (seat.countInvalidMove() >= MAX_INVALID_MOVES)
+            {
+                abort();
+                return;
+            }
+            sendSnapshot(seat);
+            return;
+        }
+        seat.resetInvalidMoves();
+        record(JournalRecord.MOVE, model.getLastMove(), model.getActivePlayer().getMark());
+        if (slot >= 0) { snapshots.update(slot, model); }
+        if (model.hasEnded()) { endGame(); }
+        else { playTurn(); }
+    }
+
+    /**
+     * Sends the most up-to-date details from the server's model to the
+     * players, then publishes them to the spectators. The time taken to
+     * process the latest move is recorded once both players have been sent
+     * its result.
+     */
+    private void sendGameStateInfo()
+    {
+        sendGameState(getActiveSeat());
+        sendGameState(seats[1 - getActiveSeat().getIndex()]);
+        if (moveReceivedAt != 0)
+        {
+            ServerMetrics.MOVE_TIME.record(System.nanoTime() - moveReceivedAt);
+            moveReceivedAt = 0;
+        }
+        if (broadcast != null) { broadcast.publish(model); }
+    }
+
+    /**
+     * Sends the most up-to-date details from the server's model to a
+     * player. A player who has lost their connection is sent them once they
+     * return instead.
+     * @param seat The seat of the player.
+     */
+    private void sendGameState(LoopSeat seat)
+    {
+        if (!seat.isConnected()) { return; }
+        FrameBuffer frames = loop.getFrames();
+        try { Protocol.writeGameState(frames.getOut(), model, seat.hasSnapshot(), seat.getResumedSequence()); }
+        catch (IOException e) { ServerLog.warn("Could not encode the game state: {}", e); }
+        ServerMetrics.BINARY_STATE_SIZE.record(frames.size());
+        send(seat);
+        seat.setHasSnapshot(true);
+    }
+
+    /**
+     * Sends a player the whole board (i.e. after an invalid move).
+     * @param seat The seat of the player.
+     */
+    private void sendSnapshot(LoopSeat seat)
+    {
+        if (!seat.isConnected()) { return; }
+        try { Protocol.writeSnapshot(loop.getFrames().getOut(), model); }
+        catch (IOException e) { ServerLog.warn("Could not encode a snapshot: {}", e); }
+        send(seat);
+        seat.setHasSnapshot(true);
+    }
+
+    /**
+     * Sends a text message to both players.
+     * @param message The message to send.
+     */
+    private void sendMessage(String message)
+    {
+        for (LoopSeat seat : seats)
+        {
+            if (!seat.isConnected()) { continue; }
+            try { Protocol.writeStringFrame(loop.getFrames().getOut(), Protocol.TEXT, message); }
+            catch (IOException e) { ServerLog.warn("Could not encode a message: {}", e); }
+            send(seat);
+        }
+    }
+
+    /**
+     * Writes the frames encoded in the loop's buffer to a player. A player
+     * whose connection fails is dealt with once the current event has been
+     * handled (see settle).
+     * @param seat The seat of the player.
+     */
+    private void send(LoopSeat seat)
+    {
+        try { seat.write(loop.getFrames()); }
+        catch (IOException e) { seat.close(); }
+    }
+
+    /**
+     * Deals with every player who has lost their connection since the last
+     * event: the game waits for them to resume it if it can, or else is
+     * aborted.
+     */
+    private void settle()
+    {
+        for (LoopSeat seat : seats)
+        {
+            if (isOver || seat.isComputer() || seat.isConnected() || seat.getDeadline() != 0) { continue; }
+            Player player = seat.getPlayer();
+            ServerMetrics.CONNECTIONS_LOST.increment();
+            if (returns == null || !player.getConnection().isResumable() || reconnectWait <= 0)
+            {
+                abort();
+                return;
+            }
+            ServerLog.info("{} lost their connection. Waiting for them to return...", player.getName());
+            seat.setDeadline(System.currentTimeMillis() + reconnectWait);
+            loop.addWaiting(this);
+        }
+    }
+
+    /**
+     * Seats a player's client resuming the game, and brings it up to date.
+     * @param seat The seat of the player.
+     * @param returning The resuming player holding the new connection.
+     */
+    private void resume(LoopSeat seat, Player returning)
+    {
+        if (isOver)
+        {
+            ResumeRegistry.reject(returning);
+            return;
+        }
+        Player player = seat.getPlayer();
+        PlayerConnection old = player.getConnection();
+        seat.close();
+        old.close();
+        player.setConnection(returning.getConnection());
+        seat.setDeadline(0);
+        if (!connect(seat, player))
+        {
+            settle();
+            return;
+        }
+        if (seats[1 - seat.getIndex()].getDeadline() == 0) { loop.removeWaiting(this); }
+        ServerMetrics.CONNECTIONS_RESUMED.increment();
+        ServerLog.info("{} has resumed their game.", player.getName());
+        sendGameState(seat);
+        settle();
+    }
+
+    /**
+     * Carries a player's connection on over its channel, registered with
+     * the loop's selector.
+     * @param seat The seat of the player.
+     * @param player The player, holding a connection that GameEngine can
+     * host.
+     * @return True if the seat is connected.
+     */
+    private boolean connect(LoopSeat seat, Player player)
+    {
+        BinaryPlayerConnection connection = (BinaryPlayerConnection) player.getConnection();
+        try
+        {
+            seat.connect(connection.getChannel(), connection.detach(), connection.getResumedSequence(),
+                loop.getSelector());
+            return true;
+        }
+        catch (IOException e)
+        {
+            seat.close();
+            return false;
+        }
+    }
+
+    /**
+     * Sends the ended GameState to the players and prints a game over prompt
+     * to the server. The result is queued to be recorded in the players'
+     * profiles by the profiles' writer thread, so the game never waits on
+     * them.
+     */
+    private void endGame()
+    {
+        isOver = true;
+        record(JournalRecord.END, 0, model.getBoard().hasWon() ? model.getActivePlayer().getMark() : ' ');
+        if (profiles != null) { profiles.recordGame(model); }
+        sendGameStateInfo();
+        ServerLog.info("Game ended between {} and {}. {} won!", model.getIdlePlayer().getName(),
+            model.getActivePlayer().getName(), model.getActivePlayer().getName());
+        finish();
+    }
+
+    /**
+     * Ends the game early, i.e. when a player has left or keeps making
+     * invalid moves, and tells the players.
+     */
+    private void abort()
+    {
+        if (isOver) { return; }
+        isOver = true;
+        ServerMetrics.GAMES_ABORTED.increment();
+        ServerLog.info("One or more players have rage quit. Ending game between {} and {}.",
+            model.getIdlePlayer().getName(), model.getActivePlayer().getName());
+        record(JournalRecord.ABORT, 0, 0);
+        sendMessage("Your opponent has rage quit. Game over.");
+        finish();
+    }
+
+    /**
+     * Releases everything the game holds once it is over. Players who have
+     * been sent everything return to the lobby, if there is one. Other
+     * players' connections are closed once they have been sent everything.
+     */
+    private void finish()
+    {
+        release();
+        for (LoopSeat seat : seats)
+        {
+            if (lobby == null || !seat.isReleasable()) 
+            { 
+                seat.finish();
+                continue;
+            }
+            SocketChannel channel = seat.getChannel();
+            byte[] unread = seat.release();
+            // Run as a task so the channel has left the selector before the lobby takes it
+            loop.submit(() -> lobby.requeue(channel, unread));
+        }
+    }
+
+    /**
+     * Releases the game's place on its loop, its registrations, its
+     * broadcast and its snapshot slot. Only the first call has any effect.
+     */
+    private void release()
+    {
+        if (isReleased) { return; }
+        isReleased = true;
+        ServerMetrics.GAMES_ACTIVE.decrement();
+        loop.remove(this);
+        unregisterSeats();
+        closeBroadcast();
+        if (slot >= 0) { snapshots.release(slot); }
+    }
+
+    /**
+     * Sets the services used by the game, and registers the players who can
+     * resume the game with the registry. Returning players are handed to
+     * the loop's thread, as the registry calls from the handshake threads.
+     * @param services The services used by the game.
+     */
+    private void useServices(GameServices services)
+    {
+        journal = services.getJournal();
+        snapshots = services.getSnapshots();
+        registry = services.getRegistry();
+        reconnectWait = services.getReconnectWait();
+        spectators = services.getSpectators();
+        lobby = services.getLobby();
+        profiles = services.getProfiles();
+        if (registry == null) { return; }
+        returns = new ArrayList<>();
+        for (LoopSeat seat : seats)
+        {
+            Consumer<Player> consumer = returning -> loop.submit(() -> resume(seat, returning));
+            returns.add(consumer);
+            if (seat.getPlayer().getToken() != 0) { registry.register(seat.getPlayer().getToken(), consumer); }
+        }
+    }
+
+    /**
+     * Removes the players from the registry once the game is over.
+     */
+    private void unregisterSeats()
+    {
+        if (returns == null) { return; }
+        for (LoopSeat seat : seats) { registry.unregister(seat.getPlayer().getToken(), returns.get(seat.getIndex())); }
+    }
+
+    /**
+     * Opens the game to spectators, if games may be watched. A game that is
+     * not journaled is given its id by the hub.
+     */
+    private void openBroadcast()
+    {
+        if (spectators == null) { return; }
+        broadcast = spectators.open(gameId, model);
+        gameId = broadcast.getGameId();
+    }
+
+    /**
+     * Sends the spectators the final message of the game and lets them go.
+     */
+    private void closeBroadcast()
+    {
+        if (broadcast == null) { return; }
+        spectators.close(broadcast, model.hasEnded() ? "The game is over." : "A player has left. The game is over.");
+    }
+
+    /**
+     * Records an event of the game in the journal, if there is one. Only
+     * queues the record, so the loop never waits on the disk.
+     * @param type The type of event (see JournalRecord).
+     * @param cell The cell marked (or board size).
+     * @param mark The mark placed (or win length, or winning mark).
+     */
+    private void record(int type, int cell, int mark)
+    {
+        if (journal != null) { journal.append(gameId, model.getSequence(), type, cell, mark); }
+    }
+
+    /**
+     * Gets the seat of the player whose turn it is.
+     * @return The active player's seat.
+     */
+    private LoopSeat getActiveSeat()
+    {
+        return seats[0].getPlayer() == model.getActivePlayer() ? seats[0] : seats[1];
+    }
+}
@@ -0,0 +1,253 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * This class keeps a snapshot of every game in progress in a memory-mapped
+ * file, so that the games can be rebuilt if the server is restarted.
+ *
+ * The file is a table of fixed size slots, one per game in progress:
+ * <pre>
+ * [u64 gameId][u64 xToken][u64 oToken][u16 seq][u8 size][u8 winLength]
+ * [u8 nextMark][u8 lastMove][2 unused][u8 length][111 bytes xName]
+ * [u8 length][111 bytes oName][one mark per cell]
+ * </pre>
+ * A game id of 0 marks a free slot. A game is written to its slot when it
+ * starts and only the cell marked is written after each move, so keeping the
+ * snapshots costs a few memory writes per move and no system calls. The
+ * operating system writes the pages to disk in the background, which keeps
+ * them safe from the server process dying (but not from the machine
+ * losing power; the journal is forced to disk for that).
+ */
+public class GameSnapshots
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Default number of slots: room for 65536 games in progress.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    /**
+     * Number of bytes taken by each slot.
+     */
+    private static final int SLOT_SIZE = 512;
+    /**
+     * The most bytes of a player's name kept in a slot.
+     */
+    private static final int NAME_LENGTH = 111;
+    /**
+     * Offsets of the fields of a slot.
+     */
+    private static final int GAME_ID = 0;
+    private static final int X_TOKEN = 8;
+    private static final int O_TOKEN = 16;
+    private static final int SEQUENCE = 24;
+    private static final int SIZE = 26;
+    private static final int WIN_LENGTH = 27;
+    private static final int NEXT_MARK = 28;
+    private static final int LAST_MOVE = 29;
+    private static final int X_NAME = 32;
+    private static final int O_NAME = 144;
+    private static final int CELLS = 256;
+    /**
+     * Channel of the snapshot file.
+     */
+    private FileChannel channel;
+    /**
+     * The mapped snapshot file.
+     */
+    private MappedByteBuffer slots;
+    /**
+     * Indexes of the slots not used by any game.
+     */
+    private Deque<Integer> freeSlots;
+    /**
+     * Indexes of the slots holding games found when the file was opened.
+     */
+    private List<Integer> liveSlots;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Opens the snapshot file, creating it if needed, and finds the games it
+     * holds.
+     * @param file The snapshot file.
+     * @param capacity The number of slots, i.e. the most games that can be
+     * in progress at once.
+     * @throws IOException Thrown when the file cannot be mapped.
+     */
+    public GameSnapshots(Path file, int capacity) throws IOException
+    {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        slots = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * SLOT_SIZE);
+        freeSlots = new ArrayDeque<>();
+        liveSlots = new ArrayList<>();
+        for (int slot = capacity - 1; slot >= 0; slot--)
+        {
+            if (slots.getLong(slot * SLOT_SIZE + GAME_ID) == 0) { freeSlots.push(slot); }
+            else { liveSlots.add(slot); }
+        }
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Writes a game that is about to start to a free slot.
+     * @param gameId Id of the game (see GameJournal). Must not be 0.
+     * @param model The model of the game. The player to move first must be
+     * the idle player.
+     * @return The slot holding the game, or -1 if every slot is used.
+     */
+    public int claim(long gameId, ServerModel model)
+    {
+        Integer slot;
+        synchronized (freeSlots) { slot = freeSlots.poll(); }
+        if (slot == null) { return -1; }
+        int base = slot * SLOT_SIZE;
+        Board board = model.getBoard();
+        Player x = model.getIdlePlayer().getMark() == 'X' ? model.getIdlePlayer() : model.getActivePlayer();
+        Player o = x == model.getIdlePlayer() ? model.getActivePlayer() : model.getIdlePlayer();
+        slots.putLong(base + X_TOKEN, x.getToken());
+        slots.putLong(base + O_TOKEN, o.getToken());
+        slots.putShort(base + SEQUENCE, (short) model.getSequence());
+        slots.put(base + SIZE, (byte) board.getSize());
+        slots.put(base + WIN_LENGTH, (byte) board.getWinLength());
+        slots.put(base + NEXT_MARK, (byte) model.getIdlePlayer().getMark());
+        slots.put(base + LAST_MOVE, (byte) Protocol.NO_MOVE);
+        writeName(base + X_NAME, x.getName());
+        writeName(base + O_NAME, o.getName());
+        for (int cell = 0; cell < board.getCellCount(); cell++)
+        {
+            char mark = board.getMark(cell);
+            slots.put(base + CELLS + cell, (byte) (mark == ' ' ? 0 : mark));
+        }
+        slots.putLong(base + GAME_ID, gameId);
+        return slot;
+    }
+
+    /**
+     * Writes the move just made to a game's slot. The sequence number is
+     * written last, so a slot whose sequence does not match its marks was
+     * being written when the server stopped.
+     * @param slot The slot holding the game.
+     * @param model The model of the game, straight after the move.
+     */
+    public void update(int slot, ServerModel model)
+    {
+        int base = slot * SLOT_SIZE;
+        int cell = model.getLastMove();
+        slots.put(base + CELLS + cell, (byte) model.getBoard().getMark(cell));
+        slots.put(base + LAST_MOVE, (byte) cell);
+        slots.put(base + NEXT_MARK, (byte) model.getIdlePlayer().getMark());
+        slots.putShort(base + SEQUENCE, (short) model.getSequence());
+    }
+
+    /**
+     * Frees the slot of a game that has ended.
+     * @param slot The slot holding the game.
+     */
+    public void release(int slot)
+    {
+        slots.putLong(slot * SLOT_SIZE + GAME_ID, 0);
+        synchronized (freeSlots) { freeSlots.push(slot); }
+    }
+
+    /**
+     * Gets the id of the game held in a slot.
+     * @param slot The slot holding the game.
+     * @return The id of the game.
+     */
+    public long getGameId(int slot)
+    {
+        return slots.getLong(slot * SLOT_SIZE + GAME_ID);
+    }
+
+    /**
+     * Rebuilds the model of the game held in a slot. The players have no
+     * connections; the player to move next is the idle player.
+     * @param slot The slot holding the game.
+     * @return The model of the game, or null if the slot does not hold a
+     * game that can be continued.
+     */
+    public ServerModel restore(int slot)
+    {
+        int base = slot * SLOT_SIZE;
+        Board board;
+        try { board = new Board(slots.get(base + SIZE), slots.get(base + WIN_LENGTH)); }
+        catch (IllegalArgumentException e) { return null; }
+        for (int cell = 0; cell < board.getCellCount(); cell++)
+        {
+            byte mark = slots.get(base + CELLS + cell);
+            if (mark != 0) { board.addMark(cell, (char) mark); }
+        }
+        int sequence = slots.getShort(base + SEQUENCE) & 0xFFFF;
+        if (board.getMarkCount() != sequence || board.hasEnded()) { return null; }
+        int lastMove = slots.get(base + LAST_MOVE) & 0xFF;
+        ServerModel model = new ServerModel(board, sequence, lastMove == Protocol.NO_MOVE ? -1 : lastMove);
+        Player x = new Player(readName(base + X_NAME), 'X');
+        x.setToken(slots.getLong(base + X_TOKEN));
+        Player o = new Player(readName(base + O_NAME), 'O');
+        o.setToken(slots.getLong(base + O_TOKEN));
+        boolean isXNext = slots.get(base + NEXT_MARK) == 'X';
+        model.setIdlePlayer(isXNext ? x : o);
+        model.setActivePlayer(isXNext ? o : x);
+        return model;
+    }
+
+    /**
+     * Writes the snapshots to disk and closes the file. Slots may still be
+     * written to afterwards, but will no longer be forced to disk.
+     */
+    public void close()
+    {
+        try
+        {
+            slots.force();
+            channel.close();
+        }
+        catch (IOException e) { ServerLog.warn("Could not close the snapshots: {}", e.getMessage()); }
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Writes a player's name, cut short if it does not fit.
+     * @param offset The position of the name.
+     * @param name The name to write.
+     */
+    private void writeName(int offset, String name)
+    {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, NAME_LENGTH);
+        slots.put(offset, (byte) length);
+        slots.put(offset + 1, bytes, 0, length);
+    }
+
+    /**
+     * Reads a player's name.
+     * @param offset The position of the name.
+     * @return The name.
+     */
+    private String readName(int offset)
+    {
+        byte[] bytes = new byte[slots.get(offset) & 0xFF];
+        slots.get(offset + 1, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public List<Integer> getLiveSlots() { return liveSlots; }
+}
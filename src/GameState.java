@@ -37,6 +37,16 @@ public class GameState implements Serializable
         this.activePlayer = activePlayer;
     }
 
+    /**
+     * Constructs a GameState object that copies another, so that it shares
+     * nothing with it (e.g. when it is written to an object stream).
+     * @param other The GameState to copy.
+     */
+    public GameState(GameState other)
+    {
+        this(new Board(other.board), new Player(other.activePlayer.getName(), other.activePlayer.getMark()));
+    }
+
     //=========================================================================
     // Public methods
     //=========================================================================
@@ -0,0 +1,274 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class holds the partially received handshake of a newly connected
+ * client. The first bytes received decide which protocol the client speaks.
+ * A binary client's handshake is complete once its HELLO (or RESUME, or
+ * WATCH) frame has arrived,
+ * while a serialized client's handshake is complete once its name line and
+ * the header of its object stream have both arrived. A player returning
+ * from a game they finished (see Lobby) is already known to speak the
+ * binary protocol, so their HELLO frame is expected without a header.
+ */
+public class Handshake
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * The most bytes a client may send before completing its handshake.
+     */
+    private static final int MAX_HANDSHAKE_BYTES = 512;
+    /**
+     * Length of the header written by the client's ObjectOutputStream.
+     */
+    private static final int STREAM_HEADER_LENGTH = 4;
+    /**
+     * The channel connected to the client.
+     */
+    private SocketChannel channel;
+    /**
+     * Bytes received from the client so far.
+     */
+    private ByteBuffer buffer;
+    /**
+     * Time (in milliseconds) after which the handshake is abandoned.
+     */
+    private long deadline;
+    /**
+     * Time (from System.nanoTime) at which the handshake began.
+     */
+    private long startTime;
+    /**
+     * The protocol version spoken by the client, or 0 if not yet known.
+     */
+    private int version;
+    /**
+     * Index of the end of the handshake (exclusive), or -1 if not yet
+     * received.
+     */
+    private int handshakeEnd;
+    /**
+     * The name of the player, once the handshake is complete, or null if the
+     * client asked to resume a game.
+     */
+    private String name;
+    /**
+     * The token presented by a client resuming a game.
+     */
+    private long token;
+    /**
+     * The sequence number of the latest state received by a client resuming
+     * a game, or -1 if it has received none.
+     */
+    private int resumedSequence;
+    /**
+     * Whether or not the client asked to watch a game rather than play.
+     */
+    private boolean isWatching;
+    /**
+     * Id of the game a spectator asked to watch, or 0 for the newest game.
+     */
+    private long watchedGame;
+    /**
+     * Index of the first frame of the handshake (i.e. past the header).
+     */
+    private int frameStart;
+    /**
+     * Whether or not the client is a player returning from a game.
+     */
+    private boolean isReturning;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs an empty Handshake that expires after the input timeout.
+     * @param channel The channel connected to the client.
+     * @param timeout The number of milliseconds the client has to finish.
+     */
+    public Handshake(SocketChannel channel, long timeout)
+    {
+        this.channel = channel;
+        buffer = ByteBuffer.allocate(MAX_HANDSHAKE_BYTES);
+        deadline = System.currentTimeMillis() + timeout;
+        startTime = System.nanoTime();
+        handshakeEnd = -1;
+        resumedSequence = -1;
+        frameStart = Protocol.HEADER_LENGTH;
+    }
+
+    /**
+     * Constructs the Handshake of a binary player returning from a game,
+     * who may play again by sending another HELLO frame.
+     * @param channel The channel connected to the client.
+     * @param timeout The number of milliseconds the client has to decide.
+     * @param unread Bytes already received from the client but not read.
+     */
+    public Handshake(SocketChannel channel, long timeout, byte[] unread)
+    {
+        this(channel, timeout);
+        version = Protocol.VERSION_BINARY;
+        frameStart = 0;
+        isReturning = true;
+        if (unread.length > buffer.capacity()) { buffer = ByteBuffer.allocate(unread.length); }
+        buffer.put(unread);
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Checks the received bytes to see if the handshake is complete.
+     * @return True if the whole handshake has been received.
+     * @throws IOException Thrown when the client sent a malformed handshake.
+     */
+    public boolean isComplete() throws IOException
+    {
+        if (handshakeEnd >= 0) { return true; }
+        if (version == 0)
+        {
+            if (buffer.position() < Protocol.HEADER_LENGTH) { return false; }
+            boolean isBinary = Protocol.isBinaryHeader(buffer.array());
+            version = isBinary ? Protocol.VERSION_BINARY : Protocol.VERSION_SERIALIZED;
+        }
+        if (version == Protocol.VERSION_BINARY) { readHello(); }
+        else { readNameLine(); }
+        return handshakeEnd >= 0;
+    }
+
+    /**
+     * Checks to see if the client has sent more bytes than a handshake may
+     * contain.
+     * @return True if the buffer is full without a complete handshake.
+     */
+    public boolean isOverflowed()
+    {
+        return !buffer.hasRemaining();
+    }
+
+    /**
+     * Checks to see if the client has taken too long to send its handshake.
+     * @param now The current time in milliseconds.
+     * @return True if the handshake has expired.
+     */
+    public boolean hasExpired(long now)
+    {
+        return now > deadline;
+    }
+
+    /**
+     * Creates the player described by this handshake. New players are given
+     * a token to resume their game with. Any bytes received after the
+     * handshake are replayed ahead of the socket's input stream.
+     * @param socket The socket (in blocking mode) connected to the client.
+     * @return The newly created Player.
+     * @throws IOException Thrown when the player's streams cannot be opened.
+     */
+    public Player createPlayer(Socket socket) throws IOException
+    {
+        InputStream leftover = new ByteArrayInputStream(buffer.array(), handshakeEnd, buffer.position() - handshakeEnd);
+        InputStream socketInput = new SequenceInputStream(leftover, socket.getInputStream());
+        PlayerConnection connection;
+        if (version == Protocol.VERSION_BINARY) 
+        { 
+            BinaryPlayerConnection binary = new BinaryPlayerConnection(socket, socketInput);
+            binary.setResumedSequence(resumedSequence);
+            connection = binary;
+        }
+        else { connection = new SerializedPlayerConnection(socket, socketInput); }
+        if (name == null) { return new Player(token, connection); }
+        Player player = new Player(name, connection);
+        player.setToken(ResumeRegistry.newToken());
+        return player;
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Reads the HELLO, RESUME or WATCH frame of a binary client if it has
+     * fully arrived.
+     * @throws IOException Thrown when the first frame is not a valid HELLO,
+     * RESUME or WATCH.
+     */
+    private void readHello() throws IOException
+    {
+        int start = frameStart;
+        if (buffer.position() < start + 2) { return; }
+        ByteBuffer received = ByteBuffer.wrap(buffer.array(), 0, buffer.position());
+        int length = received.getShort(start) & 0xFFFF;
+        if (buffer.position() < start + 2 + length) { return; }
+        if (received.get(start + 2) == Protocol.RESUME && length == 11)
+        {
+            token = received.getLong(start + 3);
+            int sequence = received.getShort(start + 11) & 0xFFFF;
+            resumedSequence = sequence == Protocol.NO_STATE ? -1 : sequence;
+            handshakeEnd = start + 2 + length;
+            return;
+        }
+        if (received.get(start + 2) == Protocol.WATCH && length == 9)
+        {
+            isWatching = true;
+            watchedGame = received.getLong(start + 3);
+            handshakeEnd = start + 2 + length;
+            return;
+        }
+        if (received.get(start + 2) != Protocol.HELLO || length < 3) { throw new IOException("Expected a HELLO frame"); }
+        int nameLength = received.getShort(start + 3) & 0xFFFF;
+        if (length != 3 + nameLength) { throw new IOException("HELLO name does not fit its frame"); }
+        checkNameLength(nameLength);
+        name = new String(buffer.array(), start + 5, nameLength, StandardCharsets.UTF_8);
+        handshakeEnd = start + 2 + length;
+    }
+
+    /**
+     * Reads the name line and object stream header of a serialized client if
+     * they have fully arrived.
+     * @throws IOException Thrown when the name is empty or too long.
+     */
+    private void readNameLine() throws IOException
+    {
+        byte[] bytes = buffer.array();
+        for (int i = 0; i < buffer.position(); i++)
+        {
+            if (bytes[i] == '\n')
+            {
+                if (buffer.position() < i + 1 + STREAM_HEADER_LENGTH) { return; }
+                int end = i > 0 && bytes[i - 1] == '\r' ? i - 1 : i;
+                checkNameLength(end);
+                name = new String(bytes, 0, end, StandardCharsets.UTF_8);
+                handshakeEnd = i + 1;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Checks that a name is given and fits in the frames it is sent in.
+     * @param nameLength The number of bytes in the name.
+     * @throws IOException Thrown when the name is empty or too long.
+     */
+    private static void checkNameLength(int nameLength) throws IOException
+    {
+        if (nameLength == 0) { throw new IOException("Name is empty"); }
+        if (nameLength > Protocol.MAX_NAME_LENGTH) { throw new IOException("Name is too long"); }
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public SocketChannel getChannel() { return channel; }
+    public ByteBuffer getBuffer() { return buffer; }
+    public long getStartTime() { return startTime; }
+    public boolean isWatching() { return isWatching; }
+    public long getWatchedGame() { return watchedGame; }
+    public boolean isReturning() { return isReturning; }
+}
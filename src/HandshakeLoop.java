@@ -0,0 +1,307 @@
+import java.io.IOException;
+import java.nio.channels.Channel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * This class is a non-blocking event loop that reads the handshake of many
+ * newly connected clients at once. A slow or silent client only occupies a
+ * buffer in the loop rather than the thread, and is dropped once its
+ * handshake times out. Players returning from a finished game wait here too
+ * until they ask to play again (see Lobby).
+ */
+public class HandshakeLoop implements Runnable
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Milliseconds between checks for expired handshakes.
+     */
+    private static final long SWEEP_INTERVAL = 1000;
+    /**
+     * Selector used to wait for handshake bytes from the clients.
+     */
+    private Selector selector;
+    /**
+     * Handshakes of channels accepted by the Acceptor (or returning from a
+     * game) that are waiting to be registered.
+     */
+    private Queue<Handshake> pending;
+    /**
+     * Receives the players that complete their handshake.
+     */
+    private Consumer<Player> players;
+    /**
+     * Receives the clients that ask to watch a game, or null if games may
+     * not be watched.
+     */
+    private SpectatorHub spectators;
+    /**
+     * Milliseconds a client has to complete its handshake.
+     */
+    private long handshakeTimeout;
+    /**
+     * Whether or not the loop is still running.
+     */
+    private volatile boolean isRunning;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs a HandshakeLoop that hands completed players to the input
+     * consumer.
+     * @param players Receives the players that complete their handshake.
+     * @param handshakeTimeout Milliseconds a client has to send its name.
+     * @param spectators Receives the clients that ask to watch a game, or
+     * null.
+     * @throws IOException Thrown when the selector cannot be opened.
+     */
+    public HandshakeLoop(Consumer<Player> players, long handshakeTimeout, SpectatorHub spectators) throws IOException
+    {
+        this.players = players;
+        this.spectators = spectators;
+        this.handshakeTimeout = handshakeTimeout;
+        selector = Selector.open();
+        pending = new ConcurrentLinkedQueue<>();
+        isRunning = true;
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Queues a newly accepted channel to be registered with this loop. Safe to
+     * call from any thread.
+     * @param channel The newly accepted channel.
+     */
+    public void register(SocketChannel channel)
+    {
+        register(new Handshake(channel, handshakeTimeout));
+    }
+
+    /**
+     * Queues a handshake to be registered with this loop (e.g. that of a
+     * player returning from a game). Safe to call from any thread.
+     * @param handshake The handshake, holding its channel.
+     */
+    public void register(Handshake handshake)
+    {
+        pending.add(handshake);
+        selector.wakeup();
+    }
+
+    /**
+     * Reads handshakes until the loop is closed.
+     */
+    @Override
+    public void run()
+    {
+        long nextSweep = System.currentTimeMillis() + SWEEP_INTERVAL;
+        try
+        {
+            while (isRunning)
+            {
+                selector.select(SWEEP_INTERVAL);
+                List<SelectionKey> completed = registerPending();
+                completed.addAll(readHandshakes());
+                if (!completed.isEmpty()) { handOff(completed); }
+                long now = System.currentTimeMillis();
+                if (now >= nextSweep)
+                {
+                    closeExpired(now);
+                    nextSweep = now + SWEEP_INTERVAL;
+                }
+            }
+        }
+        catch (IOException e) { if (isRunning) { ServerLog.warn("The handshake loop stopped: {}", e); } }
+        finally { closeSelector(); }
+    }
+
+    /**
+     * Stops the loop. The selector and any unfinished handshakes are closed by
+     * the loop thread once it wakes up.
+     */
+    public void close()
+    {
+        isRunning = false;
+        selector.wakeup();
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Registers the channel of every queued handshake with the selector. A
+     * returning player may have sent their HELLO along with their last move,
+     * so their handshake can be complete before anything more is read.
+     * @return The keys whose handshakes are already complete.
+     */
+    private List<SelectionKey> registerPending()
+    {
+        List<SelectionKey> completed = new ArrayList<>();
+        Handshake handshake;
+        while ((handshake = pending.poll()) != null)
+        {
+            SocketChannel channel = handshake.getChannel();
+            try
+            {
+                channel.configureBlocking(false);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ, handshake);
+                if (handshake.isComplete())
+                {
+                    key.cancel();
+                    completed.add(key);
+                }
+            }
+            catch (IOException e) { closeQuietly(channel); }
+        }
+        return completed;
+    }
+
+    /**
+     * Reads from every readable channel and collects completed handshakes.
+     * Completed keys are cancelled so their channels can leave the selector.
+     * @return The keys whose handshakes are complete.
+     */
+    private List<SelectionKey> readHandshakes()
+    {
+        List<SelectionKey> completed = new ArrayList<>();
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext())
+        {
+            SelectionKey key = keys.next();
+            keys.remove();
+            SocketChannel channel = (SocketChannel) key.channel();
+            Handshake handshake = (Handshake) key.attachment();
+            try
+            {
+                if (channel.read(handshake.getBuffer()) < 0) 
+                { 
+                    // A returning player who leaves is not a failed handshake
+                    if (handshake.isReturning()) 
+                    { 
+                        key.cancel();
+                        closeQuietly(channel);
+                        continue;
+                    }
+                    throw new IOException("Closed during handshake"); 
+                }
+                if (handshake.isComplete())
+                {
+                    key.cancel();
+                    completed.add(key);
+                }
+                else if (handshake.isOverflowed()) { throw new IOException("Handshake too long"); }
+            }
+            catch (IOException e)
+            {
+                ServerMetrics.HANDSHAKES_FAILED.increment();
+                key.cancel();
+                closeQuietly(channel);
+            }
+            catch (RuntimeException e)
+            {
+                // A malformed handshake drops its client rather than the loop
+                ServerLog.warn("Dropping a malformed handshake: {}", e);
+                ServerMetrics.HANDSHAKES_FAILED.increment();
+                key.cancel();
+                closeQuietly(channel);
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Switches the completed channels back to blocking mode, sends new
+     * players the token they may resume their games with, and hands the
+     * players off to the server. Spectators are handed to the spectator hub
+     * and stay non-blocking.
+     * @param completed The keys whose handshakes are complete.
+     * @throws IOException Thrown when the selector fails.
+     */
+    private void handOff(List<SelectionKey> completed) throws IOException
+    {
+        // Flush the cancelled keys so the channels may become blocking again
+        selector.selectNow();
+        for (SelectionKey key : completed)
+        {
+            SocketChannel channel = (SocketChannel) key.channel();
+            Handshake handshake = (Handshake) key.attachment();
+            if (handshake.isWatching())
+            {
+                if (spectators != null) { spectators.watch(channel, handshake.getWatchedGame()); }
+                else { closeQuietly(channel); }
+                continue;
+            }
+            try
+            {
+                channel.configureBlocking(true);
+                Player player = handshake.createPlayer(channel.socket());
+                if (player.isResuming()) { ServerLog.debug("A player is resuming their game."); }
+                else 
+                { 
+                    player.getConnection().sendToken(player.getToken());
+                    ServerLog.debug(handshake.isReturning() ? "{} is playing again." : "{} connected.", player.getName());
+                }
+                // The time a returning player took to decide is not handshake time
+                if (handshake.isReturning()) { ServerMetrics.PLAYERS_REQUEUED.increment(); }
+                else { ServerMetrics.HANDSHAKE_TIME.record(System.nanoTime() - handshake.getStartTime()); }
+                players.accept(player);
+            }
+            catch (IOException e)
+            {
+                ServerMetrics.HANDSHAKES_FAILED.increment();
+                ServerLog.warn("Problem setting up player: {}. Dropping connection...", e.getMessage());
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    /**
+     * Closes every channel whose handshake has taken too long.
+     * @param now The current time in milliseconds.
+     */
+    private void closeExpired(long now)
+    {
+        for (SelectionKey key : selector.keys())
+        {
+            Handshake handshake = (Handshake) key.attachment();
+            if (key.isValid() && handshake.hasExpired(now))
+            {
+                if (!handshake.isReturning()) { ServerMetrics.HANDSHAKES_FAILED.increment(); }
+                key.cancel();
+                closeQuietly(key.channel());
+            }
+        }
+    }
+
+    /**
+     * Closes every channel still registered with the selector, and then the
+     * selector itself.
+     */
+    private void closeSelector()
+    {
+        for (SelectionKey key : selector.keys()) { closeQuietly(key.channel()); }
+        try { selector.close(); }
+        catch (IOException e) { ServerLog.warn("Could not close the handshake selector: {}", e.getMessage()); }
+    }
+
+    /**
+     * Closes the input channel, ignoring any errors.
+     * @param channel The channel to close.
+     */
+    private void closeQuietly(Channel channel)
+    {
+        try { channel.close(); }
+        catch (IOException e) { }
+    }
+}
@@ -0,0 +1,128 @@
+import java.util.function.Consumer;
+
+/**
+ * This class is a ClientDisplay without a screen. It lets a ClientController
+ * run as a bot: the name is fixed up front and a move is chosen by a
+ * MoveStrategy as soon as moves are enabled. Prompts are discarded. The bot
+ * plays a fixed number of games over its connection.
+ */
+public class HeadlessDisplay implements ClientDisplay
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * The name given whenever a name is asked for.
+     */
+    private String name;
+    /**
+     * Decides the moves made.
+     */
+    private MoveStrategy strategy;
+    /**
+     * Receives the chosen moves.
+     */
+    private Consumer<int[]> listener;
+    /**
+     * The board as last shown.
+     */
+    private char[][] board;
+    /**
+     * The mark of the active player as last shown.
+     */
+    private char mark;
+    /**
+     * Whether or not a move may be chosen.
+     */
+    private boolean isEnabled;
+    /**
+     * The number of games left to play after the current one.
+     */
+    private int gamesLeft;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs a HeadlessDisplay that plays a single game.
+     * @param name The name of the bot.
+     * @param strategy Decides the moves made.
+     */
+    public HeadlessDisplay(String name, MoveStrategy strategy)
+    {
+        this(name, strategy, 1);
+    }
+
+    /**
+     * Constructs a HeadlessDisplay.
+     * @param name The name of the bot.
+     * @param strategy Decides the moves made.
+     * @param games The number of games to play.
+     */
+    public HeadlessDisplay(String name, MoveStrategy strategy, int games)
+    {
+        this.name = name;
+        this.strategy = strategy;
+        this.board = new Board().getBoard();
+        this.gamesLeft = games - 1;
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    @Override
+    public String promptName() { return name; }
+
+    /**
+     * Plays again until the number of games asked for have been played.
+     * @return True if there are games left to play.
+     */
+    @Override
+    public boolean promptPlayAgain() { return gamesLeft-- > 0; }
+
+    @Override
+    public void addMoveListener(Consumer<int[]> listener) { this.listener = listener; }
+
+    /**
+     * Enables or disables the choice of moves. A move is chosen as soon as
+     * moves are enabled.
+     * @param enable Whether or not moves may be chosen.
+     */
+    @Override
+    public void enableButtons(boolean enable)
+    {
+        isEnabled = enable;
+        if (enable) { chooseMove(); }
+    }
+
+    @Override
+    public void updateButtonText(char[][] board) { this.board = board; }
+
+    @Override
+    public void setMarkField(String text) { mark = text.charAt(0); }
+
+    @Override
+    public void setNameField(String text) { }
+
+    /**
+     * Discards the prompt. A prompt shown while moves are enabled means the
+     * last move was refused, so another move is chosen.
+     * @param text The prompt.
+     */
+    @Override
+    public void setTextArea(String text)
+    {
+        if (isEnabled) { chooseMove(); }
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Asks the strategy for a move and hands it to the listener.
+     */
+    private void chooseMove()
+    {
+        if (listener != null) { listener.accept(strategy.chooseMove(board, mark)); }
+    }
+}
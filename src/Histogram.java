@@ -0,0 +1,140 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class counts samples (e.g. latencies in nanoseconds) in logarithmic
+ * buckets so that percentiles can be read while samples are being recorded.
+ * Every power of two is split into 8 buckets, so a percentile is reported
+ * within 12.5% of the true sample. Recording is lock-free and does not
+ * allocate, so any number of threads may record at once. The count and sum
+ * are striped (see LongAdder) so that threads recording at once do not
+ * contend on them.
+ */
+public class Histogram
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Number of buckets each power of two is split into, as a power of two.
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+    /**
+     * Number of buckets each power of two is split into.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * Sample count of each bucket.
+     */
+    private AtomicLongArray counts;
+    /**
+     * Number of samples recorded.
+     */
+    private LongAdder count;
+    /**
+     * Sum of the samples recorded.
+     */
+    private LongAdder sum;
+    /**
+     * Largest sample recorded.
+     */
+    private AtomicLong max;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs an empty Histogram that accepts any non-negative long.
+     */
+    public Histogram()
+    {
+        counts = new AtomicLongArray((64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+        count = new LongAdder();
+        sum = new LongAdder();
+        max = new AtomicLong();
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Records a sample. Negative samples are recorded as 0.
+     * @param value The sample.
+     */
+    public void record(long value)
+    {
+        value = Math.max(0, value);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) { }
+    }
+
+    /**
+     * Finds the sample at the input percentile.
+     * @param fraction The percentile as a fraction (e.g. 0.99).
+     * @return The upper bound of the bucket holding the percentile, or 0 if
+     * no samples have been recorded.
+     */
+    public long getPercentile(double fraction)
+    {
+        long total = count.sum();
+        if (total == 0) { return 0; }
+        long rank = Math.max(1, (long) Math.ceil(total * fraction));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length(); bucket++)
+        {
+            seen += counts.get(bucket);
+            if (seen >= rank) { return Math.min(upperBoundOf(bucket), max.get()); }
+        }
+        return max.get();
+    }
+
+    /**
+     * Gets the mean of the samples recorded.
+     * @return The mean, or 0 if no samples have been recorded.
+     */
+    public double getMean()
+    {
+        long total = count.sum();
+        return total == 0 ? 0 : (double) sum.sum() / total;
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Finds the bucket of a sample. Samples below SUB_BUCKETS each have their
+     * own bucket; larger samples are bucketed by their highest bit and the
+     * SUB_BUCKET_BITS bits below it.
+     * @param value The non-negative sample.
+     * @return The index of the bucket.
+     */
+    private static int bucketOf(long value)
+    {
+        if (value < SUB_BUCKETS) { return (int) value; }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * Finds the largest sample that falls in a bucket.
+     * @param bucket The index of the bucket.
+     * @return The largest sample in the bucket.
+     */
+    private static long upperBoundOf(int bucket)
+    {
+        if (bucket < SUB_BUCKETS) { return bucket; }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long first = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return first + (1L << shift) - 1;
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public long getCount() { return count.sum(); }
+    public long getMax() { return max.get(); }
+}
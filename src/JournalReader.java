@@ -0,0 +1,120 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * This class reads the game journal written by GameJournal. Segments are
+ * memory-mapped read-only and scanned in order, so any number of games can
+ * be read without loading the journal into memory.
+ *
+ * Usage: java JournalReader [directory] [gameId]
+ */
+public class JournalReader
+{
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * JournalReader only holds static helpers.
+     */
+    private JournalReader() { }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Passes every record in a journal to the input action, oldest first.
+     * @param directory The directory holding the segment files.
+     * @param action Receives each record.
+     * @throws IOException Thrown when a segment cannot be read.
+     */
+    public static void forEach(Path directory, Consumer<JournalRecord> action) throws IOException
+    {
+        for (Path segment : GameJournal.listSegments(directory)) { forEachInSegment(segment, action); }
+    }
+
+    /**
+     * Replays a game from the journal.
+     * @param directory The directory holding the segment files.
+     * @param gameId The id of the game.
+     * @return The board as it was after the last move of the game, or null
+     * if the game was not found.
+     * @throws IOException Thrown when a segment cannot be read.
+     */
+    public static Board replay(Path directory, long gameId) throws IOException
+    {
+        Board[] board = new Board[1];
+        forEach(directory, record ->
+        {
+            if (record.getGameId() != gameId) { return; }
+            if (record.getType() == JournalRecord.START) { board[0] = new Board(record.getCell(), record.getMark()); }
+            else if (record.getType() == JournalRecord.MOVE && board[0] != null) { board[0].addMark(record.getCell(), record.getMark()); }
+        });
+        return board[0];
+    }
+
+    /**
+     * Finds the largest game id in a segment.
+     * @param segment The segment file.
+     * @return The largest game id, or 0 if the segment holds no records.
+     * @throws IOException Thrown when the segment cannot be read.
+     */
+    public static long findLastGameId(Path segment) throws IOException
+    {
+        long[] lastGameId = new long[1];
+        forEachInSegment(segment, record -> lastGameId[0] = Math.max(lastGameId[0], record.getGameId()));
+        return lastGameId[0];
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Passes every record in a segment to the input action, oldest first.
+     * @param segment The segment file.
+     * @param action Receives each record.
+     * @throws IOException Thrown when the segment cannot be read.
+     */
+    private static void forEachInSegment(Path segment, Consumer<JournalRecord> action) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ))
+        {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (!GameJournal.hasHeader(buffer)) { throw new IOException("Not a journal segment: " + segment); }
+            JournalRecord record;
+            for (int position = GameJournal.HEADER_LENGTH; position + JournalRecord.SIZE <= buffer.capacity() && 
+                (record = JournalRecord.readFrom(buffer, position)) != null; position += JournalRecord.SIZE)
+            {
+                action.accept(record);
+            }
+        }
+    }
+
+    //=========================================================================
+    // Main
+    //=========================================================================
+    /**
+     * Prints the final board of a game, or a summary of the journal if no
+     * game id is given.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        Path directory = Paths.get(args.length > 0 ? args[0] : "journal");
+        if (args.length > 1)
+        {
+            Board board = replay(directory, Long.parseLong(args[1]));
+            if (board == null) { System.out.println("Game " + args[1] + " not found."); return; }
+            for (char[] row : board.getBoard()) { System.out.println(new String(row).replace(' ', '.')); }
+            System.out.println(board.hasWon() ? "Won." : board.isFull() ? "Tie." : "Unfinished.");
+            return;
+        }
+        long[] counts = new long[JournalRecord.ABORT + 1];
+        forEach(directory, record -> counts[record.getType()]++);
+        System.out.println("games=" + counts[JournalRecord.START] + " moves=" + counts[JournalRecord.MOVE] + 
+            " ended=" + counts[JournalRecord.END] + " aborted=" + counts[JournalRecord.ABORT]);
+    }
+}
@@ -0,0 +1,121 @@
+import java.nio.ByteBuffer;
+
+/**
+ * This class is one fixed size record of the game journal (see GameJournal).
+ * Each record describes one event of one game:
+ * <pre>
+ * [u64 gameId][u64 timestamp][u16 seq][u8 type][u8 cell][u8 mark][3 unused]
+ * </pre>
+ * START records hold the board size in the cell byte and the win length in
+ * the mark byte. MOVE records hold the cell marked and the mark placed. END
+ * records hold the winning mark, or ' ' for a tie. ABORT records end a game
+ * that was not finished. A type of 0 marks the unused space at the end of a
+ * journal segment.
+ */
+public class JournalRecord
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Number of bytes taken by each record.
+     */
+    public static final int SIZE = 24;
+    /**
+     * Record types.
+     */
+    public static final int START = 1;
+    public static final int MOVE = 2;
+    public static final int END = 3;
+    public static final int ABORT = 4;
+    /**
+     * Id of the game the record belongs to.
+     */
+    private long gameId;
+    /**
+     * When the event happened (milliseconds since the epoch).
+     */
+    private long timestamp;
+    /**
+     * Sequence number of the game when the event happened (see ServerModel).
+     */
+    private int sequence;
+    /**
+     * The type of event.
+     */
+    private int type;
+    /**
+     * The cell marked, or the board size of a START record.
+     */
+    private int cell;
+    /**
+     * The mark placed, the win length of a START record or the winning mark
+     * of an END record.
+     */
+    private int mark;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs a JournalRecord.
+     * @param gameId Id of the game the record belongs to.
+     * @param timestamp When the event happened.
+     * @param sequence Sequence number of the game when the event happened.
+     * @param type The type of event.
+     * @param cell The cell marked (or board size).
+     * @param mark The mark placed (or win length, or winning mark).
+     */
+    public JournalRecord(long gameId, long timestamp, int sequence, int type, int cell, int mark)
+    {
+        this.gameId = gameId;
+        this.timestamp = timestamp;
+        this.sequence = sequence;
+        this.type = type;
+        this.cell = cell;
+        this.mark = mark;
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Reads a record.
+     * @param buffer The buffer holding the record.
+     * @param offset The position of the record in the buffer.
+     * @return The record, or null if the space holds no record.
+     */
+    public static JournalRecord readFrom(ByteBuffer buffer, int offset)
+    {
+        int type = buffer.get(offset + 18) & 0xFF;
+        if (type == 0) { return null; }
+        return new JournalRecord(buffer.getLong(offset), buffer.getLong(offset + 8), 
+            buffer.getShort(offset + 16) & 0xFFFF, type, buffer.get(offset + 19) & 0xFF, buffer.get(offset + 20) & 0xFF);
+    }
+
+    /**
+     * Writes the record. The type is written last, so the space is only
+     * marked as used once the other fields are in place.
+     * @param buffer The buffer to write to.
+     * @param offset The position of the record in the buffer.
+     */
+    public void writeTo(ByteBuffer buffer, int offset)
+    {
+        buffer.putLong(offset, gameId);
+        buffer.putLong(offset + 8, timestamp);
+        buffer.putShort(offset + 16, (short) sequence);
+        buffer.put(offset + 19, (byte) cell);
+        buffer.put(offset + 20, (byte) mark);
+        buffer.put(offset + 18, (byte) type);
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public long getGameId() { return gameId; }
+    public long getTimestamp() { return timestamp; }
+    public int getSequence() { return sequence; }
+    public int getType() { return type; }
+    public int getCell() { return cell; }
+    public char getMark() { return (char) mark; }
+}
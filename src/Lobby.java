@@ -0,0 +1,77 @@
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+
+/**
+ * This class keeps players connected between games. Once a game is over,
+ * each player whose connection is still open is handed back to a
+ * HandshakeLoop instead of being disconnected. The player's client may then
+ * send another HELLO frame (without a header) to be queued for the next
+ * game, which saves it opening a new connection. Only players speaking the
+ * binary protocol over a socket can be kept; other players are disconnected.
+ */
+public class Lobby
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Hands returning players to its handshake loops.
+     */
+    private Acceptor acceptor;
+    /**
+     * Milliseconds a player has to ask to play again before they are
+     * disconnected.
+     */
+    private long wait;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs a Lobby.
+     * @param acceptor Hands returning players to its handshake loops.
+     * @param wait Milliseconds a player has to ask to play again.
+     */
+    public Lobby(Acceptor acceptor, long wait)
+    {
+        this.acceptor = acceptor;
+        this.wait = wait;
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Keeps the connection of a player whose game is over (on a game
+     * thread), or closes it if it cannot be kept.
+     * @param connection The player's connection.
+     */
+    public void requeue(PlayerConnection connection)
+    {
+        if (!(connection instanceof BinaryPlayerConnection))
+        {
+            connection.close();
+            return;
+        }
+        BinaryPlayerConnection binary = (BinaryPlayerConnection) connection;
+        SocketChannel channel = binary.getChannel();
+        if (channel == null || !channel.isOpen())
+        {
+            connection.close();
+            return;
+        }
+        try { requeue(channel, binary.detach()); }
+        catch (IOException e) { connection.close(); }
+    }
+
+    /**
+     * Keeps the channel of a player whose game is over. The channel must
+     * not be registered with another selector.
+     * @param channel The channel connected to the player's client.
+     * @param unread Bytes already received from the client but not read.
+     */
+    public void requeue(SocketChannel channel, byte[] unread)
+    {
+        acceptor.requeue(new Handshake(channel, wait, unread));
+    }
+}
@@ -0,0 +1,117 @@
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * This class is a slot in the ring buffer of an EventLog. Slots are
+ * allocated once and reused, so logging an event allocates nothing. The
+ * message is only formatted by the log's writer thread.
+ */
+public class LogEvent
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Placeholder replaced by the next argument when the message is
+     * formatted.
+     */
+    private static final String PLACEHOLDER = "{}";
+    /**
+     * Sequence number of the event held, or -1 if none has been held yet.
+     * Written last by the logging thread, so the writer thread sees a
+     * complete event once it reads the expected sequence number.
+     */
+    private volatile long sequence;
+    /**
+     * The level of the event.
+     */
+    private LogLevel level;
+    /**
+     * The message, with a "{}" placeholder for each argument.
+     */
+    private String template;
+    /**
+     * The arguments of the message, or null.
+     */
+    private Object arg0, arg1, arg2;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs an empty LogEvent.
+     */
+    public LogEvent()
+    {
+        sequence = -1;
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Fills the slot with an event and publishes it to the writer thread.
+     * @param sequence The sequence number claimed for the event.
+     * @param level The level of the event.
+     * @param template The message, with a "{}" placeholder per argument.
+     * @param arg0 The first argument, or null.
+     * @param arg1 The second argument, or null.
+     * @param arg2 The third argument, or null.
+     */
+    public void publish(long sequence, LogLevel level, String template, Object arg0, Object arg1, Object arg2)
+    {
+        this.level = level;
+        this.template = template;
+        this.arg0 = arg0;
+        this.arg1 = arg1;
+        this.arg2 = arg2;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Formats the event as a line of text, followed by the stack trace of
+     * any argument that is an exception, then lets go of its arguments so
+     * the slot does not keep them alive.
+     * @param text The text to append the line to.
+     */
+    public void drainTo(StringBuilder text)
+    {
+        if (level != LogLevel.INFO) { text.append(level).append(": "); }
+        int start = 0;
+        Object[] args = { arg0, arg1, arg2 };
+        for (Object arg : args)
+        {
+            int placeholder = template.indexOf(PLACEHOLDER, start);
+            if (placeholder < 0) { break; }
+            text.append(template, start, placeholder).append(arg);
+            start = placeholder + PLACEHOLDER.length();
+        }
+        text.append(template, start, template.length()).append(System.lineSeparator());
+        for (Object arg : args)
+        {
+            if (arg instanceof Throwable) { appendStackTrace(text, (Throwable) arg); }
+        }
+        template = null;
+        arg0 = arg1 = arg2 = null;
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Appends the stack trace of an exception, as printStackTrace prints it.
+     * @param text The text to append the stack trace to.
+     * @param error The exception.
+     */
+    private static void appendStackTrace(StringBuilder text, Throwable error)
+    {
+        StringWriter trace = new StringWriter();
+        error.printStackTrace(new PrintWriter(trace));
+        text.append(trace);
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public long getSequence() { return sequence; }
+}
@@ -0,0 +1,27 @@
+/**
+ * This enum lists the levels of the server's log, from least to most
+ * important. Only events at or above the log's level are written.
+ */
+public enum LogLevel
+{
+    /**
+     * Events of every connection (e.g. each player connecting).
+     */
+    DEBUG,
+    /**
+     * Events of every game (e.g. games starting and ending).
+     */
+    INFO,
+    /**
+     * Problems the server recovers from (e.g. a dropped connection).
+     */
+    WARN,
+    /**
+     * Problems the server cannot recover from.
+     */
+    ERROR,
+    /**
+     * Turns the log off.
+     */
+    OFF
+}
@@ -0,0 +1,305 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * This class is a player's place in a GameSession. It reads MOVE frames from
+ * the player's non-blocking channel as they arrive, and writes frames without
+ * blocking, keeping whatever the socket could not take until it has room.
+ * Only used by the GameLoop hosting the session.
+ */
+public class LoopSeat
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Length of a MOVE frame, including its length prefix.
+     */
+    private static final int MOVE_FRAME_LENGTH = 6;
+    /**
+     * The most bytes kept for a player whose socket is full before they are
+     * disconnected.
+     */
+    private static final int MAX_PENDING_BYTES = 64 * 1024;
+    /**
+     * The session the seat belongs to.
+     */
+    private GameSession session;
+    /**
+     * The player sitting in the seat.
+     */
+    private Player player;
+    /**
+     * Index of the seat in its session.
+     */
+    private int index;
+    /**
+     * Whether or not the player is a computer opponent.
+     */
+    private boolean isComputer;
+    /**
+     * Non-blocking channel connected to the player's client, or null if the
+     * player is a computer or has lost their connection.
+     */
+    private SocketChannel channel;
+    /**
+     * The key of the channel in the loop's selector.
+     */
+    private SelectionKey key;
+    /**
+     * Bytes received from the client that have not been read as frames.
+     */
+    private ByteBuffer input;
+    /**
+     * Bytes left to skip of a frame that is not a MOVE.
+     */
+    private int skipping;
+    /**
+     * Bytes the socket could not take yet, or null.
+     */
+    private ByteBuffer pending;
+    /**
+     * Whether or not the client has been sent the whole board.
+     */
+    private boolean hasSnapshot;
+    /**
+     * The sequence number of the latest state received by a client resuming
+     * its game, or -1.
+     */
+    private int resumedSequence;
+    /**
+     * Whether or not the channel is closed once the pending bytes are
+     * written.
+     */
+    private boolean isClosing;
+    /**
+     * The number of invalid moves the player has made in a row.
+     */
+    private int invalidMoves;
+    /**
+     * Time (in milliseconds) by which a player who lost their connection
+     * must resume the game, or 0 if they are not being waited for.
+     */
+    private long deadline;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs an empty LoopSeat for the input player.
+     * @param session The session the seat belongs to.
+     * @param player The player sitting in the seat.
+     * @param index Index of the seat in its session.
+     */
+    public LoopSeat(GameSession session, Player player, int index)
+    {
+        this.session = session;
+        this.player = player;
+        this.index = index;
+        this.isComputer = player.getConnection() instanceof AiPlayerConnection;
+        resumedSequence = -1;
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Connects the seat to a client's channel and registers it with the
+     * loop's selector.
+     * @param channel Channel connected to the client.
+     * @param unread Bytes already received from the client.
+     * @param resumedSequence The sequence number of the latest state the
+     * client received, or -1.
+     * @param selector The loop's selector.
+     * @throws IOException Thrown when the channel is closed.
+     */
+    public void connect(SocketChannel channel, byte[] unread, int resumedSequence, Selector selector) throws IOException
+    {
+        this.channel = channel;
+        this.resumedSequence = resumedSequence;
+        hasSnapshot = false;
+        pending = null;
+        skipping = 0;
+        isClosing = false;
+        input = ByteBuffer.allocate(Math.max(MOVE_FRAME_LENGTH * 2, unread.length));
+        input.put(unread);
+        channel.configureBlocking(false);
+        key = channel.register(selector, SelectionKey.OP_READ, this);
+    }
+
+    /**
+     * Reads whatever the client has sent.
+     * @return False if the client has disconnected.
+     * @throws IOException Thrown when the connection fails.
+     */
+    public boolean read() throws IOException
+    {
+        return channel.read(input) >= 0;
+    }
+
+    /**
+     * Takes the next MOVE out of the bytes received. Other frames are
+     * skipped.
+     * @return The move, or null if no whole MOVE has been received.
+     * @throws IOException Thrown when the client sent a malformed frame.
+     */
+    public Move nextMove() throws IOException
+    {
+        input.flip();
+        try
+        {
+            while (true)
+            {
+                if (skipping > 0)
+                {
+                    int skipped = Math.min(skipping, input.remaining());
+                    input.position(input.position() + skipped);
+                    skipping -= skipped;
+                    if (skipping > 0) { return null; }
+                }
+                if (input.remaining() < 3) { return null; }
+                int length = input.getShort(input.position()) & 0xFFFF;
+                if (length < 1 || length > Protocol.MAX_FRAME_LENGTH) { throw new IOException("Bad frame length " + length); }
+                int type = input.get(input.position() + 2);
+                if (type != Protocol.MOVE || length != 4)
+                {
+                    // Skip frames that are not expected at this point
+                    input.position(input.position() + 3);
+                    skipping = length - 1;
+                    continue;
+                }
+                if (input.remaining() < MOVE_FRAME_LENGTH) { return null; }
+                input.position(input.position() + 3);
+                int sequence = input.getShort() & 0xFFFF;
+                return new Move(input.get() & 0xFF, sequence);
+            }
+        }
+        finally { input.compact(); }
+    }
+
+    /**
+     * Writes the frames encoded in the buffer to the client. Whatever the
+     * socket cannot take is kept until it has room.
+     * @param frames The encoded frames, reset once written.
+     * @throws IOException Thrown when the client has disconnected or cannot
+     * keep up.
+     */
+    public void write(FrameBuffer frames) throws IOException
+    {
+        ByteBuffer bytes = frames.toByteBuffer();
+        frames.reset();
+        if (channel == null) { return; }
+        if (pending == null) { channel.write(bytes); }
+        if (!bytes.hasRemaining()) { return; }
+        int kept = pending == null ? 0 : pending.remaining();
+        if (kept + bytes.remaining() > MAX_PENDING_BYTES) { throw new IOException("Client is not reading"); }
+        ByteBuffer combined = ByteBuffer.allocate(kept + bytes.remaining());
+        if (pending != null) { combined.put(pending); }
+        pending = combined.put(bytes).flip();
+        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Writes the bytes kept for the client once its socket has room.
+     * @throws IOException Thrown when the client has disconnected.
+     */
+    public void flush() throws IOException
+    {
+        channel.write(pending);
+        if (pending.hasRemaining()) { return; }
+        pending = null;
+        if (isClosing) { close(); }
+        else { key.interestOps(SelectionKey.OP_READ); }
+    }
+
+    /**
+     * Closes the channel once the bytes kept for the client are written.
+     * Nothing more is read from the client in the meantime.
+     */
+    public void finish()
+    {
+        if (channel == null) { return; }
+        if (pending == null) { close(); }
+        else 
+        { 
+            isClosing = true;
+            key.interestOps(SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * Checks to see if the channel can be let go of without closing it.
+     * @return True if the seat is connected and has nothing left to write.
+     */
+    public boolean isReleasable()
+    {
+        return channel != null && pending == null;
+    }
+
+    /**
+     * Lets go of the channel without closing it, so the player may play
+     * again over it (see Lobby). The channel leaves the loop's selector the
+     * next time the loop selects.
+     * @return The bytes received from the client that were not read.
+     */
+    public byte[] release()
+    {
+        key.cancel();
+        byte[] unread = new byte[input.position()];
+        input.flip();
+        input.get(unread);
+        channel = null;
+        input = null;
+        return unread;
+    }
+
+    /**
+     * Closes the channel straight away.
+     */
+    public void close()
+    {
+        if (channel == null) { return; }
+        key.cancel();
+        try { channel.close(); }
+        catch (IOException e) { }
+        channel = null;
+        input = null;
+        pending = null;
+    }
+
+    /**
+     * Checks to see if the seat is connected to a client.
+     * @return True if the seat has a channel.
+     */
+    public boolean isConnected()
+    {
+        return channel != null;
+    }
+
+    /**
+     * Counts an invalid move made by the player.
+     * @return The number of invalid moves the player has made in a row.
+     */
+    public int countInvalidMove()
+    {
+        return ++invalidMoves;
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public GameSession getSession() { return session; }
+    public SocketChannel getChannel() { return channel; }
+    public Player getPlayer() { return player; }
+    public int getIndex() { return index; }
+    public boolean isComputer() { return isComputer; }
+    public boolean hasSnapshot() { return hasSnapshot; }
+    public void setHasSnapshot(boolean hasSnapshot) { this.hasSnapshot = hasSnapshot; }
+    public int getResumedSequence() { return resumedSequence; }
+    public void resetInvalidMoves() { invalidMoves = 0; }
+    public long getDeadline() { return deadline; }
+    public void setDeadline(long deadline) { this.deadline = deadline; }
+}
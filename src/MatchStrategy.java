@@ -0,0 +1,41 @@
+/**
+ * This interface decides which waiting players are matched against each
+ * other. A strategy is only used by the Matchmaker's thread, so it does not
+ * need to be thread safe.
+ */
+public interface MatchStrategy
+{
+    /**
+     * Adds a player to the pool of waiting players.
+     * @param ticket The ticket of the waiting player.
+     */
+    void add(MatchTicket ticket);
+
+    /**
+     * Removes the next pair of players that should play each other, if any.
+     * Called repeatedly until it returns null, and again whenever a player is
+     * added or some time has passed (so that strategies may relax their rules
+     * for players who have waited a long time).
+     * @param now The current time (from System.nanoTime()).
+     * @return The two tickets to match, with the player to play 'X' first,
+     * or null if no pair should be matched yet.
+     */
+    MatchTicket[] nextMatch(long now);
+
+    /**
+     * Removes a player who has waited at least the input time without being
+     * matched (e.g. to match them against a computer opponent).
+     * @param now The current time (from System.nanoTime()).
+     * @param maxWait The wait time (in nanoseconds) after which a player may
+     * be removed.
+     * @return The ticket of a player who has waited at least maxWait, or
+     * null if there is none.
+     */
+    MatchTicket pollWaitingSince(long now, long maxWait);
+
+    /**
+     * Gets the number of players waiting in the pool.
+     * @return The number of waiting players.
+     */
+    int size();
+}
@@ -0,0 +1,101 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class represents a player waiting in the matchmaking queue, along with
+ * the time they started waiting and their rating when they were queued.
+ */
+public class MatchTicket
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * The sequence number given to the next ticket.
+     */
+    private static final AtomicLong NEXT_SEQUENCE = new AtomicLong();
+    /**
+     * The player waiting for a game.
+     */
+    private Player player;
+    /**
+     * The time (from System.nanoTime()) at which the player was queued.
+     */
+    private long enqueuedAt;
+    /**
+     * The player's rating when they were queued. Must not change once the
+     * ticket is handed to a strategy.
+     */
+    private double rating;
+    /**
+     * Number telling tickets apart, given in the order tickets are made.
+     */
+    private long sequence;
+    /**
+     * The time (from System.nanoTime()) from which a strategy may match the
+     * player with the opponent it is weighing them against. Only used by the
+     * strategy holding the ticket.
+     */
+    private long readyAt;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs a MatchTicket for an unrated player queued at the current
+     * time.
+     * @param player The player waiting for a game.
+     */
+    public MatchTicket(Player player)
+    {
+        this(player, PlayerProfile.INITIAL_RATING);
+    }
+
+    /**
+     * Constructs a MatchTicket for a player queued at the current time.
+     * @param player The player waiting for a game.
+     * @param rating The player's rating.
+     */
+    public MatchTicket(Player player, double rating)
+    {
+        this(player, rating, System.nanoTime());
+    }
+
+    /**
+     * Constructs a MatchTicket for a player queued at the input time.
+     * @param player The player waiting for a game.
+     * @param rating The player's rating.
+     * @param enqueuedAt The time (from System.nanoTime()) at which the
+     * player was queued.
+     */
+    public MatchTicket(Player player, double rating, long enqueuedAt)
+    {
+        this.player = player;
+        this.rating = rating;
+        this.enqueuedAt = enqueuedAt;
+        this.sequence = NEXT_SEQUENCE.getAndIncrement();
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Gets how long the player has been waiting.
+     * @param now The current time (from System.nanoTime()).
+     * @return The time waited in nanoseconds.
+     */
+    public long getWaitTime(long now)
+    {
+        return now - enqueuedAt;
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public Player getPlayer() { return player; }
+    public long getEnqueuedAt() { return enqueuedAt; }
+    public double getRating() { return rating; }
+    public void setRating(double rating) { this.rating = rating; }
+    public long getSequence() { return sequence; }
+    public long getReadyAt() { return readyAt; }
+    public void setReadyAt(long readyAt) { this.readyAt = readyAt; }
+}
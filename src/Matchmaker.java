@@ -0,0 +1,302 @@
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class pairs waiting players and starts games between them. Players are
+ * queued from any thread (e.g. the handshake loops), while a single matcher
+ * thread hands them to a MatchStrategy and starts a game for every pair the
+ * strategy returns: on the GameEngine if there is one and it can host the
+ * players, or else as a ServerController on the executor. A player left
+ * waiting for too long is matched against a computer opponent instead.
+ * Players who disconnect while waiting are dropped when they are matched,
+ * and their opponent waits for another. Queue depth and wait time are
+ * tracked so that time-to-match can be monitored.
+ */
+public class Matchmaker implements Runnable
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Milliseconds between checks of the strategy when no players arrive, so
+     * that strategies can relax their rules for players who have waited.
+     */
+    private static final long POLL_INTERVAL = 100;
+    /**
+     * Players queued since the matcher thread last checked.
+     */
+    private BlockingQueue<MatchTicket> incoming;
+    /**
+     * Decides which waiting players play each other.
+     */
+    private MatchStrategy strategy;
+    /**
+     * Executor that games are submitted to.
+     */
+    private Executor pool;
+    /**
+     * Hosts games on event loop threads, or null if every game runs on the
+     * executor.
+     */
+    private GameEngine engine;
+    /**
+     * Time (in nanoseconds) a player waits before being matched against a
+     * computer opponent, or 0 if computer opponents are not used.
+     */
+    private long aiWait;
+    /**
+     * The number of rows (and columns) of the boards games are played on.
+     */
+    private int boardSize;
+    /**
+     * The number of marks in a row needed to win.
+     */
+    private int winLength;
+    /**
+     * The services used by the games started.
+     */
+    private GameServices services;
+    /**
+     * The number of players waiting for a game.
+     */
+    private AtomicInteger queueDepth;
+    /**
+     * The number of games started.
+     */
+    private AtomicLong matchesMade;
+    /**
+     * The number of games started against a computer opponent.
+     */
+    private AtomicLong aiMatchesMade;
+    /**
+     * The number of players matched.
+     */
+    private AtomicLong playersMatched;
+    /**
+     * The total time (in nanoseconds) matched players spent waiting.
+     */
+    private AtomicLong totalWaitTime;
+    /**
+     * The longest time (in nanoseconds) a matched player spent waiting.
+     */
+    private AtomicLong maxWaitTime;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs a Matchmaker. Computer opponents only play 3x3 tic-tac-toe,
+     * so they are not used for other board sizes.
+     * @param config The match strategy, computer opponent wait and board
+     * settings of the server.
+     * @param pool Executor that games are submitted to.
+     */
+    public Matchmaker(ServerConfig config, Executor pool)
+    {
+        this(config, pool, new GameServices());
+    }
+
+    /**
+     * Constructs a Matchmaker whose games use the input services (e.g. to be
+     * recorded in a journal).
+     * @param config The match strategy, computer opponent wait and board
+     * settings of the server.
+     * @param pool Executor that games are submitted to.
+     * @param services The services used by the games started.
+     */
+    public Matchmaker(ServerConfig config, Executor pool, GameServices services)
+    {
+        this(config, pool, null, services);
+    }
+
+    /**
+     * Constructs a Matchmaker whose games are hosted by the input engine
+     * when it can host their players.
+     * @param config The match strategy, computer opponent wait and board
+     * settings of the server.
+     * @param pool Executor that games the engine cannot host are submitted
+     * to.
+     * @param engine Hosts games on event loop threads, or null.
+     * @param services The services used by the games started.
+     */
+    public Matchmaker(ServerConfig config, Executor pool, GameEngine engine, GameServices services)
+    {
+        this.services = services;
+        this.engine = engine;
+        this.strategy = config.getMatchStrategy();
+        this.pool = pool;
+        this.boardSize = config.getBoardSize();
+        this.winLength = config.getWinLength();
+        boolean isTicTacToe = boardSize == 3 && winLength == 3;
+        this.aiWait = isTicTacToe ? TimeUnit.MILLISECONDS.toNanos(config.getAiWait()) : 0;
+        if (aiWait > 0) { PerfectPlay.load(); }
+        incoming = new LinkedBlockingQueue<>();
+        queueDepth = new AtomicInteger();
+        matchesMade = new AtomicLong();
+        aiMatchesMade = new AtomicLong();
+        playersMatched = new AtomicLong();
+        totalWaitTime = new AtomicLong();
+        maxWaitTime = new AtomicLong();
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Adds a player to the matchmaking queue. Safe to call from any thread.
+     * The player's rating is looked up later on the matcher thread, so the
+     * calling thread (e.g. a handshake loop) never waits on the profiles.
+     * @param player The player waiting for a game.
+     */
+    public void enqueue(Player player)
+    {
+        queueDepth.incrementAndGet();
+        incoming.add(new MatchTicket(player));
+    }
+
+    /**
+     * Matches players until the calling thread is interrupted.
+     */
+    @Override
+    public void run()
+    {
+        try
+        {
+            while (!Thread.currentThread().isInterrupted())
+            {
+                MatchTicket ticket = incoming.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                while (ticket != null)
+                {
+                    rate(ticket);
+                    strategy.add(ticket);
+                    ticket = incoming.poll();
+                }
+                matchWaiting();
+            }
+        }
+        catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+    /**
+     * Gets the average time matched players spent waiting.
+     * @return The average wait in milliseconds, or 0 if no games have started.
+     */
+    public double getAverageWaitMillis()
+    {
+        long players = playersMatched.get();
+        return players == 0 ? 0 : totalWaitTime.get() / 1e6 / players;
+    }
+
+    /**
+     * Gets the longest time a matched player spent waiting.
+     * @return The longest wait in milliseconds.
+     */
+    public double getMaxWaitMillis()
+    {
+        return maxWaitTime.get() / 1e6;
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Sets the rating of a queued player from their profile, if the games
+     * keep player profiles. Looking the rating up also brings the player's
+     * profile into memory before their game ends.
+     * @param ticket The ticket of the queued player.
+     */
+    private void rate(MatchTicket ticket)
+    {
+        ProfileCache profiles = services.getProfiles();
+        if (profiles != null) { ticket.setRating(profiles.getRating(ticket.getPlayer().getName())); }
+    }
+
+    /**
+     * Starts a game for every pair returned by the strategy, then starts a
+     * game against a computer opponent for every player who has waited too
+     * long. A player matched with someone who has disconnected is handed
+     * back to the strategy.
+     */
+    private void matchWaiting()
+    {
+        long now = System.nanoTime();
+        MatchTicket[] match;
+        while ((match = strategy.nextMatch(now)) != null)
+        {
+            boolean isFirstOpen = isStillWaiting(match[0]);
+            boolean isSecondOpen = isStillWaiting(match[1]);
+            if (!isFirstOpen || !isSecondOpen)
+            {
+                if (isFirstOpen) { strategy.add(match[0]); }
+                if (isSecondOpen) { strategy.add(match[1]); }
+                continue;
+            }
+            recordWait(match[0].getWaitTime(now));
+            recordWait(match[1].getWaitTime(now));
+            queueDepth.addAndGet(-2);
+            matchesMade.incrementAndGet();
+            startGame(match[0].getPlayer(), match[1].getPlayer());
+        }
+        MatchTicket ticket;
+        while (aiWait > 0 && (ticket = strategy.pollWaitingSince(now, aiWait)) != null)
+        {
+            if (!isStillWaiting(ticket)) { continue; }
+            recordWait(ticket.getWaitTime(now));
+            queueDepth.decrementAndGet();
+            matchesMade.incrementAndGet();
+            aiMatchesMade.incrementAndGet();
+            startGame(ticket.getPlayer(), AiPlayerConnection.createPlayer());
+        }
+    }
+
+    /**
+     * Checks that a player taken out of the strategy is still connected, or
+     * else drops them from the queue.
+     * @param ticket The ticket of the player.
+     * @return False if the player has disconnected.
+     */
+    private boolean isStillWaiting(MatchTicket ticket)
+    {
+        Player player = ticket.getPlayer();
+        if (player.getConnection().isOpen()) { return true; }
+        ServerLog.debug("{} left the queue.", player.getName());
+        player.getConnection().close();
+        queueDepth.decrementAndGet();
+        return false;
+    }
+
+    /**
+     * Starts a game between the input players. The first player plays 'X'.
+     * @param p1 The first player in the game.
+     * @param p2 The second player in the game.
+     */
+    private void startGame(Player p1, Player p2)
+    {
+        p1.setMark('X');
+        p2.setMark('O');
+        if (engine != null && GameEngine.canHost(p1, p2)) { engine.startGame(p1, p2, boardSize, winLength, services); }
+        else { pool.execute(new ServerController(p1, p2, boardSize, winLength, services)); }
+    }
+
+    /**
+     * Adds a matched player's wait to the wait time statistics.
+     * @param waitTime The time (in nanoseconds) the player waited.
+     */
+    private void recordWait(long waitTime)
+    {
+        playersMatched.incrementAndGet();
+        totalWaitTime.addAndGet(waitTime);
+        maxWaitTime.accumulateAndGet(waitTime, Math::max);
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public int getQueueDepth() { return queueDepth.get(); }
+    public long getMatchesMade() { return matchesMade.get(); }
+    public long getAiMatchesMade() { return aiMatchesMade.get(); }
+}
@@ -0,0 +1,127 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * This class holds named metrics: counters, histograms and gauges. Counters
+ * and histograms are updated on the hot paths without locking; gauges are
+ * only read when the metrics are rendered. The metrics of the server are
+ * registered in ServerMetrics.
+ */
+public class MetricsRegistry
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Percentiles rendered for every histogram.
+     */
+    private static final double[] PERCENTILES = { 0.5, 0.99, 0.999 };
+    /**
+     * Counters, by name.
+     */
+    private Map<String, LongAdder> counters;
+    /**
+     * Histograms, by name.
+     */
+    private Map<String, Histogram> histograms;
+    /**
+     * Gauges, by name.
+     */
+    private Map<String, LongSupplier> gauges;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs an empty MetricsRegistry.
+     */
+    public MetricsRegistry()
+    {
+        counters = new ConcurrentSkipListMap<>();
+        histograms = new ConcurrentSkipListMap<>();
+        gauges = new ConcurrentSkipListMap<>();
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Gets a counter, creating it if needed.
+     * @param name The name of the counter.
+     * @return The counter.
+     */
+    public LongAdder counter(String name)
+    {
+        return counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * Gets a histogram, creating it if needed.
+     * @param name The name of the histogram.
+     * @return The histogram.
+     */
+    public Histogram histogram(String name)
+    {
+        return histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    /**
+     * Registers a gauge, replacing any gauge of the same name.
+     * @param name The name of the gauge.
+     * @param value Reads the current value of the gauge. Must be safe to call
+     * from any thread.
+     */
+    public void gauge(String name, LongSupplier value)
+    {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Renders every metric as a line of text of the form "name value",
+     * sorted by name. Each histogram is rendered as its count, mean,
+     * percentiles and max (e.g. "name_p99").
+     * @return The rendered metrics.
+     */
+    public String render()
+    {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, LongAdder> counter : counters.entrySet())
+        {
+            appendLine(text, counter.getKey(), counter.getValue().sum());
+        }
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet())
+        {
+            appendLine(text, gauge.getKey(), gauge.getValue().getAsLong());
+        }
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet())
+        {
+            String name = entry.getKey();
+            Histogram histogram = entry.getValue();
+            appendLine(text, name + "_count", histogram.getCount());
+            appendLine(text, name + "_mean", Math.round(histogram.getMean()));
+            for (double percentile : PERCENTILES)
+            {
+                String suffix = Double.toString(percentile * 100).replace(".0", "").replace(".", "");
+                appendLine(text, name + "_p" + suffix, histogram.getPercentile(percentile));
+            }
+            appendLine(text, name + "_max", histogram.getMax());
+        }
+        return text.toString();
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Appends a line holding a metric.
+     * @param text The text to append to.
+     * @param name The name of the metric.
+     * @param value The value of the metric.
+     */
+    private static void appendLine(StringBuilder text, String name, long value)
+    {
+        text.append(name).append(' ').append(value).append('\n');
+    }
+}
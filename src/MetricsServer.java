@@ -0,0 +1,62 @@
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class serves the metrics of a MetricsRegistry as plain text over
+ * HTTP, e.g. "curl localhost:9899/metrics". It only listens on the loopback
+ * address, so the metrics cannot be read from other machines.
+ */
+public class MetricsServer
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * The HTTP server.
+     */
+    private HttpServer server;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs a MetricsServer serving the input registry at /metrics.
+     * @param port The port to listen on.
+     * @param registry The registry to serve.
+     * @throws IOException Thrown when the port cannot be bound.
+     */
+    public MetricsServer(int port, MetricsRegistry registry) throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", exchange ->
+        {
+            byte[] body = registry.render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) { out.write(body); }
+        });
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Starts serving requests on a background thread.
+     */
+    public void start()
+    {
+        server.start();
+    }
+
+    /**
+     * Stops serving requests.
+     */
+    public void close()
+    {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * This class represents a move received from a client. A move names the cell
+ * to mark and the sequence number of the game state it was made against (i.e.
+ * the number of moves the client had seen), so that the server can reject
+ * moves made against an out-of-date board.
+ */
+public class Move
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * The index (row * size + col) of the cell to mark, or -1 if the client did
+     * not name a valid cell.
+     */
+    private int cell;
+    /**
+     * The sequence number of the game state the move was made against.
+     */
+    private int sequence;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs a Move object.
+     * @param cell The index (row * size + col) of the cell to mark.
+     * @param sequence The sequence number of the game state the move was
+     * made against.
+     */
+    public Move(int cell, int sequence)
+    {
+        this.cell = cell;
+        this.sequence = sequence;
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public int getCell() { return cell; }
+    public int getSequence() { return sequence; }
+}
@@ -0,0 +1,14 @@
+/**
+ * This interface decides the moves made by a bot client (see HeadlessDisplay).
+ */
+public interface MoveStrategy
+{
+    /**
+     * Chooses a move for the input player.
+     * @param board A 2D array of 'X', 'O' and ' ' characters.
+     * @param mark The mark of the player to move.
+     * @return Int[] containing row and column integers respectively. Must be
+     * a blank space.
+     */
+    int[] chooseMove(char[][] board, char mark);
+}
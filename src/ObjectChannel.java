@@ -0,0 +1,149 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+/**
+ * This class manages the pair of object streams of one serialized protocol
+ * connection. Object streams remember every object they carry so that it
+ * can be sent again as a back-reference, which keeps those objects
+ * reachable (on both ends) for as long as the connection lasts, and sends a
+ * stale reference instead of fresh state if an object was changed in place.
+ * Here every object is written and read unshared, so top-level objects are
+ * never remembered, and both streams are reset every few writes, so the
+ * objects nested in them are forgotten too. Callers must not write an
+ * object that holds a nested object they have already written and since
+ * changed (e.g. send a copy of a board that is updated in place).
+ */
+public class ObjectChannel
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * The number of objects written between resets. Each reset costs the
+     * class descriptors being sent again with the next object.
+     */
+    public static final int DEFAULT_RESET_INTERVAL = 64;
+    /**
+     * Bytes buffered by each stream. Large enough for any GameState along
+     * with its class descriptors, so an object is sent in a single write.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 2048;
+    /**
+     * Stream used to read objects.
+     */
+    private ObjectInputStream in;
+    /**
+     * Stream used to write objects.
+     */
+    private ObjectOutputStream out;
+    /**
+     * Counts the bytes written.
+     */
+    private CountingOutputStream countingOut;
+    /**
+     * The number of objects written between resets.
+     */
+    private int resetInterval;
+    /**
+     * The number of objects written since the last reset.
+     */
+    private int writesSinceReset;
+    /**
+     * The number of times the output stream has been reset.
+     */
+    private long resetCount;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs an ObjectChannel with the default reset interval and
+     * buffer size.
+     * @param input The stream to read objects from.
+     * @param output The stream to write objects to.
+     * @throws IOException Thrown when the stream headers cannot be
+     * exchanged.
+     */
+    public ObjectChannel(InputStream input, OutputStream output) throws IOException
+    {
+        this(input, output, DEFAULT_RESET_INTERVAL, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs an ObjectChannel. The output stream's header is written
+     * (and flushed) before the input stream's header is read, so both ends
+     * may construct their channels at the same time without waiting on each
+     * other.
+     * @param input The stream to read objects from.
+     * @param output The stream to write objects to.
+     * @param resetInterval The number of objects written between resets.
+     * @param bufferSize Bytes buffered by each stream.
+     * @throws IOException Thrown when the stream headers cannot be
+     * exchanged.
+     */
+    public ObjectChannel(InputStream input, OutputStream output, int resetInterval, int bufferSize) throws IOException
+    {
+        this.resetInterval = resetInterval;
+        countingOut = new CountingOutputStream(new BufferedOutputStream(output, bufferSize));
+        out = new ObjectOutputStream(countingOut);
+        out.flush();
+        in = new ObjectInputStream(new BufferedInputStream(input, bufferSize));
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Writes an object and flushes it to the other end. The stream is reset
+     * once every reset interval.
+     * @param object The object.
+     * @throws IOException Thrown when the other end has disconnected.
+     */
+    public void write(Object object) throws IOException
+    {
+        out.writeUnshared(object);
+        if (++writesSinceReset >= resetInterval)
+        {
+            out.reset();
+            writesSinceReset = 0;
+            resetCount++;
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads the next object.
+     * @return The object.
+     * @throws IOException Thrown when the other end has disconnected, or
+     * sent an object of an unknown class.
+     */
+    public Object read() throws IOException
+    {
+        try { return in.readUnshared(); }
+        catch (ClassNotFoundException e) { throw new IOException(e); }
+    }
+
+    /**
+     * Closes both streams.
+     */
+    public void close()
+    {
+        try
+        {
+            in.close();
+            out.close();
+        }
+        catch (IOException e) { }
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public long getBytesWritten() { return countingOut.getCount(); }
+    public long getResetCount() { return resetCount; }
+}
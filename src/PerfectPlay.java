@@ -0,0 +1,98 @@
+import java.util.Arrays;
+
+/**
+ * This class holds the best move for every tic-tac-toe position that can be
+ * reached in a game. The table is filled once, when the class is first used,
+ * from the PositionEvaluator, and is indexed by the two 9 bit masks of a
+ * Board (18 bits in all), so a best move is found with a single array lookup.
+ */
+public final class PerfectPlay
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Number of entries in the table: one per pair of 9 bit masks.
+     */
+    private static final int TABLE_SIZE = 1 << 18;
+    /**
+     * The best cell to mark in each position, or -1 if the position cannot be
+     * reached or the game has ended.
+     */
+    private static final byte[] BEST_MOVE = new byte[TABLE_SIZE];
+    static
+    {
+        Arrays.fill(BEST_MOVE, (byte) -1);
+        fill(0, 0, new boolean[TABLE_SIZE]);
+    }
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * PerfectPlay only holds a static table.
+     */
+    private PerfectPlay() { }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Builds the table if it has not been built yet, so that the first
+     * game against a computer opponent does not have to wait for them.
+     */
+    public static void load() { }
+
+    /**
+     * Finds the best move for the player to move. 'X' is to move when both
+     * players have made the same number of moves.
+     * @param xMask Mask of the spaces marked 'X'.
+     * @param oMask Mask of the spaces marked 'O'.
+     * @return The index (row * 3 + col) of the cell to mark, or -1 if the
+     * game has ended or the position cannot be reached.
+     */
+    public static int bestMove(int xMask, int oMask)
+    {
+        return BEST_MOVE[xMask << 9 | oMask];
+    }
+
+    /**
+     * Finds the best move on the input board.
+     * @param board The board of a game in progress.
+     * @return The index (row * 3 + col) of the cell to mark, or -1 if the
+     * game has ended.
+     */
+    public static int bestMove(Board board)
+    {
+        return bestMove(board.getXMask(), board.getOMask());
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Fills in the best move of a position and of every position reachable
+     * from it.
+     * @param xMask Mask of the spaces marked 'X'.
+     * @param oMask Mask of the spaces marked 'O'.
+     * @param visited Whether or not each position has been filled in.
+     */
+    private static void fill(int xMask, int oMask, boolean[] visited)
+    {
+        int key = xMask << 9 | oMask;
+        if (visited[key]) { return; }
+        visited[key] = true;
+        int move = PositionEvaluator.bestMove(xMask, oMask);
+        BEST_MOVE[key] = (byte) move;
+        if (move < 0) { return; }
+        boolean xToMove = Integer.bitCount(xMask) == Integer.bitCount(oMask);
+        int taken = xMask | oMask;
+        for (int cell = 0; cell < 9; cell++)
+        {
+            int bit = 1 << cell;
+            if ((taken & bit) != 0) { continue; }
+            if (xToMove) { fill(xMask | bit, oMask, visited); }
+            else { fill(xMask, oMask | bit, visited); }
+        }
+    }
+}
@@ -1,16 +1,9 @@
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.PrintWriter;
 import java.io.Serializable;
-import java.net.Socket;
 
 /**
  * This class represents a player in a game of tic-tac-toe. It contains
  * information specific to a player such as their name, mark, and corresponding
- * client socket.
+ * client connection.
  */
 public class Player implements Serializable 
 {
@@ -26,25 +19,14 @@ public class Player implements Serializable
      */
     private char mark;
     /**
-     * Whether or not the player has made a move on their turn.
+     * Connection to the player's client. Only set on the server.
      */
-    private boolean hasPlayed;
+    private transient PlayerConnection connection;
     /**
-     * Writer associated with the player's client.
+     * Secret the player's client presents to resume its game after losing
+     * its connection (see ResumeRegistry), or 0 for computer opponents.
      */
-    private transient PrintWriter socketOut;
-    /**
-     * Reader associated with the player's client.
-     */
-    private transient BufferedReader socketIn;
-    /**
-     * Input stream associated with the player's client.
-     */
-    private transient ObjectInputStream objectInputStream;
-    /**
-     * Output stream associated with the player's client.
-     */
-    private transient ObjectOutputStream objectOutputStream;
+    private transient long token;
     /**
      * SerialVersionUID for serialization purposes.
      */
@@ -55,37 +37,39 @@ public class Player implements Serializable
     //=========================================================================
     /**
      * Constructs a Player object that is associated with a client through
-     * a socket.
+     * a connection. The player's mark is assigned once they are placed in a
+     * game.
+     * @param name The name of the player.
+     * @param connection The connection to the player's client.
      */
-    public Player(Socket socket, String name, char mark) 
+    public Player(String name, PlayerConnection connection)
     {
-        try 
-        {
-            this.name = name;
-            this.mark = mark;
-            socketIn = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            socketOut = new PrintWriter((socket.getOutputStream()), true);
-            objectInputStream = new ObjectInputStream(socket.getInputStream());
-            objectOutputStream = new ObjectOutputStream(socket.getOutputStream());
-        }
-        catch (IOException e) { e.printStackTrace(); }
+        this.name = name;
+        this.connection = connection;
+    }
+
+    /**
+     * Constructs a Player object for a client that has asked to resume a
+     * game. The player has no name until it is seated in its game.
+     * @param token The token presented by the client.
+     * @param connection The connection to the player's client.
+     */
+    public Player(long token, PlayerConnection connection)
+    {
+        this.token = token;
+        this.connection = connection;
     }
 
-    //=========================================================================
-    // Public methods
-    //=========================================================================
     /**
-     * Pauses the game until a valid move has been made (i.e. a valid move
-     * button has been pressed).
+     * Constructs a Player object that is not associated with a client (e.g.
+     * a client's local copy of a player).
+     * @param name The name of the player.
+     * @param mark The marker ('X' or 'O') the player owns.
      */
-    public void makeMove() 
+    public Player(String name, char mark)
     {
-        hasPlayed = false;
-        while (!hasPlayed) 
-        {
-            try { Thread.sleep(0); }
-            catch (Exception e) { e.printStackTrace(); }
-        }
+        this.name = name;
+        this.mark = mark;
     }
 
     //=========================================================================
@@ -93,9 +77,10 @@ public class Player implements Serializable
     //=========================================================================
     public String getName() { return name; }
     public char getMark() { return mark; }
-    public void setHasPlayed(boolean hasPlayed) { this.hasPlayed = hasPlayed; }
-    public PrintWriter getSocketOut() { return socketOut; }
-    public BufferedReader getSocketIn() { return socketIn; }
-    public ObjectInputStream getObjectInputStream() { return objectInputStream; }
-    public ObjectOutputStream getObjectOutputStream() { return objectOutputStream; }
-}
\ No newline at end of file
+    public void setMark(char mark) { this.mark = mark; }
+    public PlayerConnection getConnection() { return connection; }
+    public void setConnection(PlayerConnection connection) { this.connection = connection; }
+    public long getToken() { return token; }
+    public void setToken(long token) { this.token = token; }
+    public boolean isResuming() { return name == null; }
+}
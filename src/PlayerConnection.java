@@ -0,0 +1,67 @@
+import java.io.IOException;
+
+/**
+ * This interface is the server's side of the connection to a player's client.
+ * Each implementation speaks one version of the client-server protocol.
+ */
+public interface PlayerConnection
+{
+    /**
+     * Sends a text message (e.g. a game start notice) to the client.
+     * @param message The message to send.
+     * @throws IOException Thrown when the client has disconnected.
+     */
+    void sendMessage(String message) throws IOException;
+
+    /**
+     * Sends the current state of a game to the client. Implementations may
+     * only send the changes since the last state sent.
+     * @param model The model of the game being played.
+     * @throws IOException Thrown when the client has disconnected.
+     */
+    void sendGameState(ServerModel model) throws IOException;
+
+    /**
+     * Sends the whole current state of a game to the client, replacing
+     * whatever state the client holds (e.g. after a move was rejected).
+     * @param model The model of the game being played.
+     * @throws IOException Thrown when the client has disconnected.
+     */
+    void sendSnapshot(ServerModel model) throws IOException;
+
+    /**
+     * Sends the client the token it may later present to resume its game.
+     * Clients that cannot resume games ignore it.
+     * @param token The player's token.
+     * @throws IOException Thrown when the client has disconnected.
+     */
+    void sendToken(long token) throws IOException;
+
+    /**
+     * Checks to see if the client can resume its game over a new connection
+     * once this one is lost.
+     * @return True if the client can resume games.
+     */
+    boolean isResumable();
+
+    /**
+     * Checks to see if the client is still connected, without waiting. Only
+     * called while nothing reads from the connection (i.e. while the player
+     * is queued).
+     * @return False if the client has disconnected.
+     */
+    boolean isOpen();
+
+    /**
+     * Waits for the client to make its move. The move is not checked.
+     * @param model The model of the game being played, before the move.
+     * @return The move made by the client.
+     * @throws IOException Thrown when the client has disconnected.
+     */
+    Move receiveMove(ServerModel model) throws IOException;
+
+    /**
+     * Closes the connection to the client.
+     */
+    void close();
+}
@@ -0,0 +1,135 @@
+/**
+ * This class holds what the server remembers of a player between games:
+ * their record of wins, losses and draws, their Elo rating and when they
+ * last finished a game. Profiles are kept by ProfileCache and stored by
+ * ProfileStore, keyed by the player's name.
+ */
+public class PlayerProfile
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * The rating given to a player who has not finished a game.
+     */
+    public static final double INITIAL_RATING = 1500;
+    /**
+     * The most a rating can change after one game.
+     */
+    private static final double K_FACTOR = 32;
+    /**
+     * The name of the player.
+     */
+    private String name;
+    /**
+     * The number of games the player has won.
+     */
+    private int wins;
+    /**
+     * The number of games the player has lost.
+     */
+    private int losses;
+    /**
+     * The number of games the player has drawn.
+     */
+    private int draws;
+    /**
+     * The player's Elo rating.
+     */
+    private double rating;
+    /**
+     * Time (in milliseconds) at which the player last finished a game, or 0
+     * if they have not.
+     */
+    private long lastSeen;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs the profile of a player who has not finished a game.
+     * @param name The name of the player.
+     */
+    public PlayerProfile(String name)
+    {
+        this(name, 0, 0, 0, INITIAL_RATING, 0);
+    }
+
+    /**
+     * Constructs a PlayerProfile.
+     * @param name The name of the player.
+     * @param wins The number of games won.
+     * @param losses The number of games lost.
+     * @param draws The number of games drawn.
+     * @param rating The player's rating.
+     * @param lastSeen Time (in milliseconds) the player last finished a
+     * game.
+     */
+    public PlayerProfile(String name, int wins, int losses, int draws, double rating, long lastSeen)
+    {
+        this.name = name;
+        this.wins = wins;
+        this.losses = losses;
+        this.draws = draws;
+        this.rating = rating;
+        this.lastSeen = lastSeen;
+    }
+
+    /**
+     * Constructs a copy of another PlayerProfile.
+     * @param other The profile to copy.
+     */
+    public PlayerProfile(PlayerProfile other)
+    {
+        this(other.name, other.wins, other.losses, other.draws, other.rating, other.lastSeen);
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Records the result of a game against an opponent, and moves the
+     * player's rating toward it.
+     * @param score 1 for a win, 0.5 for a draw or 0 for a loss.
+     * @param opponentRating The opponent's rating before the game.
+     * @param now The current time in milliseconds.
+     */
+    public void recordGame(double score, double opponentRating, long now)
+    {
+        if (score == 1) { wins++; }
+        else if (score == 0) { losses++; }
+        else { draws++; }
+        rating += K_FACTOR * (score - expectedScore(rating, opponentRating));
+        lastSeen = now;
+    }
+
+    /**
+     * Gets the score a player is expected to make against an opponent.
+     * @param rating The player's rating.
+     * @param opponentRating The opponent's rating.
+     * @return The expected score, from 0 to 1.
+     */
+    public static double expectedScore(double rating, double opponentRating)
+    {
+        return 1 / (1 + Math.pow(10, (opponentRating - rating) / 400));
+    }
+
+    /**
+     * Gets the number of games the player has finished.
+     * @return The number of wins, losses and draws.
+     */
+    public int getGameCount()
+    {
+        return wins + losses + draws;
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public String getName() { return name; }
+    public int getWins() { return wins; }
+    public int getLosses() { return losses; }
+    public int getDraws() { return draws; }
+    public double getRating() { return rating; }
+    public long getLastSeen() { return lastSeen; }
+}
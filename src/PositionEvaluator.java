@@ -0,0 +1,126 @@
+/**
+ * This class evaluates tic-tac-toe positions with minimax. Every position is
+ * first mapped to its canonical position (see BoardSymmetry), and the result
+ * is kept in a TranspositionCache shared by the whole process, so the work
+ * done for one position is reused for its 7 symmetric positions and by
+ * every game that reaches any of them.
+ *
+ * Scores are from the point of view of the player to move: positive scores
+ * are wins and are larger the sooner the win comes, 0 is a draw.
+ */
+public final class PositionEvaluator
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Number of cache slots. There are only 765 canonical positions that can
+     * be reached in a game, so with this many slots none is ever evicted.
+     */
+    private static final int CACHE_CAPACITY = 1 << 14;
+    /**
+     * Move stored for positions in which the game has ended.
+     */
+    private static final int NO_MOVE = 0xFF;
+    /**
+     * Evaluations of canonical positions, each packed as (score << 8 | move)
+     * where the move is a cell of the canonical position.
+     */
+    private static final TranspositionCache CACHE = new TranspositionCache(CACHE_CAPACITY);
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * PositionEvaluator only holds static helpers.
+     */
+    private PositionEvaluator() { }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Finds the minimax score of a position for the player to move. 'X' is
+     * to move when both players have made the same number of moves.
+     * @param xMask Mask of the spaces marked 'X'.
+     * @param oMask Mask of the spaces marked 'O'.
+     * @return The score of the position.
+     */
+    public static int score(int xMask, int oMask)
+    {
+        return evaluate(BoardSymmetry.keyOf(BoardSymmetry.canonicalize(xMask, oMask))) >> 8;
+    }
+
+    /**
+     * Finds the best move for the player to move.
+     * @param xMask Mask of the spaces marked 'X'.
+     * @param oMask Mask of the spaces marked 'O'.
+     * @return The index (row * 3 + col) of the cell to mark, or -1 if the
+     * game has ended.
+     */
+    public static int bestMove(int xMask, int oMask)
+    {
+        int canonical = BoardSymmetry.canonicalize(xMask, oMask);
+        int move = evaluate(BoardSymmetry.keyOf(canonical)) & 0xFF;
+        if (move == NO_MOVE) { return -1; }
+        return BoardSymmetry.unmapCell(BoardSymmetry.transformOf(canonical), move);
+    }
+
+    /**
+     * Gets the cache shared by all evaluations (e.g. to report its hit,
+     * miss and eviction counts).
+     * @return The shared cache.
+     */
+    public static TranspositionCache getCache()
+    {
+        return CACHE;
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Evaluates a canonical position, searching it only if it is not cached.
+     * @param key The key (xMask << 9 | oMask) of the canonical position.
+     * @return The evaluation packed as (score << 8 | move).
+     */
+    private static int evaluate(int key)
+    {
+        int evaluation = CACHE.get(key);
+        if (evaluation == TranspositionCache.NOT_FOUND)
+        {
+            evaluation = search(key >>> 9, key & Board.FULL_MASK);
+            CACHE.put(key, evaluation);
+        }
+        return evaluation;
+    }
+
+    /**
+     * Scores every move of a position with minimax.
+     * @param xMask Mask of the spaces marked 'X'.
+     * @param oMask Mask of the spaces marked 'O'.
+     * @return The evaluation packed as (score << 8 | move).
+     */
+    private static int search(int xMask, int oMask)
+    {
+        int taken = xMask | oMask;
+        int remaining = 9 - Integer.bitCount(taken);
+        if (Board.isWin(xMask) || Board.isWin(oMask)) { return -(remaining + 1) << 8 | NO_MOVE; }
+        if (taken == Board.FULL_MASK) { return NO_MOVE; }
+        boolean xToMove = Integer.bitCount(xMask) == Integer.bitCount(oMask);
+        int bestScore = Integer.MIN_VALUE;
+        int bestMove = NO_MOVE;
+        for (int cell = 0; cell < 9; cell++)
+        {
+            int bit = 1 << cell;
+            if ((taken & bit) != 0) { continue; }
+            int score = xToMove ? -score(xMask | bit, oMask) : -score(xMask, oMask | bit);
+            if (score > bestScore)
+            {
+                bestScore = score;
+                bestMove = cell;
+            }
+        }
+        return bestScore << 8 | bestMove;
+    }
+}
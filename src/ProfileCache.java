@@ -0,0 +1,368 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class keeps the profiles of recently seen players in memory, in
+ * front of a ProfileStore. Game threads only queue the result of each game,
+ * without taking a lock. A single writer thread applies the queued results
+ * to the players' profiles every FLUSH_INTERVAL, then saves the changed
+ * profiles to the store in a batch (write-behind). A game therefore never
+ * waits on the cache or on the store's file, and ratings catch up with
+ * results within a FLUSH_INTERVAL.
+ *
+ * The cache holds at most a fixed number of profiles, evicting the least
+ * recently used first. A changed profile that is evicted is still saved,
+ * and is found again by any lookup until it has been. A lookup that misses
+ * every map reads the store's file without holding the cache's lock, so
+ * other lookups carry on meanwhile. The lock is only held for the few map
+ * operations of a lookup or a result.
+ */
+public class ProfileCache implements Runnable
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Default number of profiles kept in memory.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    /**
+     * Milliseconds between batches of profiles saved to the store.
+     */
+    private static final long FLUSH_INTERVAL = 1000;
+    /**
+     * The store the profiles are saved to.
+     */
+    private ProfileStore store;
+    /**
+     * The most profiles kept in memory.
+     */
+    private int capacity;
+    /**
+     * Results of games queued by game threads, not yet applied.
+     */
+    private Queue<GameResult> results;
+    /**
+     * The number of queued results.
+     */
+    private AtomicInteger queuedResults;
+    /**
+     * Profiles kept in memory, least recently used first.
+     */
+    private LinkedHashMap<String, PlayerProfile> recent;
+    /**
+     * Profiles changed since the last batch was taken.
+     */
+    private Map<String, PlayerProfile> dirty;
+    /**
+     * Copies of the profiles of the batch being saved.
+     */
+    private Map<String, PlayerProfile> saving;
+    /**
+     * Number of lookups that found their profile in memory.
+     */
+    private long hits;
+    /**
+     * Number of lookups that read the store.
+     */
+    private long misses;
+    /**
+     * Number of profiles evicted from memory.
+     */
+    private long evictions;
+    /**
+     * Number of profiles that could not be saved as the store was full.
+     */
+    private long dropped;
+    /**
+     * The writer thread.
+     */
+    private Thread writer;
+    /**
+     * Whether or not the writer thread is still running.
+     */
+    private volatile boolean isRunning;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs an empty ProfileCache in front of the input store.
+     * @param store The store the profiles are saved to.
+     * @param capacity The most profiles kept in memory.
+     */
+    public ProfileCache(ProfileStore store, int capacity)
+    {
+        this.store = store;
+        this.capacity = Math.max(1, capacity);
+        results = new ConcurrentLinkedQueue<>();
+        queuedResults = new AtomicInteger();
+        recent = new LinkedHashMap<>(16, 0.75f, true);
+        dirty = new HashMap<>();
+        saving = new HashMap<>();
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Starts the writer thread.
+     */
+    public void start()
+    {
+        isRunning = true;
+        writer = new Thread(this, "profiles");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Gets a copy of a player's profile. A player who is not stored is given
+     * a new profile. May read the store's file, so should not be called on
+     * a thread that must not wait (e.g. an event loop).
+     * @param name The name of the player.
+     * @return A copy of the profile, which does not change.
+     */
+    public PlayerProfile get(String name)
+    {
+        synchronized (this)
+        {
+            PlayerProfile profile = findInMemory(name);
+            if (profile != null)
+            {
+                hits++;
+                return new PlayerProfile(profile);
+            }
+        }
+        PlayerProfile loaded = store.load(name);
+        synchronized (this)
+        {
+            misses++;
+            // Another thread may have brought the profile in while the store was read
+            PlayerProfile profile = findInMemory(name);
+            if (profile == null)
+            {
+                profile = loaded != null ? loaded : new PlayerProfile(name);
+                remember(profile);
+            }
+            return new PlayerProfile(profile);
+        }
+    }
+
+    /**
+     * Gets a player's rating. As with get, may read the store's file.
+     * @param name The name of the player.
+     * @return The player's rating.
+     */
+    public double getRating(String name)
+    {
+        return get(name).getRating();
+    }
+
+    /**
+     * Queues the result of a game to be recorded in both players' profiles
+     * by the writer thread. Safe to call from any thread, and never waits.
+     * Games a player plays against themselves (i.e. two clients using one
+     * name) are not recorded.
+     * @param first The name of one player.
+     * @param second The name of the other player.
+     * @param firstScore The first player's score: 1 for a win, 0.5 for a
+     * draw or 0 for a loss.
+     */
+    public void recordGame(String first, String second, double firstScore)
+    {
+        if (first.equals(second)) { return; }
+        queuedResults.incrementAndGet();
+        results.add(new GameResult(first, second, firstScore));
+    }
+
+    /**
+     * Queues the result of a game that has ended. The active player either
+     * made the winning move or filled the board.
+     * @param model The model of the game.
+     */
+    public void recordGame(ServerModel model)
+    {
+        double activeScore = model.getBoard().hasWon() ? 1 : 0.5;
+        recordGame(model.getActivePlayer().getName(), model.getIdlePlayer().getName(), activeScore);
+    }
+
+    /**
+     * Saves the changed profiles every FLUSH_INTERVAL until the cache is
+     * closed, then saves any left.
+     */
+    @Override
+    public void run()
+    {
+        try
+        {
+            while (isRunning)
+            {
+                Thread.sleep(FLUSH_INTERVAL);
+                flush();
+            }
+        }
+        catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        finally { flush(); }
+    }
+
+    /**
+     * Applies the queued results, then saves every changed profile to the
+     * store and writes the store to disk. The profiles are copied under the
+     * lock, then saved without it, so lookups carry on while the batch is
+     * written. Only called by one thread at a time (the writer thread, or
+     * the closing thread once it has stopped).
+     */
+    public void flush()
+    {
+        GameResult result;
+        while ((result = results.poll()) != null)
+        {
+            apply(result);
+            queuedResults.decrementAndGet();
+        }
+        List<PlayerProfile> batch;
+        synchronized (this)
+        {
+            if (dirty.isEmpty()) { return; }
+            batch = new ArrayList<>(dirty.size());
+            for (PlayerProfile profile : dirty.values())
+            {
+                PlayerProfile copy = new PlayerProfile(profile);
+                saving.put(copy.getName(), copy);
+                batch.add(copy);
+            }
+            dirty.clear();
+        }
+        int failed = 0;
+        for (PlayerProfile profile : batch)
+        {
+            if (!store.save(profile)) { failed++; }
+        }
+        store.force();
+        synchronized (this)
+        {
+            saving.clear();
+            if (failed > 0 && dropped == 0)
+            {
+                ServerLog.warn("The profile store is full. New players will not be saved.");
+            }
+            dropped += failed;
+        }
+    }
+
+    /**
+     * Stops the writer thread once it has saved the profiles changed so
+     * far, then closes the store.
+     */
+    public void close()
+    {
+        isRunning = false;
+        try
+        {
+            if (writer != null)
+            {
+                writer.interrupt();
+                writer.join();
+            }
+            else { flush(); }
+        }
+        catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        store.close();
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Records a result in both players' profiles, and marks them to be
+     * saved. The profiles are brought into memory first without the lock.
+     * Only the writer thread changes profiles, so a profile evicted again
+     * before the lock is taken is the same as the copy already read.
+     * @param result The result of the game.
+     */
+    private void apply(GameResult result)
+    {
+        PlayerProfile firstCopy = get(result.getFirst());
+        PlayerProfile secondCopy = get(result.getSecond());
+        synchronized (this)
+        {
+            PlayerProfile first = findOrRemember(firstCopy);
+            PlayerProfile second = findOrRemember(secondCopy);
+            double firstRating = first.getRating();
+            long now = System.currentTimeMillis();
+            first.recordGame(result.getFirstScore(), second.getRating(), now);
+            second.recordGame(1 - result.getFirstScore(), firstRating, now);
+            dirty.put(first.getName(), first);
+            dirty.put(second.getName(), second);
+        }
+    }
+
+    /**
+     * Finds the live profile of a player in memory, or else keeps the input
+     * copy as their live profile. Must be called holding the lock.
+     * @param copy An up to date copy of the player's profile.
+     * @return The live profile.
+     */
+    private PlayerProfile findOrRemember(PlayerProfile copy)
+    {
+        PlayerProfile profile = findInMemory(copy.getName());
+        if (profile != null) { return profile; }
+        remember(copy);
+        return copy;
+    }
+
+    /**
+     * Finds the live profile of a player in memory (including profiles
+     * evicted before being saved), marking it as recently used. Must be
+     * called holding the lock.
+     * @param name The name of the player.
+     * @return The profile, or null if it is only in the store.
+     */
+    private PlayerProfile findInMemory(String name)
+    {
+        PlayerProfile profile = recent.get(name);
+        if (profile != null) { return profile; }
+        profile = dirty.get(name);
+        // A profile being saved is copied again, as the writer may still be reading it
+        if (profile == null && saving.containsKey(name)) { profile = new PlayerProfile(saving.get(name)); }
+        if (profile != null) { remember(profile); }
+        return profile;
+    }
+
+    /**
+     * Keeps a profile in memory as recently used, evicting the least
+     * recently used profiles while the cache holds too many. Changed
+     * profiles stay in the dirty map until they are saved. Must be called
+     * holding the lock.
+     * @param profile The live profile.
+     */
+    private void remember(PlayerProfile profile)
+    {
+        recent.put(profile.getName(), profile);
+        Iterator<PlayerProfile> eldest = recent.values().iterator();
+        while (recent.size() > capacity)
+        {
+            eldest.next();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+    public synchronized long getDropped() { return dropped; }
+    public synchronized int getPending() { return queuedResults.get() + dirty.size() + saving.size(); }
+    public int getStoredCount() { return store.getCount(); }
+}
@@ -0,0 +1,235 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class stores player profiles (see PlayerProfile) in a memory-mapped
+ * file, so they survive the server restarting.
+ *
+ * The file is a hash table of fixed size slots, one per player:
+ * <pre>
+ * [u8 length][63 bytes name][u32 wins][u32 losses][u32 draws][4 unused]
+ * [f64 rating][u64 lastSeen][32 unused]
+ * </pre>
+ * A lastSeen of 0 marks a free slot. A player's slot is found by hashing
+ * their name and probing the slots that follow until the name (or a free
+ * slot) is found, so a lookup reads one or two slots however many players
+ * are stored. The table is never more than three quarters full; players
+ * beyond that are not stored. Names are cut short if they do not fit, so
+ * players whose names only differ past the 63rd byte share a profile.
+ *
+ * Profiles are written by a single thread (see ProfileCache), and may be
+ * read by any thread at the same time. As with GameSnapshots, the operating
+ * system writes the pages to disk in the background.
+ */
+public class ProfileStore
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Default number of slots: room for about 1.5 million players.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 21;
+    /**
+     * Number of bytes taken by each slot.
+     */
+    private static final int SLOT_SIZE = 128;
+    /**
+     * The most bytes of a player's name kept in a slot.
+     */
+    private static final int NAME_LENGTH = 63;
+    /**
+     * Offsets of the fields of a slot.
+     */
+    private static final int NAME = 0;
+    private static final int WINS = 64;
+    private static final int LOSSES = 68;
+    private static final int DRAWS = 72;
+    private static final int RATING = 80;
+    private static final int LAST_SEEN = 88;
+    /**
+     * Channel of the profile file.
+     */
+    private FileChannel channel;
+    /**
+     * The mapped profile file.
+     */
+    private MappedByteBuffer slots;
+    /**
+     * Mask turning a hash into a slot index (the capacity less one).
+     */
+    private int mask;
+    /**
+     * The most players stored.
+     */
+    private int maxCount;
+    /**
+     * The number of players stored.
+     */
+    private volatile int count;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Opens the profile file, creating it if needed, and counts the players
+     * it holds.
+     * @param file The profile file.
+     * @param capacity The number of slots, at most 1 << 23. Rounded up to a
+     * power of two. An existing file must be opened with the capacity it was
+     * created with.
+     * @throws IOException Thrown when the file cannot be mapped.
+     */
+    public ProfileStore(Path file, int capacity) throws IOException
+    {
+        int slotCount = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        mask = slotCount - 1;
+        maxCount = slotCount / 4 * 3;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        slots = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) slotCount * SLOT_SIZE);
+        int found = 0;
+        for (int slot = 0; slot < slotCount; slot++)
+        {
+            if (slots.getLong(slot * SLOT_SIZE + LAST_SEEN) != 0) { found++; }
+        }
+        count = found;
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Reads a player's profile.
+     * @param name The name of the player.
+     * @return The profile, or null if the player is not stored.
+     */
+    public PlayerProfile load(String name)
+    {
+        byte[] key = toKey(name);
+        int base = find(key) * SLOT_SIZE;
+        if (slots.getLong(base + LAST_SEEN) == 0) { return null; }
+        return new PlayerProfile(name, slots.getInt(base + WINS), slots.getInt(base + LOSSES),
+            slots.getInt(base + DRAWS), slots.getDouble(base + RATING), slots.getLong(base + LAST_SEEN));
+    }
+
+    /**
+     * Writes a player's profile over their slot, or to a free slot if they
+     * are not stored yet. The lastSeen field is written last, so a reader
+     * never finds a new slot before its name.
+     * @param profile The profile. Must not be changed while it is written.
+     * @return False if the player is not stored and the table is full.
+     */
+    public synchronized boolean save(PlayerProfile profile)
+    {
+        byte[] key = toKey(profile.getName());
+        int base = find(key) * SLOT_SIZE;
+        boolean isNew = slots.getLong(base + LAST_SEEN) == 0;
+        if (isNew && count >= maxCount) { return false; }
+        if (isNew)
+        {
+            slots.put(base + NAME, (byte) key.length);
+            slots.put(base + NAME + 1, key);
+        }
+        slots.putInt(base + WINS, profile.getWins());
+        slots.putInt(base + LOSSES, profile.getLosses());
+        slots.putInt(base + DRAWS, profile.getDraws());
+        slots.putDouble(base + RATING, profile.getRating());
+        slots.putLong(base + LAST_SEEN, Math.max(1, profile.getLastSeen()));
+        if (isNew) { count++; }
+        return true;
+    }
+
+    /**
+     * Writes the profiles saved so far to disk.
+     */
+    public void force()
+    {
+        slots.force();
+    }
+
+    /**
+     * Writes the profiles to disk and closes the file.
+     */
+    public void close()
+    {
+        try
+        {
+            slots.force();
+            channel.close();
+        }
+        catch (IOException e) { ServerLog.warn("Could not close the profile store: {}", e.getMessage()); }
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Finds the slot holding a name, or the free slot it would be stored in.
+     * @param key The name, as stored.
+     * @return The index of the slot.
+     */
+    private int find(byte[] key)
+    {
+        int slot = hash(key) & mask;
+        while (true)
+        {
+            int base = slot * SLOT_SIZE;
+            if (slots.getLong(base + LAST_SEEN) == 0 || matches(base, key)) { return slot; }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Checks to see if a slot holds a name.
+     * @param base The position of the slot.
+     * @param key The name, as stored.
+     * @return True if the slot's name is the input name.
+     */
+    private boolean matches(int base, byte[] key)
+    {
+        if ((slots.get(base + NAME) & 0xFF) != key.length) { return false; }
+        for (int i = 0; i < key.length; i++)
+        {
+            if (slots.get(base + NAME + 1 + i) != key[i]) { return false; }
+        }
+        return true;
+    }
+
+    /**
+     * Encodes a name as it is stored, cut short if it does not fit.
+     * @param name The name.
+     * @return The stored bytes of the name.
+     */
+    private static byte[] toKey(String name)
+    {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= NAME_LENGTH) { return bytes; }
+        byte[] key = new byte[NAME_LENGTH];
+        System.arraycopy(bytes, 0, key, 0, NAME_LENGTH);
+        return key;
+    }
+
+    /**
+     * Hashes a stored name (FNV-1a, with its bits spread so that similar
+     * names land far apart).
+     * @param key The name, as stored.
+     * @return The hash.
+     */
+    private static int hash(byte[] key)
+    {
+        int hash = 0x811C9DC5;
+        for (byte b : key) { hash = (hash ^ (b & 0xFF)) * 0x01000193; }
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 15);
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public int getCount() { return count; }
+    public int getMaxCount() { return maxCount; }
+}
@@ -0,0 +1,438 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class describes the wire formats spoken between client and server.
+ *
+ * Version 1 (serialized) is the original format: the client sends its name as
+ * a line of UTF-8 text, then everything else goes through a pair of object
+ * streams. Whole GameState objects are exchanged every turn, and text
+ * messages are sent as String objects, so each object's class tells the
+ * client what it is (a String in place of a GameState ends the game).
+ *
+ * Version 2 (binary) starts with the bytes 'T' 'T' 'T' 2. Every message after
+ * that is a frame made of an unsigned 16 bit length, a one byte frame type and
+ * a payload, where the length counts the type byte and the payload. Frames:
+ * <pre>
+ * TEXT     (1) [string text]
+ * HELLO    (2) [string name]                                   client only
+ * SNAPSHOT (3) [u16 seq][u8 activeMark][string activeName]
+ *              [u8 idleMark][string idleName][board]          server only
+ * UPDATE   (4) [u16 seq][u8 cell][u8 mark][u8 activeMark]      server only
+ * MOVE     (5) [u16 seq][u8 cell]                              client only
+ * RESUME   (6) [u64 token][u16 seq]                            client only
+ * TOKEN    (7) [u64 token]                                     server only
+ * WATCH    (8) [u64 gameId]                                    client only
+ * </pre>
+ * Strings are an unsigned 16 bit byte count followed by UTF-8 bytes. Boards
+ * are an unsigned 8 bit size and an unsigned 8 bit win length followed by
+ * 2 bits per cell (0 blank, 1 'X', 2 'O') in row major order. Cells are
+ * indexed in row major order (row * size + col), so boards may be at most
+ * Board.MAX_SIZE wide for every cell to fit in a byte, and NO_MOVE marks an
+ * update that does not follow a move.
+ *
+ * The server is the only source of truth for the board. The seq of a
+ * SNAPSHOT or UPDATE is the number of moves accepted so far, and a MOVE must
+ * carry the seq of the latest state the client has received. The server
+ * answers an invalid MOVE (stale seq, taken cell, wrong turn) with a fresh
+ * SNAPSHOT to the mover, who is then asked to move again.
+ *
+ * Each player is sent a TOKEN straight after their HELLO. A client that
+ * loses its connection during a game (e.g. because the server restarted) may
+ * open a new one and send RESUME with that token and the seq of the latest
+ * state it received (NO_STATE if none) in place of HELLO. Once its game
+ * continues, it is sent an UPDATE for each move it missed, or a SNAPSHOT if
+ * it missed too many. It is sent a TEXT if the game cannot be resumed.
+ *
+ * A client may instead send WATCH in place of HELLO to spectate a game in
+ * progress (gameId 0 picks the newest game). It is sent a TEXT naming the
+ * game, then a SNAPSHOT followed by an UPDATE per move. A spectator that
+ * falls behind is sent a fresh SNAPSHOT in place of the moves it missed. A
+ * final TEXT is sent once the game is over, and the connection is closed.
+ *
+ * Once a game is over (after its final state, or the TEXT ending it early)
+ * a player stays connected, and may send another HELLO (without the header)
+ * to be queued for the next game. It is sent a new TOKEN, as after its first
+ * HELLO. A player who does not ask to play again in time is disconnected.
+ */
+public final class Protocol
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * The original object stream protocol.
+     */
+    public static final int VERSION_SERIALIZED = 1;
+    /**
+     * The framed binary protocol.
+     */
+    public static final int VERSION_BINARY = 2;
+    /**
+     * Bytes sent by a binary client before its first frame, followed by the
+     * protocol version.
+     */
+    public static final byte[] MAGIC = { 'T', 'T', 'T' };
+    /**
+     * Length of the magic bytes plus the version byte.
+     */
+    public static final int HEADER_LENGTH = MAGIC.length + 1;
+    /**
+     * The largest frame length accepted from a peer.
+     */
+    public static final int MAX_FRAME_LENGTH = 1024;
+    /**
+     * The most bytes (in UTF-8) of a player's name, as many as a profile
+     * keeps. A SNAPSHOT of the largest board holding two such names stays
+     * well under MAX_FRAME_LENGTH.
+     */
+    public static final int MAX_NAME_LENGTH = 63;
+    /**
+     * Frame types.
+     */
+    public static final int TEXT = 1;
+    public static final int HELLO = 2;
+    public static final int SNAPSHOT = 3;
+    public static final int UPDATE = 4;
+    public static final int MOVE = 5;
+    public static final int RESUME = 6;
+    public static final int TOKEN = 7;
+    public static final int WATCH = 8;
+    /**
+     * Cell value used when an update does not follow a move.
+     */
+    public static final int NO_MOVE = 0xFF;
+    /**
+     * Sequence number sent in a RESUME frame by a client that has not
+     * received any state.
+     */
+    public static final int NO_STATE = 0xFFFF;
+    /**
+     * The most moves a resuming client is sent one at a time. A client that
+     * missed more is sent the whole board instead.
+     */
+    public static final int MAX_MISSED_MOVES = 8;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Protocol only holds constants and static helpers.
+     */
+    private Protocol() { }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Writes the bytes identifying a binary client.
+     * @param out The stream to write to.
+     * @throws IOException Thrown when the stream fails.
+     */
+    public static void writeHeader(DataOutputStream out) throws IOException
+    {
+        out.write(MAGIC);
+        out.writeByte(VERSION_BINARY);
+    }
+
+    /**
+     * Checks to see if the input bytes start with the binary protocol header.
+     * @param bytes The bytes received from a client. Must hold at least
+     * HEADER_LENGTH bytes.
+     * @return True if the client speaks the binary protocol.
+     */
+    public static boolean isBinaryHeader(byte[] bytes)
+    {
+        for (int i = 0; i < MAGIC.length; i++)
+        {
+            if (bytes[i] != MAGIC[i]) { return false; }
+        }
+        return bytes[MAGIC.length] == VERSION_BINARY;
+    }
+
+    /**
+     * Writes the length and type of a frame. The payload must be written
+     * straight after.
+     * @param out The stream to write to.
+     * @param type The frame type.
+     * @param payloadLength The number of payload bytes that will follow.
+     * @throws IOException Thrown when the stream fails.
+     */
+    public static void writeFrameHeader(DataOutputStream out, int type, int payloadLength) throws IOException
+    {
+        out.writeShort(payloadLength + 1);
+        out.writeByte(type);
+    }
+
+    /**
+     * Writes a frame holding a single string.
+     * @param out The stream to write to.
+     * @param type The frame type.
+     * @param text The string to write.
+     * @throws IOException Thrown when the stream fails.
+     */
+    public static void writeStringFrame(DataOutputStream out, int type, String text) throws IOException
+    {
+        byte[] bytes = encode(text);
+        writeFrameHeader(out, type, stringLength(bytes));
+        writeString(out, bytes);
+    }
+
+    /**
+     * Writes the state of a game for a client: a SNAPSHOT the first time,
+     * the moves it missed if it is resuming and missed few enough, or else
+     * an UPDATE holding the last move.
+     * @param out The stream to write to.
+     * @param model The model of the game being played.
+     * @param hasSnapshot Whether or not the client has been sent the whole
+     * board.
+     * @param resumedSequence The sequence number of the latest state
+     * received by a resuming client, or -1.
+     * @throws IOException Thrown when the stream fails.
+     */
+    public static void writeGameState(DataOutputStream out, ServerModel model, boolean hasSnapshot, int resumedSequence) throws IOException
+    {
+        if (hasSnapshot) { writeUpdate(out, model, model.getSequence(), model.getLastMove(), model.getActivePlayer().getMark()); }
+        else if (canCatchUp(model, resumedSequence)) { writeMissedMoves(out, model, resumedSequence); }
+        else { writeSnapshot(out, model); }
+    }
+
+    /**
+     * Writes a SNAPSHOT frame holding both players and the whole board.
+     * @param out The stream to write to.
+     * @param model The model of the game being played.
+     * @throws IOException Thrown when the stream fails.
+     */
+    public static void writeSnapshot(DataOutputStream out, ServerModel model) throws IOException
+    {
+        Player active = model.getActivePlayer();
+        Player idle = model.getIdlePlayer();
+        byte[] activeName = encode(active.getName());
+        byte[] idleName = encode(idle.getName());
+        int length = 4 + stringLength(activeName) + stringLength(idleName) + boardLength(model.getBoard().getSize());
+        writeFrameHeader(out, SNAPSHOT, length);
+        out.writeShort(model.getSequence());
+        out.writeByte(active.getMark());
+        writeString(out, activeName);
+        out.writeByte(idle.getMark());
+        writeString(out, idleName);
+        writeBoard(out, model.getBoard());
+    }
+
+    /**
+     * Writes an UPDATE frame.
+     * @param out The stream to write to.
+     * @param model The model of the game being played.
+     * @param sequence The sequence number after the move.
+     * @param cell The cell marked by the move, or -1 if there is no move.
+     * @param activeMark The mark of the player whose turn it is.
+     * @throws IOException Thrown when the stream fails.
+     */
+    public static void writeUpdate(DataOutputStream out, ServerModel model, int sequence, int cell, char activeMark) throws IOException
+    {
+        writeFrameHeader(out, UPDATE, 5);
+        out.writeShort(sequence);
+        if (cell < 0) 
+        { 
+            out.writeByte(NO_MOVE); 
+            out.writeByte(' ');
+        }
+        else 
+        { 
+            out.writeByte(cell); 
+            out.writeByte(model.getBoard().getMark(cell));
+        }
+        out.writeByte(activeMark);
+    }
+
+    /**
+     * Reads the length of the next frame and checks that it is acceptable.
+     * @param in The stream to read from.
+     * @return The length of the frame (type byte plus payload).
+     * @throws IOException Thrown when the stream fails or the frame is too
+     * long.
+     */
+    public static int readFrameLength(DataInputStream in) throws IOException
+    {
+        int length = in.readUnsignedShort();
+        if (length < 1 || length > MAX_FRAME_LENGTH) { throw new IOException("Bad frame length " + length); }
+        return length;
+    }
+
+    /**
+     * Encodes a string as UTF-8.
+     * @param text The string to encode.
+     * @return The UTF-8 bytes of the string.
+     */
+    public static byte[] encode(String text)
+    {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the number of bytes an encoded string takes up in a frame.
+     * @param bytes The UTF-8 bytes of the string.
+     * @return The length prefix plus the bytes.
+     */
+    public static int stringLength(byte[] bytes)
+    {
+        return 2 + bytes.length;
+    }
+
+    /**
+     * Writes an encoded string.
+     * @param out The stream to write to.
+     * @param bytes The UTF-8 bytes of the string.
+     * @throws IOException Thrown when the stream fails.
+     */
+    public static void writeString(DataOutputStream out, byte[] bytes) throws IOException
+    {
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string.
+     * @param in The stream to read from.
+     * @return The decoded string.
+     * @throws IOException Thrown when the stream fails.
+     */
+    public static String readString(DataInputStream in) throws IOException
+    {
+        byte[] bytes = new byte[in.readUnsignedShort()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the number of bytes a packed board takes up in a frame.
+     * @param size The number of rows (and columns) of the board.
+     * @return The size and win length bytes plus 2 bits per cell.
+     */
+    public static int boardLength(int size)
+    {
+        return 2 + (size * size * 2 + 7) / 8;
+    }
+
+    /**
+     * Writes a packed board.
+     * @param out The stream to write to.
+     * @param board The board to write.
+     * @throws IOException Thrown when the stream fails.
+     */
+    public static void writeBoard(DataOutputStream out, Board board) throws IOException
+    {
+        int size = board.getSize();
+        out.writeByte(size);
+        out.writeByte(board.getWinLength());
+        int packed = 0;
+        int bits = 0;
+        for (int cell = 0; cell < size * size; cell++)
+        {
+            packed |= codeOf(board.getMark(cell)) << bits;
+            bits += 2;
+            if (bits == 8)
+            {
+                out.writeByte(packed);
+                packed = 0;
+                bits = 0;
+            }
+        }
+        if (bits > 0) { out.writeByte(packed); }
+    }
+
+    /**
+     * Reads a packed board.
+     * @param in The stream to read from.
+     * @return The board that was read.
+     * @throws IOException Thrown when the stream fails or the board's size
+     * is not supported.
+     */
+    public static Board readBoard(DataInputStream in) throws IOException
+    {
+        int size = in.readUnsignedByte();
+        int winLength = in.readUnsignedByte();
+        Board board;
+        try { board = new Board(size, winLength); }
+        catch (IllegalArgumentException e) { throw new IOException(e.getMessage()); }
+        int packed = 0;
+        for (int cell = 0; cell < size * size; cell++)
+        {
+            if (cell % 4 == 0) { packed = in.readUnsignedByte(); }
+            char mark = markOf((packed >> (cell % 4 * 2)) & 3);
+            if (mark != ' ') { board.addMark(cell, mark); }
+        }
+        return board;
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Checks to see if a resuming client can be brought up to date by
+     * sending it only the moves it missed.
+     * @param model The model of the game being played.
+     * @param resumedSequence The sequence number of the latest state
+     * received by the client, or -1.
+     * @return True if the client missed few enough moves, and all of them
+     * are known.
+     */
+    private static boolean canCatchUp(ServerModel model, int resumedSequence)
+    {
+        int missed = model.getSequence() - resumedSequence;
+        if (resumedSequence < 0 || missed < 0 || missed > MAX_MISSED_MOVES) { return false; }
+        for (int sequence = resumedSequence; sequence < model.getSequence(); sequence++)
+        {
+            if (model.getMove(sequence) < 0) { return false; }
+        }
+        return true;
+    }
+
+    /**
+     * Writes an UPDATE frame for each move a resuming client missed. The last
+     * frame (or the only one, if no moves were missed) names the player whose
+     * turn it is, so the client knows how to continue.
+     * @param out The stream to write to.
+     * @param model The model of the game being played.
+     * @param resumedSequence The sequence number of the latest state
+     * received by the client.
+     * @throws IOException Thrown when the stream fails.
+     */
+    private static void writeMissedMoves(DataOutputStream out, ServerModel model, int resumedSequence) throws IOException
+    {
+        for (int sequence = resumedSequence; sequence < model.getSequence() - 1; sequence++)
+        {
+            int cell = model.getMove(sequence);
+            char next = model.getBoard().getMark(cell) == 'X' ? 'O' : 'X';
+            writeUpdate(out, model, sequence + 1, cell, next);
+        }
+        int last = model.getSequence() > resumedSequence ? model.getMove(model.getSequence() - 1) : -1;
+        writeUpdate(out, model, model.getSequence(), last, model.getActivePlayer().getMark());
+    }
+
+    /**
+     * Gets the 2 bit code of a mark.
+     * @param mark The mark (' ', 'X' or 'O').
+     * @return The code of the mark.
+     */
+    private static int codeOf(char mark)
+    {
+        if (mark == 'X') { return 1; }
+        else if (mark == 'O') { return 2; }
+        return 0;
+    }
+
+    /**
+     * Gets the mark of a 2 bit code.
+     * @param code The code of the mark.
+     * @return The mark (' ', 'X' or 'O').
+     */
+    private static char markOf(int code)
+    {
+        if (code == 1) { return 'X'; }
+        else if (code == 2) { return 'O'; }
+        return ' ';
+    }
+}
@@ -0,0 +1,27 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * This class is a MoveStrategy that picks a blank space at random.
+ */
+public class RandomMoveStrategy implements MoveStrategy
+{
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    @Override
+    public int[] chooseMove(char[][] board, char mark)
+    {
+        int size = board.length;
+        int blanks = 0;
+        for (char[] row : board)
+        {
+            for (char space : row) { if (space == ' ') { blanks++; } }
+        }
+        int choice = ThreadLocalRandom.current().nextInt(Math.max(blanks, 1));
+        for (int cell = 0; cell < size * size; cell++)
+        {
+            if (board[cell / size][cell % size] == ' ' && choice-- == 0) { return new int[] { cell / size, cell % size }; }
+        }
+        return new int[] { 0, 0 };
+    }
+}
@@ -0,0 +1,199 @@
+import java.util.Comparator;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class matches each waiting player with the waiting player nearest to
+ * their rating. Two players may play each other once the gap between their
+ * ratings fits in the rating window of the player who has waited the least.
+ * A player's window starts at a fixed width and widens the longer they wait,
+ * so players far from everyone else are still matched in the end.
+ *
+ * Waiting players are kept in a skip list ordered by rating, so a player's
+ * nearest-rated opponent is always next to them. Each player is weighed
+ * against the player rated just above them, and the time at which that pair
+ * becomes acceptable is worked out when the pair is formed. The pairs are
+ * kept in a second skip list in the order they become acceptable, so finding
+ * the next match only reads its first entry, and queueing or matching a
+ * player only forms the one or two pairs around them: O(log n) however many
+ * players wait. A third skip list keeps players in the order they were
+ * queued, for pollWaitingSince. The player who has waited the longest plays
+ * 'X'.
+ */
+public class RatingMatchStrategy implements MatchStrategy
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Default rating gap accepted for a player who has just been queued.
+     */
+    public static final double DEFAULT_WINDOW = 50;
+    /**
+     * Default rating points the window widens by for each second waited.
+     */
+    public static final double DEFAULT_WIDENING = 100;
+    /**
+     * Rating gap accepted for a player who has just been queued.
+     */
+    private double window;
+    /**
+     * Rating points the window widens by for each second waited, or 0 if it
+     * never widens.
+     */
+    private double widening;
+    /**
+     * Waiting players, lowest rated first.
+     */
+    private NavigableSet<MatchTicket> byRating;
+    /**
+     * Waiting players who have a higher rated player to be weighed against,
+     * in the order their pairs become acceptable.
+     */
+    private NavigableSet<MatchTicket> byReadyAt;
+    /**
+     * Waiting players, oldest first.
+     */
+    private NavigableSet<MatchTicket> byArrival;
+    /**
+     * The number of waiting players.
+     */
+    private int size;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs an empty RatingMatchStrategy with the default window.
+     */
+    public RatingMatchStrategy()
+    {
+        this(DEFAULT_WINDOW, DEFAULT_WIDENING);
+    }
+
+    /**
+     * Constructs an empty RatingMatchStrategy.
+     * @param window Rating gap accepted for a player who has just been
+     * queued.
+     * @param widening Rating points the window widens by for each second
+     * waited, or 0 if it never widens.
+     */
+    public RatingMatchStrategy(double window, double widening)
+    {
+        this.window = window;
+        this.widening = widening;
+        byRating = new ConcurrentSkipListSet<>(
+            Comparator.comparingDouble(MatchTicket::getRating).thenComparingLong(MatchTicket::getSequence));
+        byReadyAt = new ConcurrentSkipListSet<>(
+            Comparator.comparingLong(MatchTicket::getReadyAt).thenComparingLong(MatchTicket::getSequence));
+        byArrival = new ConcurrentSkipListSet<>(
+            Comparator.comparingLong(MatchTicket::getEnqueuedAt).thenComparingLong(MatchTicket::getSequence));
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    @Override
+    public void add(MatchTicket ticket)
+    {
+        byRating.add(ticket);
+        byArrival.add(ticket);
+        size++;
+        MatchTicket lower = byRating.lower(ticket);
+        if (lower != null) { pair(lower); }
+        pair(ticket);
+    }
+
+    @Override
+    public MatchTicket[] nextMatch(long now)
+    {
+        if (byReadyAt.isEmpty()) { return null; }
+        MatchTicket lower = byReadyAt.first();
+        if (lower.getReadyAt() > now) { return null; }
+        MatchTicket higher = byRating.higher(lower);
+        MatchTicket below = byRating.lower(lower);
+        remove(lower);
+        remove(higher);
+        if (below != null) { pair(below); }
+        if (higher.getEnqueuedAt() - lower.getEnqueuedAt() < 0) { return new MatchTicket[] { higher, lower }; }
+        return new MatchTicket[] { lower, higher };
+    }
+
+    @Override
+    public MatchTicket pollWaitingSince(long now, long maxWait)
+    {
+        if (byArrival.isEmpty()) { return null; }
+        MatchTicket oldest = byArrival.first();
+        if (oldest.getWaitTime(now) < maxWait) { return null; }
+        MatchTicket below = byRating.lower(oldest);
+        remove(oldest);
+        if (below != null) { pair(below); }
+        return oldest;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Gets the widest gap a player's window accepts after waiting.
+     * @param waitTime The time (in nanoseconds) the player has waited.
+     * @return The rating gap accepted.
+     */
+    public double getWindow(long waitTime)
+    {
+        return window + widening * waitTime / 1e9;
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Weighs a waiting player against the player rated just above them,
+     * replacing the pair they were part of.
+     * @param lower The waiting player.
+     */
+    private void pair(MatchTicket lower)
+    {
+        byReadyAt.remove(lower);
+        MatchTicket higher = byRating.higher(lower);
+        if (higher == null) { return; }
+        lower.setReadyAt(getReadyAt(lower, higher));
+        byReadyAt.add(lower);
+    }
+
+    /**
+     * Removes a waiting player. The player rated just below them must then
+     * be paired again.
+     * @param ticket The waiting player.
+     */
+    private void remove(MatchTicket ticket)
+    {
+        byReadyAt.remove(ticket);
+        byRating.remove(ticket);
+        byArrival.remove(ticket);
+        size--;
+    }
+
+    /**
+     * Gets the time at which two players may play each other: when the
+     * window of the one who has waited the least first fits the gap between
+     * their ratings.
+     * @param first One player.
+     * @param second The other player.
+     * @return The time (from System.nanoTime()) from which they may be
+     * matched, or Long.MAX_VALUE if never.
+     */
+    private long getReadyAt(MatchTicket first, MatchTicket second)
+    {
+        long youngest = Math.max(first.getEnqueuedAt(), second.getEnqueuedAt());
+        double excess = Math.abs(first.getRating() - second.getRating()) - window;
+        if (excess <= 0) { return youngest; }
+        if (widening <= 0) { return Long.MAX_VALUE; }
+        double seconds = Math.min(excess / widening, TimeUnit.DAYS.toSeconds(365));
+        return youngest + (long) (seconds * 1e9);
+    }
+}
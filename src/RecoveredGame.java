@@ -0,0 +1,141 @@
+import java.io.IOException;
+
+/**
+ * This class is a game rebuilt from its snapshot after the server restarted
+ * (see GameSnapshots). It waits for its players' clients to resume it, then
+ * continues the game on a new ServerController.
+ */
+public class RecoveredGame
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Id of the game in the journal.
+     */
+    private long gameId;
+    /**
+     * The slot holding the game's snapshot.
+     */
+    private int slot;
+    /**
+     * The model of the game, whose players have no connections until their
+     * clients resume the game.
+     */
+    private ServerModel model;
+    /**
+     * The services used by the game. The snapshots must not be null.
+     */
+    private GameServices services;
+    /**
+     * Time (in milliseconds) after which the game is abandoned.
+     */
+    private long deadline;
+    /**
+     * Whether or not the game has been continued or abandoned.
+     */
+    private boolean isClosed;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs a RecoveredGame. Computer opponents (whose token is 0) are
+     * seated straight away.
+     * @param gameId Id of the game in the journal.
+     * @param slot The slot holding the game's snapshot.
+     * @param model The model rebuilt from the snapshot.
+     * @param services The services used by the game. The snapshots must
+     * not be null.
+     * @param timeout Milliseconds the players have to resume the game.
+     */
+    public RecoveredGame(long gameId, int slot, ServerModel model, GameServices services, long timeout)
+    {
+        this.gameId = gameId;
+        this.slot = slot;
+        this.model = model;
+        this.services = services;
+        this.deadline = System.currentTimeMillis() + timeout;
+        for (Player player : getPlayers())
+        {
+            if (player.getToken() == 0) { player.setConnection(new AiPlayerConnection()); }
+        }
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Seats a resuming client in its place in the game. The client is
+     * disconnected if the game has just been abandoned.
+     * @param returning The resuming player holding the client's connection.
+     * @return True if every player is now seated and the game can continue.
+     */
+    public synchronized boolean seat(Player returning)
+    {
+        if (isClosed) 
+        { 
+            ResumeRegistry.reject(returning);
+            return false; 
+        }
+        for (Player player : getPlayers())
+        {
+            if (player.getToken() != returning.getToken()) { continue; }
+            PlayerConnection old = player.getConnection();
+            player.setConnection(returning.getConnection());
+            if (old != null) { old.close(); }
+        }
+        isClosed = getPlayers()[0].getConnection() != null && getPlayers()[1].getConnection() != null;
+        return isClosed;
+    }
+
+    /**
+     * Creates the controller that continues the game.
+     * @return The controller, ready to be run.
+     */
+    public ServerController createController()
+    {
+        return new ServerController(model, gameId, slot, services);
+    }
+
+    /**
+     * Ends the game because its players did not all return in time. Players
+     * who did return are told so and disconnected.
+     * @return True if the game was abandoned, false if it had already been
+     * continued.
+     */
+    public synchronized boolean abandon()
+    {
+        if (isClosed) { return false; }
+        isClosed = true;
+        ServerLog.info("Abandoning recovered game between {} and {}.", model.getIdlePlayer().getName(),
+            model.getActivePlayer().getName());
+        for (Player player : getPlayers())
+        {
+            PlayerConnection connection = player.getConnection();
+            if (connection == null) { continue; }
+            try { connection.sendMessage("Your opponent did not return. Game over."); }
+            catch (IOException e) { }
+            connection.close();
+        }
+        GameJournal journal = services.getJournal();
+        if (journal != null) { journal.append(gameId, model.getSequence(), JournalRecord.ABORT, 0, 0); }
+        services.getSnapshots().release(slot);
+        return true;
+    }
+
+    /**
+     * Checks to see if the players have taken too long to return.
+     * @param now The current time in milliseconds.
+     * @return True if the game should be abandoned.
+     */
+    public boolean hasExpired(long now)
+    {
+        return now > deadline;
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public Player[] getPlayers() { return new Player[] { model.getIdlePlayer(), model.getActivePlayer() }; }
+}
@@ -0,0 +1,208 @@
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * This class hands the clients resuming a game (see Protocol.RESUME) to the
+ * game, indexed by the players' tokens. Games in progress register their
+ * players for as long as they run, so a client may resume its game whether
+ * or not the server has noticed it disconnect.
+ *
+ * The registry also holds the games rebuilt after a restart (see
+ * RecoveredGame). Such a game is submitted to the executor once every player
+ * has returned, and is abandoned by the registry's thread if its players do
+ * not return in time.
+ */
+public class ResumeRegistry implements Runnable
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Milliseconds between checks for expired games.
+     */
+    private static final long SWEEP_INTERVAL = 1000;
+    /**
+     * Source of player tokens.
+     */
+    private static final SecureRandom RANDOM = new SecureRandom();
+    /**
+     * Seat a resuming player in their game, indexed by the player's token.
+     */
+    private Map<Long, Consumer<Player>> seats;
+    /**
+     * Games rebuilt after a restart that are waiting for their players.
+     */
+    private Queue<RecoveredGame> recovered;
+    /**
+     * Executor that continued games are submitted to.
+     */
+    private Executor pool;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs an empty ResumeRegistry.
+     * @param pool Executor that continued games are submitted to.
+     */
+    public ResumeRegistry(Executor pool)
+    {
+        this.pool = pool;
+        seats = new ConcurrentHashMap<>();
+        recovered = new ConcurrentLinkedQueue<>();
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Creates a new player token.
+     * @return A random token that is never 0.
+     */
+    public static long newToken()
+    {
+        long token;
+        do { token = RANDOM.nextLong(); } while (token == 0);
+        return token;
+    }
+
+    /**
+     * Registers a player who may resume their game.
+     * @param token The player's token.
+     * @param seat Seats the resuming player in the game. Called from the
+     * handshake threads and must not block.
+     */
+    public void register(long token, Consumer<Player> seat)
+    {
+        seats.put(token, seat);
+    }
+
+    /**
+     * Removes a player once their game is over.
+     * @param token The player's token.
+     * @param seat The seat registered for the player. Nothing is removed if
+     * the player has since been registered by another game.
+     */
+    public void unregister(long token, Consumer<Player> seat)
+    {
+        seats.remove(token, seat);
+    }
+
+    /**
+     * Adds a game rebuilt after a restart, which waits for its players.
+     * @param game The game.
+     */
+    public void add(RecoveredGame game)
+    {
+        for (Player player : game.getPlayers())
+        {
+            if (player.getConnection() == null) { register(player.getToken(), returning -> resume(game, returning)); }
+        }
+        recovered.add(game);
+    }
+
+    /**
+     * Starts the thread that abandons expired games. The thread stops once
+     * no rebuilt games are left waiting.
+     */
+    public void start()
+    {
+        Thread thread = new Thread(this, "resume");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Seats a resuming player in their game. Players with an unknown token
+     * are told their game cannot be resumed and disconnected. Does not
+     * block.
+     * @param player The resuming player.
+     */
+    public void resume(Player player)
+    {
+        Consumer<Player> seat = seats.get(player.getToken());
+        if (seat == null) { reject(player); }
+        else { seat.accept(player); }
+    }
+
+    /**
+     * Tells a resuming player that their game cannot be resumed and
+     * disconnects them.
+     * @param player The resuming player.
+     */
+    public static void reject(Player player)
+    {
+        try { player.getConnection().sendMessage("Your game could not be resumed."); }
+        catch (IOException e) { }
+        player.getConnection().close();
+    }
+
+    /**
+     * Abandons expired games until no games are left waiting.
+     */
+    @Override
+    public void run()
+    {
+        try
+        {
+            while (!recovered.isEmpty())
+            {
+                Thread.sleep(SWEEP_INTERVAL);
+                abandonExpired(System.currentTimeMillis());
+            }
+        }
+        catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Seats a resuming player in a game rebuilt after a restart, and starts
+     * the game once every player has returned.
+     * @param game The game.
+     * @param player The resuming player.
+     */
+    private void resume(RecoveredGame game, Player player)
+    {
+        if (game.seat(player)) 
+        { 
+            recovered.remove(game);
+            pool.execute(game.createController()); 
+        }
+    }
+
+    /**
+     * Abandons every rebuilt game whose players have taken too long to
+     * return, and forgets the games that have been continued.
+     * @param now The current time in milliseconds.
+     */
+    private void abandonExpired(long now)
+    {
+        Iterator<RecoveredGame> games = recovered.iterator();
+        while (games.hasNext())
+        {
+            RecoveredGame game = games.next();
+            if (game.hasExpired(now))
+            {
+                games.remove();
+                if (game.abandon()) 
+                { 
+                    for (Player player : game.getPlayers()) { seats.remove(player.getToken()); }
+                }
+            }
+        }
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public int getWaitingCount() { return recovered.size(); }
+}
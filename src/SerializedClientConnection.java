@@ -0,0 +1,146 @@
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class connects the client to the server using the original protocol,
+ * in which whole GameState objects are exchanged through object streams.
+ * Text messages are sent through the same object stream as String objects,
+ * so the class of each object received tells the client what it is. The
+ * streams are managed by an ObjectChannel.
+ */
+public class SerializedClientConnection implements ClientConnection
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Is the socket used to communicate to and from the server.
+     */
+    private Socket socket;
+    /**
+     * The object streams to and from the server, or null until the name has
+     * been sent.
+     */
+    private ObjectChannel channel;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs a SerializedClientConnection over the input socket.
+     * @param socket The socket connected to the server.
+     * @throws IOException Thrown when the socket's streams cannot be opened.
+     */
+    public SerializedClientConnection(Socket socket) throws IOException
+    {
+        this.socket = socket;
+        socket.setTcpNoDelay(true);
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Sends the name as a line of text, which is the only text in the
+     * protocol, followed by the header of the object stream everything else
+     * is sent through.
+     */
+    @Override
+    public void sendName(String name) throws IOException
+    {
+        socket.getOutputStream().write((name + "\n").getBytes(StandardCharsets.UTF_8));
+        channel = new ObjectChannel(socket.getInputStream(), socket.getOutputStream());
+    }
+
+    @Override
+    public String receiveMessage() throws IOException
+    {
+        Object received = receiveObject();
+        if (!(received instanceof String)) { throw new IOException("Expected a message from the server"); }
+        return (String) received;
+    }
+
+    /**
+     * Reads the next GameState. A message sent in its place means the game
+     * has ended early (e.g. the opponent has left the game).
+     */
+    @Override
+    public GameState receiveGameState() throws IOException
+    {
+        Object received = receiveObject();
+        if (received instanceof String) { throw new GameInterruptedException((String) received); }
+        if (!(received instanceof GameState)) { throw new IOException("Expected a game state from the server"); }
+        return (GameState) received;
+    }
+
+    /**
+     * Writes a copy of the GameState, as its board may be one that was
+     * written before and has since been updated in place.
+     */
+    @Override
+    public void sendMove(GameState gameState, int cell) throws IOException
+    {
+        if (channel == null) { throw new IOException("The name has not been sent"); }
+        channel.write(new GameState(gameState));
+    }
+
+    /**
+     * The original protocol has no way to watch a game.
+     */
+    @Override
+    public void watch(long gameId) throws IOException
+    {
+        throw new IOException("Only the binary protocol can watch games");
+    }
+
+    /**
+     * The original protocol has no way to resume a game.
+     */
+    @Override
+    public boolean resume()
+    {
+        return false;
+    }
+
+    /**
+     * The original protocol cannot play again over the same connection, as
+     * the server closes it after every game.
+     */
+    @Override
+    public boolean requeue(String name)
+    {
+        return false;
+    }
+
+    @Override
+    public void close()
+    {
+        try 
+        {
+            if (channel != null) { channel.close(); }
+            socket.close();
+        } 
+        catch (IOException e) { e.printStackTrace(); }
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Reads the next object sent by the server.
+     * @return The object (a String or a GameState).
+     * @throws IOException Thrown when the server cannot be reached or sent
+     * something unknown.
+     */
+    private Object receiveObject() throws IOException
+    {
+        if (channel == null) { throw new IOException("The name has not been sent"); }
+        return channel.read();
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public ObjectChannel getChannel() { return channel; }
+}
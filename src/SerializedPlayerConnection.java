@@ -0,0 +1,122 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+
+/**
+ * This class connects the server to a client speaking the original protocol,
+ * in which whole GameState objects are exchanged through object streams.
+ * Text messages are sent through the same object stream as String objects,
+ * so the client tells them apart by their class rather than by the stream
+ * breaking. The streams are managed by an ObjectChannel, so a long session
+ * does not keep every state it has sent.
+ */
+public class SerializedPlayerConnection implements PlayerConnection
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * The socket connected to the client.
+     */
+    private Socket socket;
+    /**
+     * The stream read from the client, which can check that the client is
+     * still connected.
+     */
+    private WatchedInputStream watched;
+    /**
+     * The object streams to and from the player's client.
+     */
+    private ObjectChannel channel;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs a SerializedPlayerConnection over the input socket.
+     * @param socket The socket connected to the client.
+     * @param socketInput The stream to read from the client. Contains any
+     * bytes already read from the socket during the handshake.
+     * @throws IOException Thrown when the object streams cannot be opened.
+     */
+    public SerializedPlayerConnection(Socket socket, InputStream socketInput) throws IOException
+    {
+        this.socket = socket;
+        // Each object is flushed in a single write, so there is nothing for Nagle's algorithm to merge
+        socket.setTcpNoDelay(true);
+        watched = new WatchedInputStream(socketInput, socket.getChannel());
+        channel = new ObjectChannel(watched, socket.getOutputStream());
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    @Override
+    public void sendMessage(String message) throws IOException
+    {
+        channel.write(message);
+    }
+
+    /**
+     * Writes a new GameState. The board is copied because the server's board
+     * is updated in place, and an object stream would otherwise send the
+     * client a reference to the board it was sent last turn.
+     */
+    @Override
+    public void sendGameState(ServerModel model) throws IOException
+    {
+        long start = System.nanoTime();
+        long written = channel.getBytesWritten();
+        Player active = model.getActivePlayer();
+        channel.write(new GameState(new Board(model.getBoard()), new Player(active.getName(), active.getMark())));
+        ServerMetrics.SERIALIZED_STATE_SIZE.record(channel.getBytesWritten() - written);
+        ServerMetrics.SERIALIZED_STATE_TIME.record(System.nanoTime() - start);
+    }
+
+    /**
+     * The original protocol has no way to resume a game, so the token is not
+     * sent.
+     */
+    @Override
+    public void sendToken(long token) { }
+
+    @Override
+    public boolean isResumable() { return false; }
+
+    @Override
+    public boolean isOpen() { return watched.isOpen(); }
+
+    @Override
+    public void sendSnapshot(ServerModel model) throws IOException
+    {
+        sendGameState(model);
+    }
+
+    /**
+     * Reads the whole GameState sent by the client and finds the move it
+     * contains. The received board must hold every mark on the server's board
+     * plus exactly one new mark of the active player, otherwise the move names
+     * no cell.
+     */
+    @Override
+    public Move receiveMove(ServerModel model) throws IOException
+    {
+        Object received = channel.read();
+        if (!(received instanceof GameState)) { return new Move(-1, model.getSequence()); }
+        Board board = ((GameState) received).getBoard();
+        if (board == null) { return new Move(-1, model.getSequence()); }
+        return new Move(board.findMove(model.getBoard(), model.getActivePlayer().getMark()), model.getSequence());
+    }
+
+    @Override
+    public void close()
+    {
+        try { socket.close(); }
+        catch (IOException e) { ServerLog.warn("Could not close a player connection: {}", e.getMessage()); }
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public ObjectChannel getChannel() { return channel; }
+}
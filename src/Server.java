@@ -1,15 +1,12 @@
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * The class establishes connections between clients and the runnable
- * game thread (i.e. ServerController).
+ * game thread (i.e. ServerController). Connected players are paired up by
+ * the Matchmaker.
  */
 public class Server
 {
@@ -17,25 +14,66 @@ public class Server
     // Instance variables
     //=========================================================================
     /**
-     * Socket used to establish connection between server and client(s).
+     * Number of event loop threads used to perform client handshakes.
      */
-    private ServerSocket serverSocket;
+    private static final int HANDSHAKE_LOOPS = 2;
     /**
-     * Writer used to write out to socket.
+     * Milliseconds a client has to send its name after connecting.
      */
-    private PrintWriter socketOut;
+    private static final long HANDSHAKE_TIMEOUT = 10000;
     /**
-     * Reader used to read from socket.
+     * Name of the file in the journal directory that games in progress are
+     * kept in.
      */
-    private BufferedReader socketIn;
+    private static final String SNAPSHOT_FILE = "games.dat";
     /**
-     * Thread pool used to run multiple instances of Game for clients.
+     * Accepts client connections and hands over players once their handshake
+     * is complete.
+     */
+    private Acceptor acceptor;
+    /**
+     * Pairs waiting players and starts games between them.
+     */
+    private Matchmaker matchmaker;
+    /**
+     * Executor used to run multiple instances of Game for clients.
      */
     private ExecutorService pool;
     /**
-     * Wether or not the first player for a game has been found.
+     * Records the events of every game, or null if games are not recorded.
+     */
+    private GameJournal journal;
+    /**
+     * Keeps every game in progress so it can be rebuilt after a restart, or
+     * null if games are not kept.
+     */
+    private GameSnapshots snapshots;
+    /**
+     * Hands clients resuming a game to the game.
+     */
+    private ResumeRegistry registry;
+    /**
+     * The services used by every game.
      */
-    private boolean firstPlayerFound;
+    private GameServices services;
+    /**
+     * Serves the server's metrics, or null if metrics are not served.
+     */
+    private MetricsServer metricsServer;
+    /**
+     * Lets clients watch games in progress, or null if games may not be
+     * watched.
+     */
+    private SpectatorHub spectators;
+    /**
+     * Hosts games on event loop threads, or null if every game runs on the
+     * executor.
+     */
+    private GameEngine engine;
+    /**
+     * Keeps the profiles of the players, or null if profiles are not kept.
+     */
+    private ProfileCache profiles;
 
     //=========================================================================
     // Constructors
@@ -45,13 +83,53 @@ public class Server
      * game instances through port 9898.
      */
     public Server() 
+    {
+        this(new ServerConfig());
+    }
+
+    /**
+     * Constructs the Server object using the input settings.
+     * @param config The port and executor settings of the server.
+     */
+    public Server(ServerConfig config)
     {
         try 
         {
-            firstPlayerFound = false;
-            serverSocket = new ServerSocket(9898);
-            pool = Executors.newFixedThreadPool(5);
-            System.out.println("Server is running...");
+            ServerLog.setLevel(config.getLogLevel());
+            pool = config.getExecutorMode().createExecutor(config.getPoolSize());
+            registry = new ResumeRegistry(pool);
+            if (!config.getJournalDirectory().isEmpty())
+            {
+                Path directory = Paths.get(config.getJournalDirectory());
+                journal = new GameJournal(directory, GameJournal.DEFAULT_SEGMENT_SIZE);
+                journal.start();
+                snapshots = new GameSnapshots(directory.resolve(SNAPSHOT_FILE), GameSnapshots.DEFAULT_CAPACITY);
+            }
+            if (config.getMaxSpectators() > 0)
+            {
+                spectators = new SpectatorHub(config.getMaxSpectators());
+                spectators.start();
+            }
+            if (!config.getProfileFile().isEmpty())
+            {
+                ProfileStore store = new ProfileStore(Paths.get(config.getProfileFile()), ProfileStore.DEFAULT_CAPACITY);
+                profiles = new ProfileCache(store, config.getProfileCache());
+                profiles.start();
+            }
+            acceptor = new Acceptor(config.getPort(), HANDSHAKE_LOOPS, HANDSHAKE_TIMEOUT, this::admit, spectators);
+            Lobby lobby = config.getLobbyWait() > 0 ? new Lobby(acceptor, config.getLobbyWait()) : null;
+            services = new GameServices(journal, snapshots, registry, config.getReconnectWait(), spectators, lobby,
+                profiles);
+            if (snapshots != null) { recoverGames(config.getResumeWait()); }
+            if (config.getExecutorMode() == ExecutorMode.LOOP) { engine = new GameEngine(config.getEventLoops()); }
+            matchmaker = new Matchmaker(config, pool, engine, services);
+            registerGauges();
+            if (config.getMetricsPort() > 0) 
+            { 
+                metricsServer = new MetricsServer(config.getMetricsPort(), ServerMetrics.REGISTRY);
+                metricsServer.start();
+            }
+            ServerLog.info("Server is running ({} executor)...", config.getExecutorMode());
         } 
         catch (IOException e) { e.printStackTrace(); }
     }
@@ -61,79 +139,128 @@ public class Server
     //=========================================================================
     /**
      * Continually attempts to host new tic-tac-toe games until the program
-     * is stopped.
+     * is stopped or the calling thread is interrupted.
      */
     public void runServer() 
     {
-        try { while (true) { startNewGame(); } }
+        acceptor.start();
+        try { matchmaker.run(); }
         catch (Exception e) { e.printStackTrace(); }
         finally { closeServer(); }
+        ServerLog.info("Server stopped.");
+        ServerLog.flush();
     }
 
     //=========================================================================
     // Private methods
     //=========================================================================
     /**
-     * Starts a new game instance of tic-tac-toe. Once two clients connect and
-     * send their name, a game is initialized and started between them.
+     * Rebuilds the games that were in progress when the server last stopped.
+     * They wait for their players to resume them.
+     * @param timeout Milliseconds the players have to resume their games.
      */
-    private void startNewGame()
+    private void recoverGames(long timeout)
     {
-        Player p1 = getPlayer();
-        Player p2 = getPlayer();
-        pool.execute(new ServerController(p1, p2));
+        long start = System.nanoTime();
+        int recovered = 0;
+        long largestId = 0;
+        for (int slot : snapshots.getLiveSlots())
+        {
+            largestId = Math.max(largestId, snapshots.getGameId(slot));
+            ServerModel model = snapshots.restore(slot);
+            if (model == null) 
+            { 
+                snapshots.release(slot);
+                continue;
+            }
+            registry.add(new RecoveredGame(snapshots.getGameId(slot), slot, model, services, timeout));
+            recovered++;
+        }
+        // New games must not reuse the id of a snapshot whose START never reached the journal
+        if (journal != null) { journal.reserveAbove(largestId); }
+        if (recovered == 0) { return; }
+        registry.start();
+        ServerLog.info("Recovered {} games in {} ms. Waiting for their players...", recovered, 
+            String.format("%.1f", (System.nanoTime() - start) / 1e6));
     }
 
     /**
-     * Connects to client and creates a valid Player object.
-     * @return Player object ready to be connected to a game instance.
+     * Registers gauges reading the state of the server's components with
+     * the metrics registry.
      */
-    private Player getPlayer() 
+    private void registerGauges()
     {
-        while (true)
+        MetricsRegistry metrics = ServerMetrics.REGISTRY;
+        metrics.gauge("queue_depth", matchmaker::getQueueDepth);
+        metrics.gauge("matches_made", matchmaker::getMatchesMade);
+        metrics.gauge("ai_matches_made", matchmaker::getAiMatchesMade);
+        metrics.gauge("match_wait_mean_millis", () -> Math.round(matchmaker.getAverageWaitMillis()));
+        metrics.gauge("match_wait_max_millis", () -> Math.round(matchmaker.getMaxWaitMillis()));
+        metrics.gauge("recovered_games_waiting", registry::getWaitingCount);
+        TranspositionCache cache = PositionEvaluator.getCache();
+        metrics.gauge("position_cache_hits", cache::getHits);
+        metrics.gauge("position_cache_misses", cache::getMisses);
+        metrics.gauge("position_cache_evictions", cache::getEvictions);
+        if (journal != null) { metrics.gauge("journal_pending", journal::getPendingCount); }
+        metrics.gauge("log_dropped", ServerLog::getDropped);
+        if (spectators != null) 
+        { 
+            metrics.gauge("spectators_watching", spectators::getSpectatorCount);
+            metrics.gauge("games_watchable", spectators::getGameCount);
+        }
+        if (engine != null) { metrics.gauge("games_on_loops", engine::getGameCount); }
+        if (profiles != null)
         {
-            try 
-            {
-                Socket socket = serverSocket.accept();
-                socketIn = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-                socketOut = new PrintWriter((socket.getOutputStream()), true);
-                Player player = new Player(socket, socketIn.readLine(), getPlayerMark());
-                firstPlayerFound = !firstPlayerFound;
-                System.out.println(player.getName() + " connected.");
-                return player;
-            } 
-            catch (IOException e) { System.out.println("Problem setting up player. Retrying..."); }
+            metrics.gauge("profiles_stored", profiles::getStoredCount);
+            metrics.gauge("profiles_pending", profiles::getPending);
+            metrics.gauge("profile_cache_hits", profiles::getHits);
+            metrics.gauge("profile_cache_misses", profiles::getMisses);
+            metrics.gauge("profile_cache_evictions", profiles::getEvictions);
         }
     }
 
     /**
-     * Sources the appropriate player mark for the newly created player.
+     * Hands a player who has completed their handshake to the matchmaker, or
+     * to their game if they are resuming one.
+     * @param player The player.
      */
-    private char getPlayerMark()
+    private void admit(Player player)
     {
-        if (!firstPlayerFound) { return 'X'; }
-        else return 'O';
+        if (player.isResuming()) 
+        { 
+            registry.resume(player);
+            return;
+        }
+        matchmaker.enqueue(player);
     }
 
     /**
-     * Closes the server sockets.
+     * Closes the server sockets, the game loops, the spectators, the metrics
+     * server, the journal, the snapshots and the profiles.
      */
     private void closeServer()
     {
-        try 
-        {
-            socketIn.close();
-            socketOut.close();
-        } 
-        catch (IOException e) { System.out.println(e.getMessage()); }
+        acceptor.close();
+        if (engine != null) { engine.close(); }
+        if (spectators != null) { spectators.close(); }
+        if (metricsServer != null) { metricsServer.close(); }
+        pool.shutdown();
+        if (journal != null) { journal.close(); }
+        if (snapshots != null) { snapshots.close(); }
+        if (profiles != null) { profiles.close(); }
     }
 
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public Matchmaker getMatchmaker() { return matchmaker; }
+
     //=========================================================================
     // Main
     //=========================================================================
     public static void main(String[] args) throws IOException 
     {
-        Server server = new Server();
+        Server server = new Server(ServerConfig.fromArgs(args));
         server.runServer();
     }
 }
\ No newline at end of file
@@ -0,0 +1,266 @@
+/**
+ * This class holds the settings used to start a Server. Settings can be read
+ * from command line arguments of the form "--name=value".
+ */
+public class ServerConfig
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * The port that clients connect to.
+     */
+    private int port;
+    /**
+     * How game threads are run.
+     */
+    private ExecutorMode executorMode;
+    /**
+     * The number of game threads used by the FIXED executor mode.
+     */
+    private int poolSize;
+    /**
+     * Decides which waiting players play each other.
+     */
+    private MatchStrategy matchStrategy;
+    /**
+     * Milliseconds a player waits before being matched against a computer
+     * opponent, or 0 to never use computer opponents.
+     */
+    private long aiWait;
+    /**
+     * The number of rows (and columns) of the boards games are played on.
+     */
+    private int boardSize;
+    /**
+     * The number of marks in a row needed to win.
+     */
+    private int winLength;
+    /**
+     * The directory games are journaled in, or an empty string to not
+     * journal games.
+     */
+    private String journalDirectory;
+    /**
+     * Milliseconds the players of a game in progress when the server
+     * stopped have to resume it after a restart.
+     */
+    private long resumeWait;
+    /**
+     * Milliseconds a game waits for a player who lost their connection to
+     * resume it, or 0 to end the game straight away.
+     */
+    private long reconnectWait;
+    /**
+     * The local port metrics are served on, or 0 to not serve metrics.
+     */
+    private int metricsPort;
+    /**
+     * The least important level of events written to the server's log.
+     */
+    private LogLevel logLevel;
+    /**
+     * The most spectators a game may have, or 0 to not let games be watched.
+     */
+    private int maxSpectators;
+    /**
+     * The number of event loop threads hosting games in the LOOP executor
+     * mode.
+     */
+    private int eventLoops;
+    /**
+     * Milliseconds a player who finished a game has to ask to play again
+     * over the same connection, or 0 to disconnect players after each game.
+     */
+    private long lobbyWait;
+    /**
+     * The file player profiles are stored in, or an empty string to not keep
+     * profiles.
+     */
+    private String profileFile;
+    /**
+     * The most player profiles kept in memory.
+     */
+    private int profileCache;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs a ServerConfig with the default settings: port 9898, a
+     * fixed pool of 5 game threads, rating-based matchmaking, a
+     * computer opponent for players left waiting 10 seconds and 3x3
+     * tic-tac-toe journaled in the "journal" directory, a minute for
+     * players to resume their games after a restart and 30 seconds for a
+     * player who lost their connection to return, with metrics served on
+     * local port 9899, INFO events logged, up to 256 spectators per game,
+     * an event loop per processor when games are hosted by loops, 5 minutes
+     * for a player who finished a game to ask to play again and player
+     * profiles stored in "profiles.dat" with 65536 of them kept in memory.
+     */
+    public ServerConfig()
+    {
+        port = 9898;
+        executorMode = ExecutorMode.FIXED;
+        poolSize = 5;
+        matchStrategy = new RatingMatchStrategy();
+        aiWait = 10000;
+        boardSize = 3;
+        winLength = 3;
+        journalDirectory = "journal";
+        resumeWait = 60000;
+        reconnectWait = 30000;
+        metricsPort = 9899;
+        logLevel = LogLevel.INFO;
+        maxSpectators = 256;
+        eventLoops = Runtime.getRuntime().availableProcessors();
+        lobbyWait = 300000;
+        profileFile = "profiles.dat";
+        profileCache = ProfileCache.DEFAULT_CAPACITY;
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Creates a ServerConfig from command line arguments. Unrecognized
+     * arguments are reported and ignored.
+     * @param args Arguments such as "--port=9898", "--executor=virtual",
+     * "--pool-size=5", "--match=fifo", "--ai-wait=10000", "--board-size=15",
+     * "--win-length=5", "--journal=games", "--resume-wait=60000" or
+     * "--reconnect-wait=30000", "--metrics-port=9899", "--log-level=warn" or
+     * "--max-spectators=256", "--event-loops=4", "--lobby-wait=300000",
+     * "--profiles=profiles.dat" or "--profile-cache=65536". A win
+     * length longer than the board is shortened.
+     * @return The resulting ServerConfig.
+     */
+    public static ServerConfig fromArgs(String[] args)
+    {
+        ServerConfig config = new ServerConfig();
+        for (String arg : args)
+        {
+            int split = arg.indexOf('=');
+            String name = split < 0 ? arg : arg.substring(0, split);
+            String value = split < 0 ? "" : arg.substring(split + 1);
+            try { config.apply(name, value); }
+            catch (IllegalArgumentException e) { ServerLog.warn("Ignoring argument {}: {}", arg, e.getMessage()); }
+        }
+        if (config.winLength > config.boardSize)
+        {
+            ServerLog.warn("Win length {} is longer than the board. Using {}...", config.winLength, config.boardSize);
+            config.winLength = config.boardSize;
+        }
+        return config;
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Applies a single named setting.
+     * @param name The name of the setting (e.g. "--port").
+     * @param value The value of the setting.
+     */
+    private void apply(String name, String value)
+    {
+        switch (name)
+        {
+            case "--port": port = Integer.parseInt(value); break;
+            case "--executor": executorMode = ExecutorMode.valueOf(value.toUpperCase()); break;
+            case "--pool-size": poolSize = Integer.parseInt(value); break;
+            case "--match": matchStrategy = parseMatchStrategy(value); break;
+            case "--ai-wait": aiWait = Long.parseLong(value); break;
+            case "--board-size": boardSize = parseLength(value); break;
+            case "--win-length": winLength = parseLength(value); break;
+            case "--journal": journalDirectory = value; break;
+            case "--resume-wait": resumeWait = Long.parseLong(value); break;
+            case "--reconnect-wait": reconnectWait = Long.parseLong(value); break;
+            case "--metrics-port": metricsPort = Integer.parseInt(value); break;
+            case "--log-level": logLevel = LogLevel.valueOf(value.toUpperCase()); break;
+            case "--max-spectators": maxSpectators = Integer.parseInt(value); break;
+            case "--event-loops": eventLoops = parseCount(value); break;
+            case "--lobby-wait": lobbyWait = Long.parseLong(value); break;
+            case "--profiles": profileFile = value; break;
+            case "--profile-cache": profileCache = parseCount(value); break;
+            default: throw new IllegalArgumentException("unknown setting");
+        }
+    }
+
+    /**
+     * Parses a match strategy.
+     * @param value The value of the setting: "rating" to match players of
+     * similar ratings, or "fifo" to match players in the order they arrive.
+     * @return A new match strategy.
+     */
+    private static MatchStrategy parseMatchStrategy(String value)
+    {
+        switch (value.toLowerCase())
+        {
+            case "rating": return new RatingMatchStrategy();
+            case "fifo": return new FifoMatchStrategy();
+            default: throw new IllegalArgumentException("must be rating or fifo");
+        }
+    }
+
+    /**
+     * Parses a board size or win length.
+     * @param value The value of the setting.
+     * @return The length, from 1 to Board.MAX_SIZE.
+     */
+    private static int parseLength(String value)
+    {
+        int length = Integer.parseInt(value);
+        if (length < 1 || length > Board.MAX_SIZE) { throw new IllegalArgumentException("must be from 1 to " + Board.MAX_SIZE); }
+        return length;
+    }
+
+    /**
+     * Parses a number of threads.
+     * @param value The value of the setting.
+     * @return The number, at least 1.
+     */
+    private static int parseCount(String value)
+    {
+        int count = Integer.parseInt(value);
+        if (count < 1) { throw new IllegalArgumentException("must be at least 1"); }
+        return count;
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public int getPort() { return port; }
+    public void setPort(int port) { this.port = port; }
+    public ExecutorMode getExecutorMode() { return executorMode; }
+    public void setExecutorMode(ExecutorMode executorMode) { this.executorMode = executorMode; }
+    public int getPoolSize() { return poolSize; }
+    public void setPoolSize(int poolSize) { this.poolSize = poolSize; }
+    public MatchStrategy getMatchStrategy() { return matchStrategy; }
+    public void setMatchStrategy(MatchStrategy matchStrategy) { this.matchStrategy = matchStrategy; }
+    public long getAiWait() { return aiWait; }
+    public void setAiWait(long aiWait) { this.aiWait = aiWait; }
+    public int getBoardSize() { return boardSize; }
+    public void setBoardSize(int boardSize) { this.boardSize = boardSize; }
+    public int getWinLength() { return winLength; }
+    public void setWinLength(int winLength) { this.winLength = winLength; }
+    public String getJournalDirectory() { return journalDirectory; }
+    public void setJournalDirectory(String journalDirectory) { this.journalDirectory = journalDirectory; }
+    public long getResumeWait() { return resumeWait; }
+    public void setResumeWait(long resumeWait) { this.resumeWait = resumeWait; }
+    public long getReconnectWait() { return reconnectWait; }
+    public void setReconnectWait(long reconnectWait) { this.reconnectWait = reconnectWait; }
+    public int getMetricsPort() { return metricsPort; }
+    public void setMetricsPort(int metricsPort) { this.metricsPort = metricsPort; }
+    public LogLevel getLogLevel() { return logLevel; }
+    public void setLogLevel(LogLevel logLevel) { this.logLevel = logLevel; }
+    public int getMaxSpectators() { return maxSpectators; }
+    public void setMaxSpectators(int maxSpectators) { this.maxSpectators = maxSpectators; }
+    public int getEventLoops() { return eventLoops; }
+    public void setEventLoops(int eventLoops) { this.eventLoops = eventLoops; }
+    public long getLobbyWait() { return lobbyWait; }
+    public void setLobbyWait(long lobbyWait) { this.lobbyWait = lobbyWait; }
+    public String getProfileFile() { return profileFile; }
+    public void setProfileFile(String profileFile) { this.profileFile = profileFile; }
+    public int getProfileCache() { return profileCache; }
+    public void setProfileCache(int profileCache) { this.profileCache = profileCache; }
+}
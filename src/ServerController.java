@@ -1,5 +1,11 @@
 import java.io.IOException;
 import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 /**
  * This class is the controller of the server MVC pattern. It is a runnable 
@@ -11,11 +17,89 @@ public class ServerController implements Runnable
     //=========================================================================
     // Instance variables
     //=========================================================================
+    /**
+     * The number of invalid moves a player may make in a row before they are
+     * disconnected.
+     */
+    private static final int MAX_INVALID_MOVES = 10;
     /**
      * The model component of MVC on the server side. Responsible for server
      * side game logic.
      */
     private ServerModel model;
+    /**
+     * The journal the events of the game are recorded in, or null if games
+     * are not recorded.
+     */
+    private GameJournal journal;
+    /**
+     * Id of the game (in the journal, if games are journaled).
+     */
+    private long gameId;
+    /**
+     * The snapshots the game is kept in so it can be rebuilt after a
+     * restart, or null if games are not kept.
+     */
+    private GameSnapshots snapshots;
+    /**
+     * The slot holding the game's snapshot, or -1 if it has none.
+     */
+    private int slot;
+    /**
+     * Whether or not the game is being continued after a restart.
+     */
+    private boolean isResumed;
+    /**
+     * The registry players resume the game through, or null.
+     */
+    private ResumeRegistry registry;
+    /**
+     * Milliseconds the game waits for a player who lost their connection to
+     * resume it.
+     */
+    private long reconnectWait;
+    /**
+     * Both players of the game, the first player first.
+     */
+    private Player[] players;
+    /**
+     * Seat the players' returning connections, indexed like players, or null
+     * if players cannot resume the game.
+     */
+    private List<Consumer<Player>> seats;
+    /**
+     * Guards the players' connections while the game waits for a player to
+     * return. A lock rather than the game's monitor, so that a virtual game
+     * thread waiting for a player does not pin its carrier thread.
+     */
+    private ReentrantLock seatLock;
+    /**
+     * Signalled when a player's returning connection is seated.
+     */
+    private Condition seated;
+    /**
+     * Time (from System.nanoTime) at which the latest move was received, or
+     * 0 once the resulting state has been sent to both players.
+     */
+    private long moveReceivedAt;
+    /**
+     * The hub spectators watch the game through, or null.
+     */
+    private SpectatorHub spectators;
+    /**
+     * Publishes the states of the game to its spectators, or null if it
+     * cannot be watched.
+     */
+    private GameBroadcast broadcast;
+    /**
+     * The lobby players return to once the game is over, or null if they
+     * are disconnected.
+     */
+    private Lobby lobby;
+    /**
+     * The profiles the result of the game is recorded in, or null.
+     */
+    private ProfileCache profiles;
 
     //=========================================================================
     // Constructors
@@ -29,9 +113,61 @@ public class ServerController implements Runnable
      */
     public ServerController(Player p1, Player p2) 
     {
-        this.model = new ServerModel();
+        this(p1, p2, 3, 3);
+    }
+
+    /**
+     * Constructs a Game object capable of managing a game on a board of any
+     * size between two input players.
+     * @param p1 The first player in the game.
+     * @param p2 The second player in the game.
+     * @param size The number of rows (and columns) of the board.
+     * @param winLength The number of marks in a row needed to win.
+     */
+    public ServerController(Player p1, Player p2, int size, int winLength)
+    {
+        this(p1, p2, size, winLength, new GameServices());
+    }
+
+    /**
+     * Constructs a Game object that uses the input services: it is recorded
+     * in the journal, kept in the snapshots and may be resumed by players
+     * who lose their connection.
+     * @param p1 The first player in the game.
+     * @param p2 The second player in the game.
+     * @param size The number of rows (and columns) of the board.
+     * @param winLength The number of marks in a row needed to win.
+     * @param services The services used by the game.
+     */
+    public ServerController(Player p1, Player p2, int size, int winLength, GameServices services)
+    {
+        this.model = new ServerModel(size, winLength);
+        this.slot = -1;
+        this.seatLock = new ReentrantLock();
+        this.seated = seatLock.newCondition();
         model.setActivePlayer(p2);
         model.setIdlePlayer(p1);
+        useServices(services);
+        if (journal != null) { gameId = journal.nextGameId(); }
+    }
+
+    /**
+     * Constructs a Game object that continues a game rebuilt after a
+     * restart. The player to move next must be the idle player.
+     * @param model The model of the game, with every player connected.
+     * @param gameId Id of the game in the journal.
+     * @param slot The slot holding the game's snapshot.
+     * @param services The services used by the game.
+     */
+    public ServerController(ServerModel model, long gameId, int slot, GameServices services)
+    {
+        this.model = model;
+        this.gameId = gameId;
+        this.slot = slot;
+        this.isResumed = true;
+        this.seatLock = new ReentrantLock();
+        this.seated = seatLock.newCondition();
+        useServices(services);
     }
 
     //=========================================================================
@@ -43,40 +179,58 @@ public class ServerController implements Runnable
     @Override
     public void run() 
     {
+        ServerMetrics.GAMES_STARTED.increment();
+        ServerMetrics.GAMES_ACTIVE.increment();
         try
         {
-            notifyGameStart();
+            if (isResumed) { notifyGameResume(); }
+            else { notifyGameStart(); }
             while (!model.hasEnded()) { playTurn(); }
             endGame();
         }
         catch (SocketException e) { handleOpponentDisconnect(); }
+        finally 
+        { 
+            ServerMetrics.GAMES_ACTIVE.decrement();
+            unregisterSeats();
+            closeBroadcast();
+            if (slot >= 0) { snapshots.release(slot); }
+            release(model.getActiveConnection());
+            release(model.getIdleConnection());
+        }
     }
 
     //=========================================================================
     // Private methods
     //=========================================================================
     /**
-     * Notifies both players that the game is about to begin. Note that a wait
-     * time is added to allow the players to read the prompt before the game
-     * begins.
+     * Notifies both players that the game is about to begin. The first turn
+     * is sent straight after, so the game thread is never idle; clients give
+     * their players time to read the prompt (see ClientController).
+     * @throws SocketException Thrown when player disconnects.
      */
-    private void notifyGameStart()
+    private void notifyGameStart() throws SocketException
     {
-        System.out.println("Game started between " + model.getIdlePlayer().getName() + 
-            " and " + model.getActivePlayer().getName() + ".");
-        model.getActiveSocketOut().println("Opponent found. A new game has started!");
-        model.getIdleSocketOut().println("Opponent found. A new game has started!");
-        sleep(2500);
+        openBroadcast();
+        ServerLog.info("Game {} started between {} and {}.", gameId, model.getIdlePlayer().getName(), 
+            model.getActivePlayer().getName());
+        record(JournalRecord.START, model.getBoard().getSize(), model.getBoard().getWinLength());
+        if (snapshots != null && (slot = snapshots.claim(gameId, model)) < 0) 
+        { 
+            ServerLog.warn("No room to snapshot game {}. It will not survive a restart.", gameId);
+        }
+        sendMessage("Opponent found. A new game has started!");
     }
 
     /**
-     * Puts the thread to sleep for the input amount of milliseconds.
-     * @param milliseconds The number of milliseconds that the thread should be paused.
+     * Announces a game continued after a restart on the server. The players
+     * are sent the whole board with their first turn.
      */
-    private void sleep(int milliseconds) 
+    private void notifyGameResume()
     {
-        try { Thread.sleep(milliseconds); } 
-        catch (Exception e) { e.printStackTrace(); }
+        openBroadcast();
+        ServerLog.info("Game {} resumed between {} and {}.", gameId, model.getIdlePlayer().getName(), 
+            model.getActivePlayer().getName());
     }
 
     /**
@@ -92,52 +246,218 @@ public class ServerController implements Runnable
 
     /**
      * Sends the most up-to-date details from the server's model to the 
-     * players.
+     * players, then publishes them to the spectators. The time taken to
+     * process the latest move is recorded once both players have been sent
+     * its result.
      * @throws SocketException Thrown when player disconnects.
      */
     private void sendGameStateInfo() throws SocketException
     {
-        try
+        sendGameState(model.getActivePlayer());
+        sendGameState(model.getIdlePlayer());
+        if (moveReceivedAt != 0)
         {
-            GameState gameState = new GameState(model.getBoard(), model.getActivePlayer());
-            model.getActiveOutputStream().writeObject(gameState);
-            model.getIdleOutputStream().writeObject(gameState);
+            ServerMetrics.MOVE_TIME.record(System.nanoTime() - moveReceivedAt);
+            moveReceivedAt = 0;
         }
-        catch (IOException e) { throw new SocketException(); }
+        if (broadcast != null) { broadcast.publish(model); }
     }
 
     /**
-     * Take a game update from the client and applies them to the server's
-     * game model.
-     * @throws SocketException Thrown when player disconnects.
+     * Sends the most up-to-date details from the server's model to a
+     * player. A player who has lost their connection is waited for instead.
+     * @param player The player to send the details to.
+     * @throws SocketException Thrown when player disconnects for good.
+     */
+    private void sendGameState(Player player) throws SocketException
+    {
+        PlayerConnection connection = player.getConnection();
+        try { connection.sendGameState(model); }
+        catch (IOException e) { reconnect(player, connection); }
+    }
+
+    /**
+     * Takes a move from the active player and applies it to the server's
+     * game model. Invalid moves are answered with the server's state of the
+     * game, after which the player is asked to move again. A player who has
+     * lost their connection is waited for and asked again.
+     * @throws SocketException Thrown when player disconnects for good or
+     * keeps making invalid moves.
      */
     private void updateServerGameState() throws SocketException
     {
-        try 
+        Player player = model.getActivePlayer();
+        int invalidMoves = 0;
+        while (true)
         {
-            GameState gameState = (GameState) model.getActiveInputStream().readObject();
-            model.setBoard(gameState.getBoard());
+            PlayerConnection connection = player.getConnection();
+            Move move;
+            try { move = connection.receiveMove(model); }
+            catch (IOException e) 
+            { 
+                reconnect(player, connection);
+                continue;
+            }
+            moveReceivedAt = System.nanoTime();
+            if (model.applyMove(move)) { break; }
+            if (++invalidMoves >= MAX_INVALID_MOVES) { throw new SocketException(); }
+            try { connection.sendSnapshot(model); }
+            catch (IOException e) { reconnect(player, connection); }
         }
-        catch (IOException e) { throw new SocketException();  }
-        catch (ClassNotFoundException e) { e.printStackTrace(); }
+        record(JournalRecord.MOVE, model.getLastMove(), model.getActivePlayer().getMark());
+        if (slot >= 0) { snapshots.update(slot, model); }
     }
 
     /**
-     * Sends the ended GameState to the players and prints a game over prompt
-     * to the server.
-     * @throws SocketException Thrown when player disconnects.
+     * Waits for a player who lost their connection to resume the game, then
+     * brings their client up to date.
+     * @param player The player who lost their connection.
+     * @param failed The connection that failed.
+     * @throws SocketException Thrown when the player does not return in
+     * time, or cannot resume games.
      */
-    private void endGame() throws SocketException
+    private void reconnect(Player player, PlayerConnection failed) throws SocketException
+    {
+        PlayerConnection connection = failed;
+        while (true)
+        {
+            connection = awaitConnection(player, connection);
+            try 
+            { 
+                connection.sendGameState(model);
+                ServerMetrics.CONNECTIONS_RESUMED.increment();
+                ServerLog.info("{} has resumed their game.", player.getName());
+                return;
+            }
+            catch (IOException e) { }
+        }
+    }
+
+    /**
+     * Waits for a player's failed connection to be replaced by the client
+     * resuming the game (see seat).
+     * @param player The player who lost their connection.
+     * @param failed The connection that failed.
+     * @return The player's new connection.
+     * @throws SocketException Thrown when the player does not return in
+     * time, or cannot resume games.
+     */
+    private PlayerConnection awaitConnection(Player player, PlayerConnection failed) throws SocketException
+    {
+        seatLock.lock();
+        try
+        {
+            failed.close();
+            if (player.getConnection() == failed) { ServerMetrics.CONNECTIONS_LOST.increment(); }
+            if (seats == null || !failed.isResumable() || reconnectWait <= 0) { throw new SocketException(); }
+            if (player.getConnection() == failed) 
+            { 
+                ServerLog.info("{} lost their connection. Waiting for them to return...", player.getName());
+            }
+            long remaining = TimeUnit.MILLISECONDS.toNanos(reconnectWait);
+            while (player.getConnection() == failed)
+            {
+                if (remaining <= 0) { throw new SocketException(); }
+                remaining = seated.awaitNanos(remaining);
+            }
+            return player.getConnection();
+        }
+        catch (InterruptedException e) 
+        { 
+            Thread.currentThread().interrupt();
+            throw new SocketException();
+        }
+        finally { seatLock.unlock(); }
+    }
+
+    /**
+     * Replaces a player's connection with that of their client resuming the
+     * game. The old connection is closed, which wakes the game thread if it
+     * was still waiting on it. Called from the handshake threads.
+     * @param player The player whose client has returned.
+     * @param returning The resuming player holding the new connection.
+     */
+    private void seat(Player player, Player returning)
     {
+        seatLock.lock();
         try
         {
-            GameState gameState = new GameState(model.getBoard(), model.getActivePlayer());
-            model.getActiveOutputStream().writeObject(gameState);
-            model.getIdleOutputStream().writeObject(gameState);
-            System.out.println("Game ended between " + model.getIdlePlayer().getName() + " and " + 
-                model.getActivePlayer().getName() + ". " + model.getActivePlayer().getName() + " won!"); 
+            PlayerConnection old = player.getConnection();
+            player.setConnection(returning.getConnection());
+            seated.signalAll();
+            old.close();
+        }
+        finally { seatLock.unlock(); }
+    }
+
+    /**
+     * Sets the services used by the game, and registers the players who can
+     * resume the game with the registry.
+     * @param services The services used by the game.
+     */
+    private void useServices(GameServices services)
+    {
+        journal = services.getJournal();
+        snapshots = services.getSnapshots();
+        registry = services.getRegistry();
+        reconnectWait = services.getReconnectWait();
+        spectators = services.getSpectators();
+        lobby = services.getLobby();
+        profiles = services.getProfiles();
+        players = new Player[] { model.getIdlePlayer(), model.getActivePlayer() };
+        if (registry == null) { return; }
+        seats = new ArrayList<>();
+        for (Player player : players)
+        {
+            Consumer<Player> seat = returning -> seat(player, returning);
+            seats.add(seat);
+            if (player.getToken() != 0) { registry.register(player.getToken(), seat); }
         }
-        catch (IOException e) { throw new SocketException(); }
+    }
+
+    /**
+     * Opens the game to spectators, if games may be watched. A game that is
+     * not journaled is given its id by the hub.
+     */
+    private void openBroadcast()
+    {
+        if (spectators == null) { return; }
+        broadcast = spectators.open(gameId, model);
+        gameId = broadcast.getGameId();
+    }
+
+    /**
+     * Sends the spectators the final message of the game and lets them go.
+     */
+    private void closeBroadcast()
+    {
+        if (broadcast == null) { return; }
+        spectators.close(broadcast, model.hasEnded() ? "The game is over." : "A player has left. The game is over.");
+    }
+
+    /**
+     * Removes the players from the registry once the game is over.
+     */
+    private void unregisterSeats()
+    {
+        if (seats == null) { return; }
+        for (int i = 0; i < players.length; i++) { registry.unregister(players[i].getToken(), seats.get(i)); }
+    }
+
+    /**
+     * Sends the ended GameState to the players and prints a game over prompt
+     * to the server. The result is queued to be recorded in the players'
+     * profiles by the profiles' writer thread, so the game never waits on
+     * them.
+     * @throws SocketException Thrown when player disconnects.
+     */
+    private void endGame() throws SocketException
+    {
+        record(JournalRecord.END, 0, model.getBoard().hasWon() ? model.getActivePlayer().getMark() : ' ');
+        if (profiles != null) { profiles.recordGame(model); }
+        sendGameStateInfo();
+        ServerLog.info("Game ended between {} and {}. {} won!", model.getIdlePlayer().getName(), 
+            model.getActivePlayer().getName(), model.getActivePlayer().getName());
     }
 
     /**
@@ -145,9 +465,50 @@ public class ServerController implements Runnable
      */
     private void handleOpponentDisconnect()
     {
-        System.out.println("One or more players have rage quit. Ending game between " + 
-            model.getIdlePlayer().getName() + " and " + model.getActivePlayer().getName() + ".");
-        model.getActiveSocketOut().println("Your opponent has rage quit. Game over.");
-        model.getIdleSocketOut().println("Your opponent has rage quit. Game over.");
+        ServerMetrics.GAMES_ABORTED.increment();
+        ServerLog.info("One or more players have rage quit. Ending game between {} and {}.", 
+            model.getIdlePlayer().getName(), model.getActivePlayer().getName());
+        record(JournalRecord.ABORT, 0, 0);
+        try { sendMessage("Your opponent has rage quit. Game over."); }
+        catch (SocketException e) { }
+    }
+
+    /**
+     * Sends a text message to both players. Both players are sent the message
+     * even if the first one has disconnected.
+     * @param message The message to send.
+     * @throws SocketException Thrown when a player has disconnected.
+     */
+    private void sendMessage(String message) throws SocketException
+    {
+        boolean sent = true;
+        try { model.getActiveConnection().sendMessage(message); }
+        catch (IOException e) { sent = false; }
+        try { model.getIdleConnection().sendMessage(message); }
+        catch (IOException e) { sent = false; }
+        if (!sent) { throw new SocketException(); }
+    }
+
+    /**
+     * Lets go of a player's connection once the game is over. The player
+     * returns to the lobby if there is one, or is disconnected.
+     * @param connection The player's connection.
+     */
+    private void release(PlayerConnection connection)
+    {
+        if (lobby != null) { lobby.requeue(connection); }
+        else { connection.close(); }
+    }
+
+    /**
+     * Records an event of the game in the journal, if there is one. Only
+     * queues the record, so the game thread never waits on the disk.
+     * @param type The type of event (see JournalRecord).
+     * @param cell The cell marked (or board size).
+     * @param mark The mark placed (or win length, or winning mark).
+     */
+    private void record(int type, int cell, int mark)
+    {
+        if (journal != null) { journal.append(gameId, model.getSequence(), type, cell, mark); }
     }
-}
\ No newline at end of file
+}
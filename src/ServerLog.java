@@ -0,0 +1,140 @@
+/**
+ * This class holds the server's log (see EventLog), which game and network
+ * threads write to without waiting. Messages use a "{}" placeholder for each
+ * argument, e.g. ServerLog.info("{} connected.", name), so no text is built
+ * on the calling thread. An argument that is an exception is followed by its
+ * stack trace, e.g. ServerLog.warn("The journal stopped writing: {}", e).
+ */
+public final class ServerLog
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * The number of events the log holds before dropping new ones.
+     */
+    private static final int CAPACITY = 1 << 14;
+    /**
+     * The log, written to standard output.
+     */
+    private static final EventLog LOG = new EventLog(CAPACITY, System.out);
+
+    static { LOG.start(); }
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * ServerLog only holds a static log.
+     */
+    private ServerLog() { }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Logs a DEBUG event.
+     * @param message The message.
+     */
+    public static void debug(String message)
+    {
+        LOG.log(LogLevel.DEBUG, message, null, null, null);
+    }
+
+    /**
+     * Logs a DEBUG event.
+     * @param template The message.
+     * @param arg The argument of the message.
+     */
+    public static void debug(String template, Object arg)
+    {
+        LOG.log(LogLevel.DEBUG, template, arg, null, null);
+    }
+
+    /**
+     * Logs an INFO event.
+     * @param message The message.
+     */
+    public static void info(String message)
+    {
+        LOG.log(LogLevel.INFO, message, null, null, null);
+    }
+
+    /**
+     * Logs an INFO event.
+     * @param template The message.
+     * @param arg The argument of the message.
+     */
+    public static void info(String template, Object arg)
+    {
+        LOG.log(LogLevel.INFO, template, arg, null, null);
+    }
+
+    /**
+     * Logs an INFO event.
+     * @param template The message.
+     * @param arg0 The first argument of the message.
+     * @param arg1 The second argument of the message.
+     */
+    public static void info(String template, Object arg0, Object arg1)
+    {
+        LOG.log(LogLevel.INFO, template, arg0, arg1, null);
+    }
+
+    /**
+     * Logs an INFO event.
+     * @param template The message.
+     * @param arg0 The first argument of the message.
+     * @param arg1 The second argument of the message.
+     * @param arg2 The third argument of the message.
+     */
+    public static void info(String template, Object arg0, Object arg1, Object arg2)
+    {
+        LOG.log(LogLevel.INFO, template, arg0, arg1, arg2);
+    }
+
+    /**
+     * Logs a WARN event.
+     * @param message The message.
+     */
+    public static void warn(String message)
+    {
+        LOG.log(LogLevel.WARN, message, null, null, null);
+    }
+
+    /**
+     * Logs a WARN event.
+     * @param template The message.
+     * @param arg The argument of the message.
+     */
+    public static void warn(String template, Object arg)
+    {
+        LOG.log(LogLevel.WARN, template, arg, null, null);
+    }
+
+    /**
+     * Logs a WARN event.
+     * @param template The message.
+     * @param arg0 The first argument of the message.
+     * @param arg1 The second argument of the message.
+     */
+    public static void warn(String template, Object arg0, Object arg1)
+    {
+        LOG.log(LogLevel.WARN, template, arg0, arg1, null);
+    }
+
+    /**
+     * Waits until every event logged so far has been written.
+     */
+    public static void flush()
+    {
+        LOG.flush();
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public static LogLevel getLevel() { return LOG.getLevel(); }
+    public static void setLevel(LogLevel level) { LOG.setLevel(level); }
+    public static long getDropped() { return LOG.getDropped(); }
+}
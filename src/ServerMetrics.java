@@ -0,0 +1,93 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class holds the metrics recorded on the server's hot paths, all
+ * registered in one MetricsRegistry. Times are in nanoseconds and sizes in
+ * bytes. Rates (e.g. of accepted connections) are found by reading a counter
+ * twice. See MetricsServer to read the metrics over HTTP.
+ */
+public final class ServerMetrics
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * The registry holding every metric of the server.
+     */
+    public static final MetricsRegistry REGISTRY = new MetricsRegistry();
+    /**
+     * Connections accepted by the Acceptor.
+     */
+    public static final LongAdder CONNECTIONS_ACCEPTED = REGISTRY.counter("connections_accepted");
+    /**
+     * Connections dropped because their handshake failed or took too long.
+     */
+    public static final LongAdder HANDSHAKES_FAILED = REGISTRY.counter("handshakes_failed");
+    /**
+     * Time from accepting a connection to completing its handshake.
+     */
+    public static final Histogram HANDSHAKE_TIME = REGISTRY.histogram("handshake_nanos");
+    /**
+     * Players who finished a game and asked to play again over the same
+     * connection.
+     */
+    public static final LongAdder PLAYERS_REQUEUED = REGISTRY.counter("players_requeued");
+    /**
+     * Games started, including games continued after a restart.
+     */
+    public static final LongAdder GAMES_STARTED = REGISTRY.counter("games_started");
+    /**
+     * Games being played.
+     */
+    public static final LongAdder GAMES_ACTIVE = REGISTRY.counter("games_active");
+    /**
+     * Games ended early because a player disconnected for good.
+     */
+    public static final LongAdder GAMES_ABORTED = REGISTRY.counter("games_aborted");
+    /**
+     * Players who lost their connection during a game.
+     */
+    public static final LongAdder CONNECTIONS_LOST = REGISTRY.counter("connections_lost");
+    /**
+     * Players who resumed their game after losing their connection.
+     */
+    public static final LongAdder CONNECTIONS_RESUMED = REGISTRY.counter("connections_resumed");
+    /**
+     * Clients that started watching a game.
+     */
+    public static final LongAdder SPECTATORS_JOINED = REGISTRY.counter("spectators_joined");
+    /**
+     * Spectators dropped because they could not keep up.
+     */
+    public static final LongAdder SPECTATORS_DROPPED = REGISTRY.counter("spectators_dropped");
+    /**
+     * Time from receiving a move to sending the resulting state to both
+     * players.
+     */
+    public static final Histogram MOVE_TIME = REGISTRY.histogram("move_nanos");
+    /**
+     * Size of each game state written to a binary client.
+     */
+    public static final Histogram BINARY_STATE_SIZE = REGISTRY.histogram("binary_state_bytes");
+    /**
+     * Time taken to write (and flush) each game state to a binary client.
+     */
+    public static final Histogram BINARY_STATE_TIME = REGISTRY.histogram("binary_state_nanos");
+    /**
+     * Size of each game state written to a serialized client.
+     */
+    public static final Histogram SERIALIZED_STATE_SIZE = REGISTRY.histogram("serialized_state_bytes");
+    /**
+     * Time taken to serialize (and flush) each game state to a serialized
+     * client.
+     */
+    public static final Histogram SERIALIZED_STATE_TIME = REGISTRY.histogram("serialized_state_nanos");
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * ServerMetrics only holds static metrics.
+     */
+    private ServerMetrics() { }
+}
@@ -1,6 +1,4 @@
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.PrintWriter;
+import java.util.Arrays;
 
 /**
  * This class is the model of the server MVC pattern. It contains the 
@@ -23,16 +21,59 @@ public class ServerModel
      * The idle player in the current turn.
      */
     private Player idlePlayer;
+    /**
+     * The index (row * size + col) of the cell marked by the last move, or -1
+     * if no move has been made.
+     */
+    private int lastMove;
+    /**
+     * The number of moves accepted so far. A move is only accepted if it was
+     * made against the current sequence number.
+     */
+    private int sequence;
+    /**
+     * The cell marked by each accepted move, indexed by the sequence number
+     * the move was made against, or -1 where the move is not known (i.e. in
+     * a game rebuilt after a restart).
+     */
+    private int[] moves;
 
     //=========================================================================
     // Constructor
     //=========================================================================
     /**
-     * Constructs a ServerModel object.
+     * Constructs a ServerModel object for a game of tic-tac-toe.
      */
     public ServerModel() 
     {
-        this.board = new Board();
+        this(3, 3);
+    }
+
+    /**
+     * Constructs a ServerModel object.
+     * @param size The number of rows (and columns) of the board.
+     * @param winLength The number of marks in a row needed to win.
+     */
+    public ServerModel(int size, int winLength)
+    {
+        this(new Board(size, winLength), 0, -1);
+    }
+
+    /**
+     * Constructs a ServerModel object for a game already in progress (e.g. a
+     * game rebuilt after the server restarted).
+     * @param board The board of the game.
+     * @param sequence The number of moves accepted so far.
+     * @param lastMove The cell marked by the last move, or -1.
+     */
+    public ServerModel(Board board, int sequence, int lastMove)
+    {
+        this.board = board;
+        this.sequence = sequence;
+        this.lastMove = lastMove;
+        this.moves = new int[board.getCellCount()];
+        Arrays.fill(moves, -1);
+        if (lastMove >= 0) { moves[sequence - 1] = lastMove; }
     }
 
     //=========================================================================
@@ -48,6 +89,34 @@ public class ServerModel
         idlePlayer = temp;
     }
 
+    /**
+     * Checks a move made by the active player against the server's board.
+     * @param move The move received from the active player.
+     * @return True if the move names a blank cell and was made against the
+     * current state of the game.
+     */
+    public boolean isValidMove(Move move)
+    {
+        int cell = move.getCell();
+        return move.getSequence() == sequence && cell >= 0 && cell < board.getCellCount() && 
+            board.isBlank(cell) && !board.hasEnded();
+    }
+
+    /**
+     * Places the active player's mark in the cell named by the input move, if
+     * the move is valid.
+     * @param move The move received from the active player.
+     * @return True if the move was valid and has been applied.
+     */
+    public boolean applyMove(Move move)
+    {
+        if (!isValidMove(move)) { return false; }
+        board.addMark(move.getCell(), activePlayer.getMark());
+        lastMove = move.getCell();
+        moves[sequence++] = lastMove;
+        return true;
+    }
+
     /**
      * Checks to see if the game has ended. Tha game can end if the board is
      * full or if either player has three markers in a row.
@@ -62,14 +131,13 @@ public class ServerModel
     // Getters and setters
     //=========================================================================
     public Board getBoard() { return board; }
-    public void setBoard(Board board) { this.board = board; }
     public Player getActivePlayer() { return activePlayer; }
     public void setActivePlayer(Player activePlayer) { this.activePlayer = activePlayer; }
     public Player getIdlePlayer() { return idlePlayer; }
     public void setIdlePlayer(Player idlePlayer) { this.idlePlayer = idlePlayer; }
-    public PrintWriter getActiveSocketOut() { return activePlayer.getSocketOut(); }
-    public PrintWriter getIdleSocketOut() { return idlePlayer.getSocketOut(); }
-    public ObjectInputStream getActiveInputStream() { return activePlayer.getObjectInputStream(); }
-    public ObjectOutputStream getActiveOutputStream() { return activePlayer.getObjectOutputStream(); }
-    public ObjectOutputStream getIdleOutputStream() { return idlePlayer.getObjectOutputStream(); }
+    public int getLastMove() { return lastMove; }
+    public int getSequence() { return sequence; }
+    public int getMove(int sequence) { return moves[sequence]; }
+    public PlayerConnection getActiveConnection() { return activePlayer.getConnection(); }
+    public PlayerConnection getIdleConnection() { return idlePlayer.getConnection(); }
 }
\ No newline at end of file
@@ -0,0 +1,160 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * This class is a client watching a game. Frames are written to it without
+ * blocking, only by the SpectatorHub's thread. A spectator whose socket is
+ * full simply falls behind; once it drains, the spectator is sent the latest
+ * state rather than every state it missed (see GameBroadcast).
+ */
+public class Spectator
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Non-blocking channel connected to the client.
+     */
+    private SocketChannel channel;
+    /**
+     * The key of the channel in the hub's selector.
+     */
+    private SelectionKey key;
+    /**
+     * The game being watched.
+     */
+    private GameBroadcast game;
+    /**
+     * The frame being written, or null if the last one was fully written.
+     */
+    private ByteBuffer pending;
+    /**
+     * The sequence number of the latest state sent, or -1 if none has been.
+     */
+    private int sentSequence;
+    /**
+     * Whether or not the final message of the game has been sent.
+     */
+    private boolean hasSentFarewell;
+    /**
+     * Time (in milliseconds) since which the socket has been full, or 0 if
+     * it is not full.
+     */
+    private long blockedSince;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs a Spectator.
+     * @param channel Non-blocking channel connected to the client.
+     * @param game The game being watched.
+     * @param welcome The first frame sent to the client.
+     */
+    public Spectator(SocketChannel channel, GameBroadcast game, ByteBuffer welcome)
+    {
+        this.channel = channel;
+        this.game = game;
+        pending = welcome;
+        sentSequence = -1;
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Registers the channel with the hub's selector. Spectators send
+     * nothing, so the channel is only read to notice when it closes.
+     * @param selector The hub's selector.
+     * @throws IOException Thrown when the channel is closed.
+     */
+    public void register(Selector selector) throws IOException
+    {
+        key = channel.register(selector, SelectionKey.OP_READ, this);
+    }
+
+    /**
+     * Writes frames until the spectator is up to date or its socket is full.
+     * In the latter case the hub is asked to call again once it has room.
+     * @param now The current time in milliseconds.
+     * @return False once the spectator has been sent the whole game and
+     * should be closed.
+     * @throws IOException Thrown when the client has disconnected.
+     */
+    public boolean flush(long now) throws IOException
+    {
+        while (true)
+        {
+            if (pending != null)
+            {
+                channel.write(pending);
+                if (pending.hasRemaining())
+                {
+                    if (blockedSince == 0) { blockedSince = now; }
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return true;
+                }
+                pending = null;
+            }
+            pending = nextFrame();
+            if (pending == null)
+            {
+                blockedSince = 0;
+                key.interestOps(SelectionKey.OP_READ);
+                return !hasSentFarewell;
+            }
+        }
+    }
+
+    /**
+     * Checks to see if the socket has been full for too long.
+     * @param now The current time in milliseconds.
+     * @param timeout Milliseconds the socket may stay full.
+     * @return True if the spectator should be dropped.
+     */
+    public boolean isTooSlow(long now, long timeout)
+    {
+        return blockedSince != 0 && now - blockedSince > timeout;
+    }
+
+    /**
+     * Closes the connection to the client.
+     */
+    public void close()
+    {
+        if (key != null) { key.cancel(); }
+        try { channel.close(); }
+        catch (IOException e) { }
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Gets the next frame to send: the next state of the game, or its final
+     * message once every state has been sent.
+     * @return The frame, or null if there is nothing to send yet.
+     */
+    private ByteBuffer nextFrame()
+    {
+        ByteBuffer frame = game.nextFrame(sentSequence);
+        if (frame != null)
+        {
+            sentSequence = GameBroadcast.getSequence(frame);
+            return frame;
+        }
+        ByteBuffer farewell = game.getFarewell();
+        if (farewell == null || hasSentFarewell) { return null; }
+        hasSentFarewell = true;
+        return farewell.duplicate();
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public SocketChannel getChannel() { return channel; }
+    public GameBroadcast getGame() { return game; }
+}
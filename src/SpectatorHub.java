@@ -0,0 +1,376 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class lets clients watch games in progress. Games publish their
+ * states through a GameBroadcast, and a single event loop thread writes
+ * them to every spectator without blocking. A spectator whose socket stays
+ * full for too long is dropped, so a slow spectator costs the server a
+ * buffer rather than a thread.
+ */
+public class SpectatorHub implements Runnable
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Milliseconds between checks for spectators that are too slow.
+     */
+    private static final long SWEEP_INTERVAL = 1000;
+    /**
+     * Milliseconds a spectator's socket may stay full before it is dropped.
+     */
+    private static final long SLOW_SPECTATOR_TIMEOUT = 10000;
+    /**
+     * Games that may be watched, by id.
+     */
+    private ConcurrentSkipListMap<Long, GameBroadcast> games;
+    /**
+     * Id given to the next game that has none (i.e. when games are not
+     * journaled).
+     */
+    private AtomicLong nextGameId;
+    /**
+     * The most spectators a game may have.
+     */
+    private int maxSpectators;
+    /**
+     * Selector used to wait for room in the spectators' sockets.
+     */
+    private Selector selector;
+    /**
+     * Spectators waiting to be registered with the selector.
+     */
+    private Queue<Spectator> joining;
+    /**
+     * Games with new frames for their spectators.
+     */
+    private Queue<GameBroadcast> scheduled;
+    /**
+     * Buffer that bytes sent by spectators are read into and discarded.
+     */
+    private ByteBuffer discard;
+    /**
+     * Number of spectators watching a game.
+     */
+    private AtomicInteger spectatorCount;
+    /**
+     * Whether or not the hub is still running.
+     */
+    private volatile boolean isRunning;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs a SpectatorHub.
+     * @param maxSpectators The most spectators a game may have.
+     * @throws IOException Thrown when the selector cannot be opened.
+     */
+    public SpectatorHub(int maxSpectators) throws IOException
+    {
+        this.maxSpectators = maxSpectators;
+        games = new ConcurrentSkipListMap<>();
+        nextGameId = new AtomicLong();
+        selector = Selector.open();
+        joining = new ConcurrentLinkedQueue<>();
+        scheduled = new ConcurrentLinkedQueue<>();
+        discard = ByteBuffer.allocate(256);
+        spectatorCount = new AtomicInteger();
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Starts the hub's thread.
+     */
+    public void start()
+    {
+        isRunning = true;
+        Thread thread = new Thread(this, "spectators");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Opens a game to spectators.
+     * @param gameId Id of the game, or 0 to give it an id.
+     * @param model The model of the game.
+     * @return The broadcast the game publishes its states through.
+     */
+    public GameBroadcast open(long gameId, ServerModel model)
+    {
+        if (gameId == 0) { gameId = nextGameId.incrementAndGet(); }
+        GameBroadcast game = new GameBroadcast(gameId, model, this);
+        games.put(gameId, game);
+        return game;
+    }
+
+    /**
+     * Closes a game that is over. Its spectators are sent the final state
+     * and the input message, then disconnected.
+     * @param game The game.
+     * @param message The final message.
+     */
+    public void close(GameBroadcast game, String message)
+    {
+        games.remove(game.getGameId());
+        game.setFarewell(createTextFrame(message));
+        schedule(game);
+    }
+
+    /**
+     * Adds a client that asked to watch a game. Called from the handshake
+     * threads. A client asking for a game that does not exist (or is full)
+     * is sent a message and disconnected.
+     * @param channel Non-blocking channel connected to the client.
+     * @param gameId Id of the game, or 0 for the newest game.
+     */
+    public void watch(SocketChannel channel, long gameId)
+    {
+        Map.Entry<Long, GameBroadcast> newest = games.lastEntry();
+        GameBroadcast game = gameId != 0 ? games.get(gameId) : newest == null ? null : newest.getValue();
+        if (game == null || !game.join(maxSpectators))
+        {
+            reject(channel, game == null ? "There is no such game to watch." : "The game has too many spectators.");
+            return;
+        }
+        ByteBuffer welcome = createTextFrame("Watching " + game.getTitle() + ".");
+        joining.add(new Spectator(channel, game, welcome));
+        selector.wakeup();
+    }
+
+    /**
+     * Asks the hub's thread to write a game's new frames to its spectators.
+     * @param game The game.
+     */
+    public void schedule(GameBroadcast game)
+    {
+        if (game.schedule())
+        {
+            scheduled.add(game);
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Writes frames to the spectators until the hub is closed.
+     */
+    @Override
+    public void run()
+    {
+        long nextSweep = System.currentTimeMillis() + SWEEP_INTERVAL;
+        try
+        {
+            while (isRunning)
+            {
+                selector.select(SWEEP_INTERVAL);
+                long now = System.currentTimeMillis();
+                registerJoining(now);
+                handleSelected(now);
+                flushScheduled(now);
+                if (now >= nextSweep)
+                {
+                    dropSlow(now);
+                    nextSweep = now + SWEEP_INTERVAL;
+                }
+            }
+        }
+        catch (IOException e) { if (isRunning) { ServerLog.warn("The spectator hub stopped: {}", e); } }
+        finally { closeSelector(); }
+    }
+
+    /**
+     * Stops the hub. Spectators are disconnected by the hub's thread once it
+     * wakes up.
+     */
+    public void close()
+    {
+        isRunning = false;
+        selector.wakeup();
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Registers every joining spectator and sends it the game so far.
+     * @param now The current time in milliseconds.
+     */
+    private void registerJoining(long now)
+    {
+        Spectator spectator;
+        while ((spectator = joining.poll()) != null)
+        {
+            try { spectator.register(selector); }
+            catch (IOException e)
+            {
+                spectator.close();
+                spectator.getGame().leave();
+                continue;
+            }
+            spectator.getGame().getSpectators().add(spectator);
+            spectatorCount.incrementAndGet();
+            ServerMetrics.SPECTATORS_JOINED.increment();
+            flush(spectator, now);
+        }
+    }
+
+    /**
+     * Writes to the spectators whose sockets have room again, and drops
+     * those that have disconnected.
+     * @param now The current time in milliseconds.
+     */
+    private void handleSelected(long now)
+    {
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext())
+        {
+            SelectionKey key = keys.next();
+            keys.remove();
+            Spectator spectator = (Spectator) key.attachment();
+            if (!key.isValid()) { continue; }
+            if (key.isReadable() && !isOpen(spectator))
+            {
+                drop(spectator);
+                continue;
+            }
+            if (key.isValid() && key.isWritable()) { flush(spectator, now); }
+        }
+    }
+
+    /**
+     * Writes the new frames of every scheduled game to its spectators.
+     * @param now The current time in milliseconds.
+     */
+    private void flushScheduled(long now)
+    {
+        GameBroadcast game;
+        while ((game = scheduled.poll()) != null)
+        {
+            game.unschedule();
+            List<Spectator> spectators = game.getSpectators();
+            // Backwards, as flush may remove the spectator it is given
+            for (int i = spectators.size() - 1; i >= 0; i--) { flush(spectators.get(i), now); }
+        }
+    }
+
+    /**
+     * Writes as many frames as a spectator's socket takes. Drops the
+     * spectator if it has disconnected or has been sent the whole game.
+     * @param spectator The spectator.
+     * @param now The current time in milliseconds.
+     */
+    private void flush(Spectator spectator, long now)
+    {
+        try { if (!spectator.flush(now)) { drop(spectator); } }
+        catch (IOException e) { drop(spectator); }
+    }
+
+    /**
+     * Drops every spectator whose socket has been full for too long.
+     * @param now The current time in milliseconds.
+     */
+    private void dropSlow(long now)
+    {
+        for (SelectionKey key : selector.keys())
+        {
+            Spectator spectator = (Spectator) key.attachment();
+            if (key.isValid() && spectator.isTooSlow(now, SLOW_SPECTATOR_TIMEOUT))
+            {
+                ServerMetrics.SPECTATORS_DROPPED.increment();
+                drop(spectator);
+            }
+        }
+    }
+
+    /**
+     * Reads (and discards) whatever a spectator sent, to notice when it
+     * disconnects.
+     * @param spectator The spectator.
+     * @return False if the spectator has disconnected.
+     */
+    private boolean isOpen(Spectator spectator)
+    {
+        try
+        {
+            discard.clear();
+            return spectator.getChannel().read(discard) >= 0;
+        }
+        catch (IOException e) { return false; }
+    }
+
+    /**
+     * Disconnects a spectator and removes it from its game.
+     * @param spectator The spectator.
+     */
+    private void drop(Spectator spectator)
+    {
+        spectator.close();
+        GameBroadcast game = spectator.getGame();
+        if (game.getSpectators().remove(spectator))
+        {
+            game.leave();
+            spectatorCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Sends a message to a client that cannot watch a game, then
+     * disconnects it. The message is small enough to never fill the socket.
+     * @param channel Non-blocking channel connected to the client.
+     * @param message The message.
+     */
+    private void reject(SocketChannel channel, String message)
+    {
+        try
+        {
+            channel.write(createTextFrame(message));
+            channel.close();
+        }
+        catch (IOException e) { }
+    }
+
+    /**
+     * Disconnects every spectator, then closes the selector.
+     */
+    private void closeSelector()
+    {
+        for (SelectionKey key : selector.keys()) { ((Spectator) key.attachment()).close(); }
+        try { selector.close(); }
+        catch (IOException e) { ServerLog.warn("Could not close the spectator selector: {}", e.getMessage()); }
+    }
+
+    /**
+     * Encodes a TEXT frame.
+     * @param message The text of the frame.
+     * @return The frame, read-only so it can be shared.
+     */
+    private static ByteBuffer createTextFrame(String message)
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try { Protocol.writeStringFrame(new DataOutputStream(bytes), Protocol.TEXT, message); }
+        catch (IOException e) { ServerLog.warn("Could not encode a message: {}", e); }
+        return ByteBuffer.wrap(bytes.toByteArray()).asReadOnlyBuffer();
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public int getSpectatorCount() { return spectatorCount.get(); }
+    public int getGameCount() { return games.size(); }
+}
@@ -0,0 +1,128 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class is a fixed size cache from int keys (e.g. canonical position
+ * keys, see BoardSymmetry) to int values (e.g. packed evaluations). It is
+ * meant to be shared by every game in the process, so that a position is
+ * only analysed once however many games reach it.
+ *
+ * Each key may be stored in either of a pair of slots picked by hashing the
+ * key. A key and its value are stored together in one long, so reads and
+ * writes are lock-free and never see half an entry. Storing a key when both
+ * of its slots hold other keys evicts one of them. Hits, misses and
+ * evictions are counted.
+ */
+public class TranspositionCache
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * Value returned by get() when a key is not in the cache. It cannot be
+     * stored.
+     */
+    public static final int NOT_FOUND = Integer.MIN_VALUE;
+    /**
+     * The slots. Each holds (key + 1) in its upper 32 bits and the value in
+     * its lower 32 bits, or 0 if it is empty.
+     */
+    private AtomicLongArray slots;
+    /**
+     * Number of bits used to index the slots.
+     */
+    private int indexBits;
+    /**
+     * Number of lookups that found their key.
+     */
+    private AtomicLong hits;
+    /**
+     * Number of lookups that did not find their key.
+     */
+    private AtomicLong misses;
+    /**
+     * Number of entries replaced by an entry with another key.
+     */
+    private AtomicLong evictions;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs an empty TranspositionCache.
+     * @param capacity The number of slots. Rounded up to a power of two of
+     * at least 2.
+     */
+    public TranspositionCache(int capacity)
+    {
+        indexBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(capacity - 1));
+        slots = new AtomicLongArray(1 << indexBits);
+        hits = new AtomicLong();
+        misses = new AtomicLong();
+        evictions = new AtomicLong();
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Looks up the value of a key.
+     * @param key The key. Must not be -1.
+     * @return The value, or NOT_FOUND if the key is not in the cache.
+     */
+    public int get(int key)
+    {
+        int index = indexOf(key);
+        for (int way = 0; way < 2; way++)
+        {
+            long slot = slots.get(index + way);
+            if ((int) (slot >>> 32) == key + 1)
+            {
+                hits.incrementAndGet();
+                return (int) slot;
+            }
+        }
+        misses.incrementAndGet();
+        return NOT_FOUND;
+    }
+
+    /**
+     * Stores the value of a key. The key replaces its own entry or fills an
+     * empty slot if it can; otherwise it evicts the key in one of its slots.
+     * @param key The key. Must not be -1.
+     * @param value The value. Must not be NOT_FOUND.
+     */
+    public void put(int key, int value)
+    {
+        int index = indexOf(key);
+        long first = slots.get(index);
+        long second = slots.get(index + 1);
+        int target = index + (key & 1);
+        if ((int) (first >>> 32) == key + 1 || first == 0) { target = index; }
+        else if ((int) (second >>> 32) == key + 1 || second == 0) { target = index + 1; }
+        long entry = (long) (key + 1) << 32 | (value & 0xFFFFFFFFL);
+        long previous = slots.getAndSet(target, entry);
+        if (previous != 0 && (int) (previous >>> 32) != key + 1) { evictions.incrementAndGet(); }
+    }
+
+    //=========================================================================
+    // Private methods
+    //=========================================================================
+    /**
+     * Finds the first of the pair of slots of a key.
+     * @param key The key.
+     * @return The (even) index of the key's first slot.
+     */
+    private int indexOf(int key)
+    {
+        return ((key * 0x9E3779B9) >>> (32 - indexBits)) & ~1;
+    }
+
+    //=========================================================================
+    // Getters and setters
+    //=========================================================================
+    public int getCapacity() { return slots.length(); }
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getEvictions() { return evictions.get(); }
+}
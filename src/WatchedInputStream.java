@@ -0,0 +1,73 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * This class reads from the socket of a player's client, and can check
+ * whether the client has disconnected without waiting (e.g. while the player
+ * is queued for a game). The check reads whatever the client has sent
+ * without blocking, then pushes it back, so nothing is lost to whoever
+ * reads the stream next.
+ */
+public class WatchedInputStream extends PushbackInputStream
+{
+    //=========================================================================
+    // Instance variables
+    //=========================================================================
+    /**
+     * The most bytes read by one check.
+     */
+    private static final int PROBE_LENGTH = 64;
+    /**
+     * The channel of the socket, or null if the socket has none.
+     */
+    private SocketChannel channel;
+
+    //=========================================================================
+    // Constructors
+    //=========================================================================
+    /**
+     * Constructs a WatchedInputStream.
+     * @param input The stream to read from the client.
+     * @param channel The channel of the socket connected to the client, or
+     * null if the socket has none (in which case the client is always
+     * thought to be connected).
+     */
+    public WatchedInputStream(InputStream input, SocketChannel channel)
+    {
+        super(input, PROBE_LENGTH);
+        this.channel = channel;
+    }
+
+    //=========================================================================
+    // Public methods
+    //=========================================================================
+    /**
+     * Checks to see if the client is still connected, without waiting. Must
+     * not be called while another thread reads the stream.
+     * @return False if the client has disconnected.
+     */
+    public boolean isOpen()
+    {
+        if (channel == null) { return true; }
+        if (!channel.isOpen()) { return false; }
+        try
+        {
+            // Bytes already pushed back are read first, so there is no room to probe again
+            if (pos < buf.length) { return true; }
+            ByteBuffer probe = ByteBuffer.allocate(PROBE_LENGTH);
+            int read;
+            synchronized (channel.blockingLock())
+            {
+                channel.configureBlocking(false);
+                try { read = channel.read(probe); }
+                finally { channel.configureBlocking(true); }
+            }
+            if (read > 0) { unread(probe.array(), 0, read); }
+            return read >= 0;
+        }
+        catch (IOException e) { return false; }
+    }
+}